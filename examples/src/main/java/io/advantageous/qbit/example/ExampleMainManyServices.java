@@ -0,0 +1,114 @@
+package io.advantageous.qbit.example;
+
+import io.advantageous.qbit.Factory;
+import io.advantageous.qbit.QBit;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.queue.QueueBuilder;
+import io.advantageous.qbit.queue.ReceiveQueue;
+import io.advantageous.qbit.queue.impl.WorkerPool;
+import io.advantageous.qbit.service.ServiceBundle;
+import org.boon.Lists;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers 10,000 services in one service bundle and measures memory and throughput.
+ * <p>
+ * Pass the mode as the first argument:
+ * <pre>
+ *     platform   one platform thread per queue (default)
+ *     virtual    one virtual thread per queue, needs JDK 21 and QBit built with -Pjava21
+ *     pool       all queues share a WorkerPool with one worker per core
+ * </pre>
+ * Optional second argument is the number of services, third is calls per service.
+ * Platform mode with 10,000 services needs a high ulimit for threads (two queues per service).
+ */
+public class ExampleMainManyServices {
+
+    public static class CounterService {
+        long count;
+
+        public long add(int amount) {
+            count += amount;
+            return count;
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+
+        final String mode = args.length > 0 ? args[0] : "platform";
+        final int serviceCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        final int callsPerService = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        final QueueBuilder queueBuilder = QueueBuilder.queueBuilder();
+        switch (mode) {
+            case "virtual":
+                queueBuilder.virtualThreads(true);
+                break;
+            case "pool":
+                queueBuilder.workerPool(WorkerPool.shared());
+                break;
+            case "platform":
+                break;
+            default:
+                throw new IllegalArgumentException("mode should be platform, virtual or pool, not " + mode);
+        }
+
+        final Factory factory = QBit.factory();
+
+        final long heapBefore = usedHeap();
+        long startTime = System.currentTimeMillis();
+
+        final ServiceBundle serviceBundle = factory.createServiceBundle("/root", queueBuilder);
+        for (int index = 0; index < serviceCount; index++) {
+            serviceBundle.addService("/counter" + index, new CounterService());
+        }
+
+        final long registerTime = System.currentTimeMillis() - startTime;
+        final long heapAfter = usedHeap();
+
+        System.out.printf("%s: registered %,d services in %,d ms, heap %,d KB (%,d bytes per service), %,d live threads%n",
+                mode, serviceCount, registerTime, (heapAfter - heapBefore) / 1024,
+                (heapAfter - heapBefore) / serviceCount, ManagementFactory.getThreadMXBean().getThreadCount());
+
+        final ReceiveQueue<Response<Object>> responses = serviceBundle.responses();
+        final long expected = (long) serviceCount * callsPerService;
+
+        startTime = System.currentTimeMillis();
+
+        for (int call = 0; call < callsPerService; call++) {
+            for (int index = 0; index < serviceCount; index++) {
+                serviceBundle.call(factory.createMethodCallByAddress("/root/counter" + index + "/add",
+                        "client", Lists.list(1), null));
+            }
+            serviceBundle.flushSends();
+        }
+
+        long received = 0;
+        while (received < expected) {
+            final Response<Object> response = responses.pollWait();
+            if (response != null) {
+                received++;
+            } else if (System.currentTimeMillis() - startTime > 120_000) {
+                System.err.println("TIMED OUT with " + received + " of " + expected + " responses");
+                break;
+            }
+        }
+
+        final long duration = System.currentTimeMillis() - startTime;
+
+        System.out.printf("%s: %,d calls in %,d ms, %,d calls per second%n",
+                mode, received, duration, duration == 0 ? received : received * 1000 / duration);
+
+        serviceBundle.stop();
+        System.exit(0);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int index = 0; index < 3; index++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,179 @@
+package io.advantageous.qbit.benchmarks;
+
+import io.advantageous.qbit.Factory;
+import io.advantageous.qbit.QBit;
+import io.advantageous.qbit.boon.BoonServiceProxyFactory;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.queue.ReceiveQueue;
+import io.advantageous.qbit.service.EndPoint;
+import io.advantageous.qbit.service.ServiceBundle;
+import io.advantageous.qbit.service.impl.BoonServiceMethodCallHandler;
+import io.advantageous.qbit.service.impl.MethodHandleServiceMethodCallHandler;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.spi.RegisterBoonWithQBit;
+import org.boon.Lists;
+import org.boon.Str;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method dispatch, from ServiceBundleImpl.call to BoonServiceMethodCallHandler and back.
+ * <p>
+ * invokeByName and invokeByAddress call the handler directly, so they only measure finding and invoking the method.
+ * The methodHandle versions do the same with MethodHandleServiceMethodCallHandler, direct calls the method
+ * without any handler, which is as fast as dispatch can get.
+ * bundleCall sends a batch of calls through the bundle and waits for all of the responses, which adds
+ * routing and the request and response queues.
+ * <p>
+ * proxyCall calls a proxy from BoonServiceProxyFactory, which turns the call into a MethodCall, to an end point
+ * that drops it. reflectProxyCall does the same through a java.lang.reflect.Proxy that works out the address
+ * on every call, the way the factory did before it generated proxy classes.
+ *
+ * @author rhightower
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    static final int CALLS = 100;
+
+    public static class AdderService {
+        int sum;
+
+        public int add(int a, int b) {
+            sum += a + b;
+            return a + b;
+        }
+    }
+
+    BoonServiceMethodCallHandler handler;
+    MethodHandleServiceMethodCallHandler methodHandleHandler;
+    AdderService adderService;
+    MethodCall<Object> callByName;
+    MethodCall<Object> callByAddress;
+
+    public interface Adder {
+        void add(int a, int b);
+    }
+
+    Adder proxy;
+    Adder reflectProxy;
+
+    ServiceBundle serviceBundle;
+    ReceiveQueue<Response<Object>> responses;
+    List<MethodCall<Object>> bundleCalls;
+
+    MethodCall<Object> lastCall;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RegisterBoonWithQBit.registerBoonWithQBit();
+        final Factory factory = QBit.factory();
+
+        handler = new BoonServiceMethodCallHandler();
+        handler.init(new AdderService(), "/services", "/adder");
+        methodHandleHandler = new MethodHandleServiceMethodCallHandler();
+        methodHandleHandler.init(new AdderService(), "/services", "/adder");
+        adderService = new AdderService();
+        callByName = MethodCallImpl.method("add", Lists.list(1, 2));
+        callByAddress = factory.createMethodCallByAddress("/services/adder/add", "", Lists.list(1, 2), null);
+
+        final EndPoint endPoint = new EndPoint() {
+            @Override
+            public String address() {
+                return "/services";
+            }
+
+            @Override
+            public void call(MethodCall<Object> methodCall) {
+                lastCall = methodCall;
+            }
+        };
+        proxy = new BoonServiceProxyFactory().createProxy(Adder.class, "adder", endPoint);
+        reflectProxy = (Adder) Proxy.newProxyInstance(Adder.class.getClassLoader(), new Class[]{Adder.class},
+                (proxyObject, method, args) -> {
+                    endPoint.call(MethodCallImpl.method(0L, Str.add("/services/adder", "/", method.getName()),
+                            "", "/services/adder", method.getName(), 0L, args, null));
+                    return null;
+                });
+
+        serviceBundle = factory.createServiceBundle("/services");
+        serviceBundle.addService("/adder", new AdderService());
+        responses = serviceBundle.responses();
+        bundleCalls = new ArrayList<>(CALLS);
+        for (int index = 0; index < CALLS; index++) {
+            bundleCalls.add(factory.createMethodCallByAddress("/services/adder/add", "client",
+                    Lists.list(index, 1), null));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serviceBundle.stop();
+    }
+
+    @Benchmark
+    public Response<Object> invokeByName() {
+        return handler.receiveMethodCall(callByName);
+    }
+
+    @Benchmark
+    public Response<Object> invokeByAddress() {
+        return handler.receiveMethodCall(callByAddress);
+    }
+
+    @Benchmark
+    public Response<Object> methodHandleInvokeByName() {
+        return methodHandleHandler.receiveMethodCall(callByName);
+    }
+
+    @Benchmark
+    public Response<Object> methodHandleInvokeByAddress() {
+        return methodHandleHandler.receiveMethodCall(callByAddress);
+    }
+
+    @Benchmark
+    public int direct() {
+        return adderService.add(1, 2);
+    }
+
+    @Benchmark
+    public MethodCall<Object> proxyCall() {
+        proxy.add(1, 2);
+        return lastCall;
+    }
+
+    @Benchmark
+    public MethodCall<Object> reflectProxyCall() {
+        reflectProxy.add(1, 2);
+        return lastCall;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public void bundleCall(final Blackhole blackhole) {
+        for (MethodCall<Object> methodCall : bundleCalls) {
+            serviceBundle.call(methodCall);
+        }
+        serviceBundle.flushSends();
+
+        int received = 0;
+        while (received < CALLS) {
+            final Response<Object> response = responses.pollWait();
+            if (response != null) {
+                blackhole.consume(response);
+                received++;
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package io.advantageous.qbit.benchmarks;
+
+import io.advantageous.qbit.message.Message;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
+import io.advantageous.qbit.spi.BinaryProtocolEncoder;
+import io.advantageous.qbit.spi.BinaryProtocolParser;
+import io.advantageous.qbit.spi.BoonProtocolEncoder;
+import io.advantageous.qbit.spi.BoonProtocolParser;
+import io.advantageous.qbit.spi.ProtocolEncoder;
+import io.advantageous.qbit.spi.ProtocolParser;
+import io.advantageous.qbit.util.MultiMap;
+import io.advantageous.qbit.util.MultiMapImpl;
+import org.boon.Lists;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BoonProtocolEncoder and BoonProtocolParser, one message at a time and as a batch.
+ * <p>
+ * The batch benchmarks work on BATCH method calls encoded as one group message, which is what a client flushes.
+ * The binary benchmarks do the same with BinaryProtocolEncoder and BinaryProtocolParser.
+ * encodeBatchToBuffer writes the batch as UTF-8 into one direct buffer that it keeps, the way a server writes to a socket.
+ * The streaming benchmarks hand each message of the batch over as it is parsed instead of returning a list.
+ *
+ * @author rhightower
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBenchmark {
+
+    static final int BATCH = 100;
+
+    ProtocolEncoder encoder;
+    ProtocolParser parser;
+
+    MethodCall<Object> methodCall;
+    String encodedMethodCall;
+
+    Response<Object> response;
+    String encodedResponse;
+
+    List<Message<Object>> batch;
+    String encodedBatch;
+
+    ByteBuffer out;
+
+    BinaryProtocolEncoder binaryEncoder;
+    BinaryProtocolParser binaryParser;
+    ByteBuffer binaryMethodCall;
+    ByteBuffer binaryBatch;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        encoder = new BoonProtocolEncoder();
+        parser = new BoonProtocolParser();
+
+        final MultiMap<String, String> params = new MultiMapImpl<>(ArrayList.class);
+        params.add("client", "benchmark");
+
+        methodCall = MethodCallImpl.method(1L, "/services/adder/add", "/client/1", "adder", "add",
+                System.currentTimeMillis(), Lists.list(1, 2), params);
+        encodedMethodCall = encoder.encodeAsString(methodCall);
+
+        response = new ResponseImpl<>(1L, System.currentTimeMillis(), "/services/adder/add", "/client/1",
+                null, 3);
+        encodedResponse = encoder.encodeAsString(response);
+
+        batch = new ArrayList<>(BATCH);
+        for (int index = 0; index < BATCH; index++) {
+            batch.add(MethodCallImpl.method(index, "/services/adder/add", "/client/1", "adder", "add",
+                    System.currentTimeMillis(), Lists.list(index, 2), params));
+        }
+        encodedBatch = encoder.encodeAsString(batch);
+
+        out = ByteBuffer.allocateDirect(64 * 1024);
+
+        binaryEncoder = new BinaryProtocolEncoder();
+        binaryParser = new BinaryProtocolParser();
+        binaryMethodCall = binaryEncoder.encode(methodCall);
+        binaryBatch = binaryEncoder.encode(batch);
+    }
+
+    @Benchmark
+    public String encodeMethodCall() {
+        return encoder.encodeAsString(methodCall);
+    }
+
+    @Benchmark
+    public MethodCall<Object> parseMethodCall() {
+        return parser.parseMethodCall(encodedMethodCall);
+    }
+
+    @Benchmark
+    public MethodCall<Object> roundTripMethodCall() {
+        return parser.parseMethodCall(encoder.encodeAsString(methodCall));
+    }
+
+    @Benchmark
+    public Response<Object> roundTripResponse() {
+        return parser.parseResponse(encoder.encodeAsString(response));
+    }
+
+    @Benchmark
+    public Response<Object> parseResponse() {
+        return parser.parseResponse(encodedResponse);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public String encodeBatch() {
+        return encoder.encodeAsString(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteBuffer encodeBatchToBuffer() {
+        out.clear();
+        out = encoder.encodeTo(batch, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Message<Object>> parseBatch() {
+        return parser.parse(encodedBatch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseBatchStreaming(final Blackhole blackhole) {
+        parser.parse("", encodedBatch, blackhole::consume);
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncodeMethodCall() {
+        return binaryEncoder.encode(methodCall);
+    }
+
+    @Benchmark
+    public MethodCall<Object> binaryParseMethodCall() {
+        return binaryParser.parseMethodCall(binaryMethodCall);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteBuffer binaryEncodeBatch() {
+        return binaryEncoder.encode(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Message<Object>> binaryParseBatch() {
+        return binaryParser.parse(binaryBatch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void binaryParseBatchStreaming(final Blackhole blackhole) {
+        binaryParser.parse("", binaryBatch, blackhole::consume);
+    }
+}
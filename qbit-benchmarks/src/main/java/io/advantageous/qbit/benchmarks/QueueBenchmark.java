@@ -0,0 +1,174 @@
+package io.advantageous.qbit.benchmarks;
+
+import io.advantageous.qbit.queue.Queue;
+import io.advantageous.qbit.queue.QueueBuilder;
+import io.advantageous.qbit.queue.ReceiveQueue;
+import io.advantageous.qbit.queue.SendQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BasicSendQueue and BasicReceiveQueue across batch sizes and writer and reader counts.
+ * <p>
+ * roundTrip is one thread sending a batch and reading it back, so it shows the cost per item with no contention.
+ * The groups run writers and readers on their own threads: spsc is one writer and one reader,
+ * mpsc is four writers and one reader, mpmc is four writers and four readers on a multi-consumer queue.
+ * Writers back off while the queue is at capacity, so the score of the group is what the readers can keep up with.
+ * <p>
+ * Replaces eyeballing the numbers of QBitQueueMultiWriterMultiReader and friends in the examples module.
+ *
+ * @author rhightower
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    static final int ROUND_TRIP_ITEMS = 1_000;
+
+    /** Items in flight before writers back off. */
+    static final int BACKLOG = 100_000;
+
+    @State(Scope.Group)
+    public static class Shared {
+
+        @Param({"1", "10", "100", "1000"})
+        int batchSize;
+
+        @Param({"false", "true"})
+        boolean ringBuffer;
+
+        Queue<Integer> queue;
+
+        @Setup(Level.Trial)
+        public void setup(final BenchmarkParams params) {
+            final int readers = params.getBenchmark().endsWith("mpmc") ? 4 : 1;
+            queue = QueueBuilder.queueBuilder().batchSize(batchSize).ringBuffer(ringBuffer).consumers(readers)
+                    .build("benchmark");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            queue.stop();
+        }
+    }
+
+    /** Send and receive queues are single threaded, every writer and reader gets its own. */
+    @State(Scope.Thread)
+    public static class Writer {
+        SendQueue<Integer> sendQueue;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(final Shared shared) {
+            sendQueue = shared.queue.sendQueue();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        ReceiveQueue<Integer> receiveQueue;
+
+        @Setup(Level.Trial)
+        public void setup(final Shared shared) {
+            receiveQueue = shared.queue.receiveQueue();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RoundTrip {
+
+        @Param({"1", "10", "100", "1000"})
+        int batchSize;
+
+        @Param({"false", "true"})
+        boolean ringBuffer;
+
+        SendQueue<Integer> sendQueue;
+        ReceiveQueue<Integer> receiveQueue;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(batchSize).ringBuffer(ringBuffer)
+                    .build("benchmark");
+            sendQueue = queue.sendQueue();
+            receiveQueue = queue.receiveQueue();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUND_TRIP_ITEMS)
+    public void roundTrip(final RoundTrip state, final Blackhole blackhole) {
+        for (int index = 0; index < ROUND_TRIP_ITEMS; index++) {
+            state.sendQueue.send(index);
+        }
+        state.sendQueue.flushSends();
+        for (int index = 0; index < ROUND_TRIP_ITEMS; index++) {
+            blackhole.consume(state.receiveQueue.poll());
+        }
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public void spscWrite(final Shared shared, final Writer writer, final Control control) {
+        write(shared, writer, control);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Integer spscRead(final Reader reader, final Control control) {
+        return read(reader, control);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(4)
+    public void mpscWrite(final Shared shared, final Writer writer, final Control control) {
+        write(shared, writer, control);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public Integer mpscRead(final Reader reader, final Control control) {
+        return read(reader, control);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public void mpmcWrite(final Shared shared, final Writer writer, final Control control) {
+        write(shared, writer, control);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public Integer mpmcRead(final Reader reader, final Control control) {
+        return read(reader, control);
+    }
+
+    private static void write(final Shared shared, final Writer writer, final Control control) {
+        while (shared.queue.stats().depth() >= BACKLOG && !control.stopMeasurement) {
+            Thread.yield();
+        }
+        writer.sendQueue.send(writer.next++);
+    }
+
+    /** Spins until there is an item so empty polls do not count as operations. */
+    private static Integer read(final Reader reader, final Control control) {
+        Integer item;
+        while ((item = reader.receiveQueue.poll()) == null && !control.stopMeasurement) {
+            Thread.yield();
+        }
+        return item;
+    }
+}
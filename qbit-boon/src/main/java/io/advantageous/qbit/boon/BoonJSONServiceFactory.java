@@ -1,15 +1,12 @@
 package io.advantageous.qbit.boon;
 
 import io.advantageous.qbit.Factory;
-import io.advantageous.qbit.util.Timer;
-import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.proxy.MethodCallHandler;
+import io.advantageous.qbit.proxy.ProxyClassGenerator;
 import io.advantageous.qbit.proxy.ServiceProxyFactory;
 import io.advantageous.qbit.service.EndPoint;
 import org.boon.Str;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.UUID;
 
 /**
@@ -21,8 +18,6 @@ public class BoonJSONServiceFactory implements ServiceProxyFactory {
     private final Factory factory;
 
 
-    private static volatile long generatedMessageId;
-
 
     public BoonJSONServiceFactory(Factory factory) {
         this.factory = factory;
@@ -44,49 +39,12 @@ public class BoonJSONServiceFactory implements ServiceProxyFactory {
         final String returnAddress = returnAddressArg;
 
 
-        InvocationHandler invocationHandler = new InvocationHandler() {
-
-            long timestamp = Timer.timer().now();
-            int times = 10;
-            long messageId = generatedMessageId+=1_000_000_000;
-
-            @Override
-            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-
-
-                times--;
-                if (times == 0){
-                    timestamp = Timer.timer().now();
-                    times = 10;
-                } else {
-                    timestamp++;
-                }
-
-
-                final String address = Str.add(objectAddress, "/", method.getName());
-
-
-
-                final MethodCall<Object> call = factory.createMethodCallToBeEncodedAndSent(messageId++,
-                        address, returnAddress,
-                        serviceName, method.getName(), timestamp, args, null);
-
-                if (method.getName().equals("toString")) {
-                    return "PROXY OBJECT";
-                }
-
-                serviceBundle.call(call);
-
-                return null;
-            }
-        };
-
-        final Object o = Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-                new Class[]{serviceInterface}, invocationHandler
-        );
-
+        final MethodCallHandler handler = new MethodCallHandler(serviceInterface, objectAddress,
+                (id, address, name, timestamp, args) -> serviceBundle.call(
+                        factory.createMethodCallToBeEncodedAndSent(id, address, returnAddress, serviceName, name,
+                                timestamp, args, null)));
 
-        return (T) o;
+        return ProxyClassGenerator.newProxy(serviceInterface, handler);
 
 
     }
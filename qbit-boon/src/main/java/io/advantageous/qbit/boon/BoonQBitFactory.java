@@ -7,15 +7,20 @@ import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.proxy.ServiceProxyFactory;
 import io.advantageous.qbit.queue.Queue;
+import io.advantageous.qbit.queue.QueueBuilder;
 import io.advantageous.qbit.sender.Sender;
 import io.advantageous.qbit.sender.SenderEndPoint;
 import io.advantageous.qbit.service.BeforeMethodCall;
 import io.advantageous.qbit.service.Service;
 import io.advantageous.qbit.service.ServiceBundle;
+import io.advantageous.qbit.service.ServiceMethodHandler;
 import io.advantageous.qbit.service.impl.BoonServiceMethodCallHandler;
+import io.advantageous.qbit.service.impl.MethodHandleServiceMethodCallHandler;
 import io.advantageous.qbit.service.impl.ServiceBundleImpl;
 import io.advantageous.qbit.service.impl.ServiceImpl;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.spi.BinaryProtocolEncoder;
+import io.advantageous.qbit.spi.BinaryProtocolParser;
 import io.advantageous.qbit.spi.BoonProtocolEncoder;
 import io.advantageous.qbit.spi.BoonProtocolParser;
 import io.advantageous.qbit.spi.ProtocolEncoder;
@@ -26,6 +31,8 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 
 /**
@@ -49,6 +56,7 @@ public class BoonQBitFactory implements Factory {
 
     {
         protocolParserList.add(new BoonProtocolParser());
+        protocolParserList.add(new BinaryProtocolParser());
     }
 
     @Override
@@ -77,6 +85,41 @@ public class BoonQBitFactory implements Factory {
         return parser.parseResponse(message);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public void createResponses(Object body, Consumer<Response<Object>> responses) {
+
+        if (body == null) {
+            return;
+        }
+
+        ProtocolParser parser = selectProtocolParser(body, null);
+        if (parser == null) {
+            parser = defaultProtocol;
+        }
+
+        parser.parse("", body, message -> {
+            if (message instanceof Response) {
+                responses.accept((Response<Object>) message);
+            }
+        });
+    }
+
+    @Override
+    public void createResponses(Object body, LongPredicate wanted, Consumer<Response<Object>> responses) {
+
+        if (body == null) {
+            return;
+        }
+
+        ProtocolParser parser = selectProtocolParser(body, null);
+        if (parser == null) {
+            parser = defaultProtocol;
+        }
+
+        parser.parseResponses(body, wanted, responses);
+    }
+
 
     @Override
     public <T> T createRemoteProxyWithReturnAddress(Class<T> serviceInterface, String address, String serviceName, String returnAddressArg, Sender<String> sender, BeforeMethodCall beforeMethodCall) {
@@ -104,6 +147,27 @@ public class BoonQBitFactory implements Factory {
 
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public void createMethodCallsToBeParsedFromBody(String addressPrefix, Object body,
+                                                    Consumer<MethodCall<Object>> methodCalls) {
+
+        if (body == null) {
+            return;
+        }
+
+        ProtocolParser parser = selectProtocolParser(body, null);
+        if (parser == null) {
+            parser = defaultProtocol;
+        }
+
+        parser.parse(addressPrefix, body, message -> {
+            if (message instanceof MethodCall) {
+                methodCalls.accept((MethodCall<Object>) message);
+            }
+        });
+    }
+
     @Override
     public MethodCall<Object> createMethodCallToBeParsedFromBody(String address,
                                                                  String returnAddress,
@@ -161,6 +225,11 @@ public class BoonQBitFactory implements Factory {
         return new ServiceBundleImpl(path, 50, 5, this, null);
     }
 
+    @Override
+    public ServiceBundle createServiceBundle(String path, QueueBuilder queueBuilder) {
+        return new ServiceBundleImpl(path, queueBuilder, this, null);
+    }
+
 
 
 
@@ -173,14 +242,52 @@ public class BoonQBitFactory implements Factory {
                 object,
                 GlobalConstants.POLL_WAIT, TimeUnit.MILLISECONDS,
                 GlobalConstants.BATCH_SIZE,
-                new BoonServiceMethodCallHandler(),
+                createServiceMethodHandler(),
                 responseQueue
         );
 
     }
 
+    @Override
+    public Service createService(String rootAddress, String serviceAddress, Object object,
+                                 Queue<Response<Object>> responseQueue, QueueBuilder queueBuilder) {
+
+        return new ServiceImpl(
+                rootAddress,
+                serviceAddress,
+                object,
+                queueBuilder,
+                createServiceMethodHandler(),
+                responseQueue
+        );
+    }
+
+    @Override
+    public Service createService(String rootAddress, String serviceAddress, Object object,
+                                 Queue<Response<Object>> responseQueue, Queue<MethodCall<Object>> requestQueue,
+                                 QueueBuilder queueBuilder) {
+
+        return new ServiceImpl(
+                rootAddress,
+                serviceAddress,
+                object,
+                queueBuilder,
+                createServiceMethodHandler(),
+                responseQueue,
+                requestQueue
+        );
+    }
+
+    /**
+     * Method handle invokers if org.qbit.METHOD_HANDLES is set, Boon reflection if not.
+     */
+    private ServiceMethodHandler createServiceMethodHandler() {
+        return GlobalConstants.METHOD_HANDLES ? new MethodHandleServiceMethodCallHandler()
+                : new BoonServiceMethodCallHandler();
+    }
+
     @Override
     public ProtocolEncoder createEncoder() {
-        return new BoonProtocolEncoder();
+        return GlobalConstants.BINARY_PROTOCOL ? new BinaryProtocolEncoder() : new BoonProtocolEncoder();
     }
 }
@@ -1,13 +1,10 @@
 package io.advantageous.qbit.boon;
 
 
-import java.lang.reflect.InvocationHandler;
-
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.UUID;
 
-import io.advantageous.qbit.util.Timer;
+import io.advantageous.qbit.proxy.MethodCallHandler;
+import io.advantageous.qbit.proxy.ProxyClassGenerator;
 import io.advantageous.qbit.proxy.ServiceProxyFactory;
 import io.advantageous.qbit.service.EndPoint;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
@@ -20,8 +17,6 @@ import org.boon.Str;
  */
 public class BoonServiceProxyFactory implements ServiceProxyFactory {
 
-    private static volatile long generatedMessageId;
-
 
     @Override
     public  <T> T createProxyWithReturnAddress(final Class<T> serviceInterface,
@@ -40,47 +35,15 @@ public class BoonServiceProxyFactory implements ServiceProxyFactory {
 
         final String returnAddress = returnAddressArg;
 
-        InvocationHandler invocationHandler = new InvocationHandler() {
-
-            long timestamp = Timer.timer().now();
-            int times = 10;
-            long messageId = generatedMessageId+=1_000_000_000;
-
-            @Override
-            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-
-
-                times--;
-                if (times == 0){
-                    timestamp = Timer.timer().now();
-                    times = 10;
-                } else {
-                    timestamp++;
-                }
-
-
-                final String address = Str.add(objectAddress, "/", method.getName());
-
-                final MethodCallImpl call = MethodCallImpl.method(messageId++,
-                        address, returnAddress,
-                        objectAddress, method.getName(), timestamp, args, null);
-
-
-
-                if (serviceBundle!=null) {
-                    serviceBundle.call(call);
-                }
-
-                return null;
-            }
-        };
-
-        final Object o = Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-                new Class[]{serviceInterface}, invocationHandler
-        );
-
+        final MethodCallHandler handler = new MethodCallHandler(serviceInterface, objectAddress,
+                (id, address, name, timestamp, args) -> {
+                    if (serviceBundle != null) {
+                        serviceBundle.call(MethodCallImpl.method(id, address, returnAddress, objectAddress, name,
+                                timestamp, args, null));
+                    }
+                });
 
-        return (T) o;
+        return ProxyClassGenerator.newProxy(serviceInterface, handler);
 
 
     }
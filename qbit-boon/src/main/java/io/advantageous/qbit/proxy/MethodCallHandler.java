@@ -0,0 +1,72 @@
+package io.advantageous.qbit.proxy;
+
+import io.advantageous.qbit.service.FutureCallback;
+import io.advantageous.qbit.util.MessageIds;
+import io.advantageous.qbit.util.Timer;
+import org.boon.Str;
+
+import java.lang.reflect.Method;
+
+/**
+ * Proxy handler that turns each call into a method call message, what the service proxy factories hand to
+ * ProxyClassGenerator.newProxy.
+ * <p>
+ * Names and addresses are worked out per method once, when the proxy is made. Methods that return a future get a
+ * FutureCallback as their first argument, which completes the future the same way a client Callback is called.
+ *
+ * @author rhightower
+ */
+public final class MethodCallHandler implements ProxyClassGenerator.Handler {
+
+    /**
+     * Makes the method call message and sends it on.
+     */
+    public interface CallSender {
+
+        /**
+         * @param id        message id
+         * @param address   address of the method, object address + "/" + name
+         * @param name      method name
+         * @param timestamp when the call was made
+         * @param args      arguments, with the FutureCallback first for methods that return a future
+         */
+        void send(long id, String address, String name, long timestamp, Object[] args);
+    }
+
+    private final String[] names;
+    private final String[] addresses;
+    private final boolean[] futures;
+    private final CallSender sender;
+    private final Timer timer = Timer.timer();
+
+    public MethodCallHandler(final Class<?> serviceInterface, final String objectAddress, final CallSender sender) {
+        final Method[] methods = ProxyClassGenerator.methods(serviceInterface);
+        this.names = new String[methods.length];
+        this.addresses = new String[methods.length];
+        this.futures = new boolean[methods.length];
+        for (int index = 0; index < methods.length; index++) {
+            names[index] = methods[index].getName();
+            addresses[index] = Str.add(objectAddress, "/", names[index]);
+            futures[index] = FutureCallback.returnsFuture(methods[index]);
+        }
+        this.sender = sender;
+    }
+
+    @Override
+    public Object invoke(final int method, Object[] args) {
+        FutureCallback<Object> callback = null;
+        if (futures[method]) {
+            callback = new FutureCallback<>();
+            final Object[] callbackArgs = new Object[args == null ? 1 : args.length + 1];
+            callbackArgs[0] = callback;
+            if (args != null) {
+                System.arraycopy(args, 0, callbackArgs, 1, args.length);
+            }
+            args = callbackArgs;
+        }
+
+        sender.send(MessageIds.next(), addresses[method], names[method], timer.now(), args);
+
+        return callback == null ? null : callback.future();
+    }
+}
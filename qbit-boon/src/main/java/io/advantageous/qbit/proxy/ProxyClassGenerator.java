@@ -0,0 +1,583 @@
+package io.advantageous.qbit.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates a proxy class per service interface, once, the first time a proxy for the interface is asked for.
+ * <p>
+ * The generated class implements every method of the interface by boxing the arguments into an Object[]
+ * and calling Handler.invoke with the index of the method in methods(serviceInterface), so the handler can keep
+ * whatever it needs per method, like the address, in an array and look it up by index. There is no
+ * java.lang.reflect.Method on the call path. What the handler returns is cast to the return type of the method,
+ * methods that return a primitive return zero or false.
+ * <p>
+ * The class file is written by hand, it is only a constructor and one straight line method per interface method,
+ * so it needs no bytecode library. It is class file version 50, which needs no stack map frames.
+ * <p>
+ * Interfaces the generated class can not implement, because the interface or a return type is not public,
+ * or because two methods differ only by return type, get a java.lang.reflect.Proxy that calls the same handler.
+ *
+ * @author rhightower
+ */
+public final class ProxyClassGenerator {
+
+    /**
+     * What proxies call.
+     */
+    public interface Handler {
+
+        /**
+         * @param method index of the method in methods(serviceInterface)
+         * @param args   arguments of the call, null if there are none, same as java.lang.reflect.Proxy
+         * @return the return value of the call, null for void methods
+         */
+        Object invoke(int method, Object[] args);
+    }
+
+    private static final String HANDLER = Handler.class.getName().replace('.', '/');
+
+    private static final String HANDLER_DESCRIPTOR = "L" + HANDLER + ";";
+
+    private static final AtomicLong classCount = new AtomicLong();
+
+    private static final ClassValue<ProxyClass> proxyClasses = new ClassValue<ProxyClass>() {
+        @Override
+        protected ProxyClass computeValue(final Class<?> serviceInterface) {
+            return new ProxyClass(serviceInterface);
+        }
+    };
+
+    private ProxyClassGenerator() {
+    }
+
+    /**
+     * @return the methods of the interface that proxies forward, in the order of the indexes the handler gets
+     */
+    public static Method[] methods(final Class<?> serviceInterface) {
+        return proxyClasses.get(serviceInterface).methods.clone();
+    }
+
+    /**
+     * @return true if proxies of the interface are generated classes, false if they are java.lang.reflect.Proxy
+     */
+    public static boolean generated(final Class<?> serviceInterface) {
+        return proxyClasses.get(serviceInterface).constructor != null;
+    }
+
+    /**
+     * Creates a proxy that sends every call to the handler.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T newProxy(final Class<T> serviceInterface, final Handler handler) {
+        if (!serviceInterface.isInterface()) {
+            throw new IllegalArgumentException(serviceInterface + " is not an interface");
+        }
+        return (T) proxyClasses.get(serviceInterface).newProxy(handler);
+    }
+
+
+    private static final class ProxyClass {
+
+        private final Class<?> serviceInterface;
+
+        private final Method[] methods;
+
+        /* Null if the interface gets java.lang.reflect.Proxy proxies. */
+        private final Constructor<?> constructor;
+
+        /* Index by method, for java.lang.reflect.Proxy proxies. */
+        private final Map<Method, Integer> indexes;
+
+        ProxyClass(final Class<?> serviceInterface) {
+            this.serviceInterface = serviceInterface;
+            this.methods = proxyMethods(serviceInterface);
+
+            Constructor<?> constructor = null;
+            if (canGenerate(serviceInterface, methods)) {
+                try {
+                    final String name = "io.advantageous.qbit.proxy.generated.$Proxy" + classCount.incrementAndGet()
+                            + "$" + serviceInterface.getSimpleName();
+                    final byte[] classFile = new ClassFileWriter(name, serviceInterface, methods).write();
+                    final ProxyClassLoader loader = new ProxyClassLoader(serviceInterface.getClassLoader());
+                    loader.define(name, classFile);
+                    /* Initializing verifies the class now, so a class the JVM rejects falls back to Proxy. */
+                    constructor = Class.forName(name, true, loader).getConstructor(Handler.class);
+                } catch (IOException | ReflectiveOperationException | LinkageError ex) {
+                    constructor = null;
+                }
+            }
+            this.constructor = constructor;
+
+            final Map<Method, Integer> indexes = new HashMap<>();
+            for (int index = 0; index < methods.length; index++) {
+                indexes.put(methods[index], index);
+            }
+            this.indexes = indexes;
+        }
+
+        Object newProxy(final Handler handler) {
+            if (constructor != null) {
+                try {
+                    return constructor.newInstance(handler);
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException("Unable to create proxy for " + serviceInterface, ex);
+                }
+            }
+
+            final InvocationHandler invocationHandler = (proxy, method, args) -> {
+                final Integer index = indexes.get(method);
+                if (index != null) {
+                    return handler.invoke(index, args);
+                }
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Proxy for " + serviceInterface.getName();
+                    default:
+                        return handler.invoke(indexOfSignature(method), args);
+                }
+            };
+            return Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class[]{serviceInterface},
+                    invocationHandler);
+        }
+
+        /* Proxies can hand over a Method of a super interface that is a duplicate of one we kept. */
+        private int indexOfSignature(final Method method) {
+            for (int index = 0; index < methods.length; index++) {
+                if (methods[index].getName().equals(method.getName())
+                        && Arrays.equals(methods[index].getParameterTypes(), method.getParameterTypes())) {
+                    return index;
+                }
+            }
+            throw new IllegalStateException("Not a method of " + serviceInterface + ": " + method);
+        }
+    }
+
+    /**
+     * Public non static methods, one per signature, sorted so the indexes are the same every run.
+     */
+    private static Method[] proxyMethods(final Class<?> serviceInterface) {
+        final Map<String, Method> methods = new TreeMap<>();
+        for (Method method : serviceInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            final String key = method.getName() + parameterDescriptor(method.getParameterTypes())
+                    + descriptor(method.getReturnType());
+            methods.putIfAbsent(key, method);
+        }
+        return methods.values().toArray(new Method[methods.size()]);
+    }
+
+    private static boolean canGenerate(final Class<?> serviceInterface, final Method[] methods) {
+        if (!isPublic(serviceInterface)) {
+            return false;
+        }
+        final Set<String> signatures = new HashSet<>();
+        for (Method method : methods) {
+            if (!signatures.add(method.getName() + parameterDescriptor(method.getParameterTypes()))) {
+                return false;
+            }
+            if (!method.getReturnType().isPrimitive() && !isPublic(method.getReturnType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        for (Class<?> enclosing = type; enclosing != null; enclosing = enclosing.getEnclosingClass()) {
+            if (!Modifier.isPublic(enclosing.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String parameterDescriptor(final Class<?>[] types) {
+        final StringBuilder builder = new StringBuilder("(");
+        for (Class<?> type : types) {
+            builder.append(descriptor(type));
+        }
+        return builder.append(')').toString();
+    }
+
+    private static String descriptor(final Class<?> type) {
+        if (type == void.class) {
+            return "V";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        } else if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        } else {
+            return "L" + type.getName().replace('.', '/') + ";";
+        }
+    }
+
+
+    /**
+     * Loads one generated class. Its parent is the loader of the interface, the handler interface always comes
+     * from our loader, in case the loader of the interface can not see QBit.
+     */
+    private static final class ProxyClassLoader extends ClassLoader {
+
+        ProxyClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (name.equals(Handler.class.getName())) {
+                return Handler.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        void define(final String name, final byte[] classFile) {
+            defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+
+    /**
+     * Writes the class file of a proxy class.
+     */
+    private static final class ClassFileWriter {
+
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private static final int ACONST_NULL = 0x01;
+        private static final int ICONST_0 = 0x03;
+        private static final int LCONST_0 = 0x09;
+        private static final int FCONST_0 = 0x0b;
+        private static final int DCONST_0 = 0x0e;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int ILOAD = 0x15;
+        private static final int LLOAD = 0x16;
+        private static final int FLOAD = 0x17;
+        private static final int DLOAD = 0x18;
+        private static final int ALOAD = 0x19;
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int AASTORE = 0x53;
+        private static final int POP = 0x57;
+        private static final int DUP = 0x59;
+        private static final int IRETURN = 0xac;
+        private static final int LRETURN = 0xad;
+        private static final int FRETURN = 0xae;
+        private static final int DRETURN = 0xaf;
+        private static final int ARETURN = 0xb0;
+        private static final int RETURN = 0xb1;
+        private static final int GETFIELD = 0xb4;
+        private static final int PUTFIELD = 0xb5;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int INVOKEINTERFACE = 0xb9;
+        private static final int ANEWARRAY = 0xbd;
+        private static final int CHECKCAST = 0xc0;
+
+        private final String name;
+        private final Class<?> serviceInterface;
+        private final Method[] methods;
+
+        private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constants = new DataOutputStream(constantBytes);
+        private final Map<String, Integer> constantIndexes = new HashMap<>();
+        private int constantCount = 1;
+
+        ClassFileWriter(final String name, final Class<?> serviceInterface, final Method[] methods) {
+            this.name = name.replace('.', '/');
+            this.serviceInterface = serviceInterface;
+            this.methods = methods;
+        }
+
+        byte[] write() throws IOException {
+            final int thisClass = classConstant(name);
+            final int superClass = classConstant("java/lang/Object");
+            final int interfaceClass = classConstant(serviceInterface.getName().replace('.', '/'));
+            final int handlerField = memberConstant(9, name, "handler", HANDLER_DESCRIPTOR);
+            final int invoke = memberConstant(11, HANDLER, "invoke", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+
+            final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+            /* Fields: the handler. */
+            body.writeShort(1);
+            body.writeShort(ACC_PRIVATE | ACC_FINAL);
+            body.writeShort(utf8("handler"));
+            body.writeShort(utf8(HANDLER_DESCRIPTOR));
+            body.writeShort(0);
+
+            body.writeShort(methods.length + 1);
+            writeConstructor(body, handlerField);
+            for (int index = 0; index < methods.length; index++) {
+                writeMethod(body, methods[index], index, handlerField, invoke);
+            }
+
+            /* Class attributes. */
+            body.writeShort(0);
+
+            final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(50);
+            out.writeShort(constantCount);
+            constants.flush();
+            constantBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            body.flush();
+            bodyBytes.writeTo(out);
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private void writeConstructor(final DataOutputStream body, final int handlerField) throws IOException {
+            final ByteArrayOutputStream code = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(code);
+            out.writeByte(ALOAD_0);
+            out.writeByte(INVOKESPECIAL);
+            out.writeShort(memberConstant(10, "java/lang/Object", "<init>", "()V"));
+            out.writeByte(ALOAD_0);
+            out.writeByte(ALOAD_1);
+            out.writeByte(PUTFIELD);
+            out.writeShort(handlerField);
+            out.writeByte(RETURN);
+            out.flush();
+
+            body.writeShort(ACC_PUBLIC);
+            body.writeShort(utf8("<init>"));
+            body.writeShort(utf8("(" + HANDLER_DESCRIPTOR + ")V"));
+            writeCode(body, code.toByteArray(), 2, 2);
+        }
+
+        /**
+         * return (R) handler.invoke(index, new Object[]{arg0, arg1, ...}), with primitive arguments boxed,
+         * or handler.invoke(index, null) for methods without arguments.
+         */
+        private void writeMethod(final DataOutputStream body, final Method method, final int index,
+                                 final int handlerField, final int invoke) throws IOException {
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            final Class<?> returnType = method.getReturnType();
+
+            final ByteArrayOutputStream code = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(code);
+            out.writeByte(ALOAD_0);
+            out.writeByte(GETFIELD);
+            out.writeShort(handlerField);
+            pushInt(out, index);
+            if (parameterTypes.length == 0) {
+                out.writeByte(ACONST_NULL);
+            } else {
+                pushInt(out, parameterTypes.length);
+                out.writeByte(ANEWARRAY);
+                out.writeShort(classConstant("java/lang/Object"));
+            }
+
+            int slot = 1;
+            for (int parameter = 0; parameter < parameterTypes.length; parameter++) {
+                final Class<?> type = parameterTypes[parameter];
+                out.writeByte(DUP);
+                pushInt(out, parameter);
+                out.writeByte(loadOpcode(type));
+                out.writeByte(slot);
+                if (type.isPrimitive()) {
+                    final String box = boxName(type);
+                    out.writeByte(INVOKESTATIC);
+                    out.writeShort(memberConstant(10, box, "valueOf", "(" + descriptor(type) + ")L" + box + ";"));
+                }
+                out.writeByte(AASTORE);
+                slot += type == long.class || type == double.class ? 2 : 1;
+            }
+
+            out.writeByte(INVOKEINTERFACE);
+            out.writeShort(invoke);
+            out.writeByte(3);
+            out.writeByte(0);
+
+            if (returnType == void.class) {
+                out.writeByte(POP);
+                out.writeByte(RETURN);
+            } else if (!returnType.isPrimitive()) {
+                if (returnType != Object.class) {
+                    out.writeByte(CHECKCAST);
+                    out.writeShort(classConstant(returnType.isArray() ? descriptor(returnType)
+                            : returnType.getName().replace('.', '/')));
+                }
+                out.writeByte(ARETURN);
+            } else {
+                out.writeByte(POP);
+                if (returnType == long.class) {
+                    out.writeByte(LCONST_0);
+                    out.writeByte(LRETURN);
+                } else if (returnType == float.class) {
+                    out.writeByte(FCONST_0);
+                    out.writeByte(FRETURN);
+                } else if (returnType == double.class) {
+                    out.writeByte(DCONST_0);
+                    out.writeByte(DRETURN);
+                } else {
+                    out.writeByte(ICONST_0);
+                    out.writeByte(IRETURN);
+                }
+            }
+            out.flush();
+
+            body.writeShort(ACC_PUBLIC | ACC_FINAL);
+            body.writeShort(utf8(method.getName()));
+            body.writeShort(utf8(parameterDescriptor(parameterTypes) + descriptor(returnType)));
+            /* handler, index, array, array, index, value that takes two slots. */
+            writeCode(body, code.toByteArray(), 7, slot);
+        }
+
+        private void writeCode(final DataOutputStream body, final byte[] code,
+                               final int maxStack, final int maxLocals) throws IOException {
+            body.writeShort(1);
+            body.writeShort(utf8("Code"));
+            body.writeInt(12 + code.length);
+            body.writeShort(maxStack);
+            body.writeShort(maxLocals);
+            body.writeInt(code.length);
+            body.write(code);
+            body.writeShort(0);
+            body.writeShort(0);
+        }
+
+        private static void pushInt(final DataOutputStream out, final int value) throws IOException {
+            if (value <= 5) {
+                out.writeByte(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                out.writeByte(BIPUSH);
+                out.writeByte(value);
+            } else {
+                out.writeByte(SIPUSH);
+                out.writeShort(value);
+            }
+        }
+
+        private static int loadOpcode(final Class<?> type) {
+            if (type == long.class) {
+                return LLOAD;
+            } else if (type == float.class) {
+                return FLOAD;
+            } else if (type == double.class) {
+                return DLOAD;
+            } else if (type.isPrimitive()) {
+                return ILOAD;
+            }
+            return ALOAD;
+        }
+
+        private static String boxName(final Class<?> type) {
+            if (type == int.class) {
+                return "java/lang/Integer";
+            } else if (type == long.class) {
+                return "java/lang/Long";
+            } else if (type == boolean.class) {
+                return "java/lang/Boolean";
+            } else if (type == byte.class) {
+                return "java/lang/Byte";
+            } else if (type == char.class) {
+                return "java/lang/Character";
+            } else if (type == short.class) {
+                return "java/lang/Short";
+            } else if (type == float.class) {
+                return "java/lang/Float";
+            }
+            return "java/lang/Double";
+        }
+
+        private int utf8(final String value) throws IOException {
+            final Integer existing = constantIndexes.get("U" + value);
+            if (existing != null) {
+                return existing;
+            }
+            constants.writeByte(1);
+            constants.writeUTF(value);
+            return add("U" + value);
+        }
+
+        private int classConstant(final String internalName) throws IOException {
+            final Integer existing = constantIndexes.get("C" + internalName);
+            if (existing != null) {
+                return existing;
+            }
+            final int nameIndex = utf8(internalName);
+            constants.writeByte(7);
+            constants.writeShort(nameIndex);
+            return add("C" + internalName);
+        }
+
+        /**
+         * @param tag 9 for a field, 10 for a class method, 11 for an interface method
+         */
+        private int memberConstant(final int tag, final String owner, final String memberName,
+                                   final String descriptor) throws IOException {
+            final String key = tag + owner + "." + memberName + descriptor;
+            final Integer existing = constantIndexes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            final int ownerIndex = classConstant(owner);
+            final int nameIndex = utf8(memberName);
+            final int descriptorIndex = utf8(descriptor);
+
+            final String nameAndTypeKey = "N" + memberName + descriptor;
+            Integer nameAndType = constantIndexes.get(nameAndTypeKey);
+            if (nameAndType == null) {
+                constants.writeByte(12);
+                constants.writeShort(nameIndex);
+                constants.writeShort(descriptorIndex);
+                nameAndType = add(nameAndTypeKey);
+            }
+
+            constants.writeByte(tag);
+            constants.writeShort(ownerIndex);
+            constants.writeShort(nameAndType);
+            return add(key);
+        }
+
+        private int add(final String key) {
+            final int index = constantCount++;
+            constantIndexes.put(key, index);
+            return index;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.advantageous.qbit.service.impl;
 
 import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.util.AddressRouter;
 import io.advantageous.qbit.util.MultiMap;
 import io.advantageous.qbit.bindings.ArgParamBinding;
 import io.advantageous.qbit.bindings.MethodBinding;
@@ -13,7 +14,6 @@ import io.advantageous.qbit.service.method.impl.ResponseImpl;
 import org.boon.Lists;
 import org.boon.Pair;
 import org.boon.Str;
-import org.boon.StringScanner;
 import org.boon.core.Conversions;
 import org.boon.core.TypeType;
 import org.boon.core.reflection.Annotated;
@@ -44,6 +44,13 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
 
     private Map<String, Pair<MethodBinding, MethodAccess>> methodMap = new LinkedHashMap<>();
 
+    private AddressRouter.Builder<Pair<MethodBinding, MethodAccess>> routerBuilder = AddressRouter.addressRouter();
+
+    /**
+     * Routes addresses with path variables, built in init.
+     */
+    private AddressRouter<Pair<MethodBinding, MethodAccess>> router;
+
     private SendQueue<Response<Object>> responseSendQueue;
 
     @Override
@@ -79,16 +86,13 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
 
     private Response<Object> invokeByAddressWithComplexBinding(MethodCall<Object> methodCall) {
 
-        String mAddress = addresses.lower(methodCall.address());
+        final AddressRouter.Route<Pair<MethodBinding, MethodAccess>> route = router.route(methodCall.address());
 
-        if (!methodCall.address().startsWith(mAddress)) {
+        if (route == null) {
             throw new IllegalArgumentException("Method not found: " + methodCall);
         }
 
-        final String[] split = StringScanner.split(methodCall.address(), '/');
-
-
-        Pair<MethodBinding, MethodAccess> binding = methodMap.get(mAddress);
+        final Pair<MethodBinding, MethodAccess> binding = route.target();
 
         final MethodBinding methodBinding = binding.getFirst();
 
@@ -98,50 +102,20 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
         final List<TypeType> paramEnumTypes = methodAccess.paramTypeEnumList();
 
         final List<Object> args = prepareArgumentList(methodCall, methodAccess.parameterTypes());
-        final List<List<AnnotationData>> annotationDataForParams = methodAccess.annotationDataForParams();
-
-        for (ArgParamBinding param : parameters) {
-            final int uriPosition = param.getUriPosition();
-            final int methodParamPosition = param.getMethodParamPosition();
-            final String paramName = param.getMethodParamName();
-            if (uriPosition != -1) {
-
-                if (uriPosition > split.length) {
-                    die("Parameter position is more than param length of method", methodAccess);
-                } else {
-                    String paramAtPos = split[uriPosition];
-                    Object arg = Conversions.coerce(paramEnumTypes.get(methodParamPosition),
-                            parameterTypes[methodParamPosition], paramAtPos
-                    );
-                    args.set(methodParamPosition, arg);
-                }
-            } else {
-                if (Str.isEmpty(paramName)) {
-                    die("Parameter name not supplied in URI path var");
-                }
-
-                for (int index = 0; index < parameterTypes.length; index++) {
-                    final List<AnnotationData> paramsAnnotationData = annotationDataForParams.get(index);
-                    String name = "";
-                    for (AnnotationData paramAnnotation : paramsAnnotationData) {
-                        if (paramAnnotation.getName().equalsIgnoreCase("name")
-                                || paramAnnotation.getName().equalsIgnoreCase("PathVariable")) {
-                            name = (String) paramAnnotation.getValues().get("value");
-                            if (!Str.isEmpty(name)) {
-                                break;
-                            }
-                        }
-                    }
-                    if (paramName.equals(name)) {
-
-                        Object arg = Conversions.coerce(paramEnumTypes.get(index),
-                                parameterTypes[index],
-                                split[index]);
-                        args.set(index, arg);
-                    }
-                }
 
+        /* Path variables are captured in the order they are in the address, same as the parameter bindings. */
+        final int count = Math.min(parameters.size(), route.count());
+        for (int index = 0; index < count; index++) {
+            final int methodParamPosition = parameters.get(index).getMethodParamPosition();
+            if (methodParamPosition == -1) {
+                continue;
+            }
+            if (methodParamPosition >= parameterTypes.length) {
+                die("Parameter position is more than param length of method", methodAccess);
             }
+            final Object arg = Conversions.coerce(paramEnumTypes.get(methodParamPosition),
+                    parameterTypes[methodParamPosition], route.value(index));
+            args.set(methodParamPosition, arg);
         }
 
 
@@ -425,6 +399,8 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
         }
 
         addresses.addAll(methodMap.keySet());
+        router = routerBuilder.build();
+        routerBuilder = null;
     }
 
     private void registerMethod(MethodAccess methodAccess) {
@@ -462,8 +438,9 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
         }
 
 
+        final String uri = Str.join('/', address, methodAddress);
         MethodBinding methodBinding =
-                new MethodBinding(methodAccess.name(), Str.join('/', address, methodAddress));
+                new MethodBinding(methodAccess.name(), uri);
 
 
         final List<List<AnnotationData>> annotationDataForParams = methodAccess.annotationDataForParams();
@@ -487,7 +464,38 @@ public class BoonServiceMethodCallHandler implements ServiceMethodHandler {
             index++;
         }
 
-        this.methodMap.put(methodBinding.address(), new Pair<>(methodBinding, methodAccess));
+        bindPathVariablesByName(methodBinding, annotationDataForParams);
+
+        final Pair<MethodBinding, MethodAccess> pair = new Pair<>(methodBinding, methodAccess);
+        this.methodMap.put(methodBinding.address(), pair);
+        this.routerBuilder.add(uri, pair);
+    }
+
+    /**
+     * Path variables like {id} go to the parameter annotated with Name or PathVariable id,
+     * look them up once here instead of on every call.
+     */
+    private void bindPathVariablesByName(MethodBinding methodBinding,
+                                         List<List<AnnotationData>> annotationDataForParams) {
+        for (ArgParamBinding param : methodBinding.parameters()) {
+            if (param.getMethodParamPosition() != -1) {
+                continue;
+            }
+            final String paramName = param.getMethodParamName();
+            if (Str.isEmpty(paramName)) {
+                die("Parameter name not supplied in URI path var");
+            }
+            for (int index = 0; index < annotationDataForParams.size(); index++) {
+                for (AnnotationData paramAnnotation : annotationDataForParams.get(index)) {
+                    if (paramAnnotation.getName().equalsIgnoreCase("name")
+                            || paramAnnotation.getName().equalsIgnoreCase("PathVariable")) {
+                        if (paramName.equals(paramAnnotation.getValues().get("value"))) {
+                            param.setMethodParamPosition(index);
+                        }
+                    }
+                }
+            }
+        }
     }
 
 
@@ -0,0 +1,303 @@
+package io.advantageous.qbit.service.impl;
+
+import io.advantageous.qbit.bindings.MethodBinding;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.queue.SendQueue;
+import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.service.ServiceMethodHandler;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
+import org.boon.Pair;
+import org.boon.Str;
+import org.boon.core.Conversions;
+import org.boon.core.reflection.MethodAccess;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Service method handler that calls service methods through method handles built once in init,
+ * instead of going through Boon reflection on every call.
+ * <p>
+ * Every public method gets an invoker: a method handle bound to the service that takes the arguments as an
+ * Object[], the array it reuses for every call, and a converter per parameter that was picked up front
+ * from the parameter type. Calls by name and calls by address to methods without path variables or request
+ * parameters go through the invokers. Everything else, overloaded methods, path variables, request parameters
+ * and the queue callbacks, is handed to a BoonServiceMethodCallHandler, which also reads the addresses.
+ * <p>
+ * Like the Boon handler, an instance belongs to one service and is called from that service's thread.
+ *
+ * @author rhightower
+ */
+public class MethodHandleServiceMethodCallHandler implements ServiceMethodHandler {
+
+    private final BoonServiceMethodCallHandler boonHandler = new BoonServiceMethodCallHandler();
+
+    private final Map<String, Invoker> invokersByName = new HashMap<>();
+
+    private final Map<String, Invoker> invokersByAddress = new HashMap<>();
+
+    private SendQueue<Response<Object>> responseSendQueue;
+
+    @Override
+    public void init(Object service, String rootAddress, String serviceAddress) {
+        boonHandler.init(service, rootAddress, serviceAddress);
+
+        final Map<Method, Invoker> invokersByMethod = new HashMap<>();
+        final Set<String> overloaded = new HashSet<>();
+
+        for (Method method : service.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class || method.isBridge()
+                    || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            final Invoker invoker = Invoker.invoker(service, method);
+            if (invoker == null) {
+                continue;
+            }
+            invokersByMethod.put(method, invoker);
+            if (invokersByName.put(method.getName(), invoker) != null) {
+                overloaded.add(method.getName());
+            }
+        }
+        /* Which one of an overloaded method to call is up to Boon. */
+        invokersByName.keySet().removeAll(overloaded);
+
+        for (Map.Entry<String, Pair<MethodBinding, MethodAccess>> entry : boonHandler.methodMap().entrySet()) {
+            final MethodBinding binding = entry.getValue().getFirst();
+            if (binding.hasRequestParamBindings() || !binding.parameters().isEmpty()) {
+                continue;
+            }
+            final Invoker invoker = invokersByMethod.get(entry.getValue().getSecond().method());
+            if (invoker != null) {
+                invokersByAddress.put(entry.getKey(), invoker);
+            }
+        }
+    }
+
+    @Override
+    public Response<Object> receiveMethodCall(MethodCall<Object> methodCall) {
+        final Invoker invoker;
+        if (methodCall.name() != null && !methodCall.name().isEmpty()) {
+            invoker = invokersByName.get(methodCall.name());
+        } else {
+            invoker = invokersByAddress.get(methodCall.address());
+        }
+
+        if (invoker == null) {
+            return boonHandler.receiveMethodCall(methodCall);
+        }
+
+        final Object returnValue;
+        try {
+            returnValue = invoker.invoke(methodCall, responseSendQueue);
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable ex) {
+            return new ResponseImpl<>(methodCall, ex);
+        }
+
+        if (invoker.isVoid) {
+            return ServiceConstants.VOID;
+        }
+        return ResponseImpl.response(
+                methodCall.id(),
+                methodCall.timestamp(),
+                methodCall.name(),
+                methodCall.returnAddress(),
+                returnValue);
+    }
+
+    @Override
+    public String address() {
+        return boonHandler.address();
+    }
+
+    @Override
+    public Collection<String> addresses() {
+        return boonHandler.addresses();
+    }
+
+    @Override
+    public void initQueue(SendQueue<Response<Object>> responseSendQueue) {
+        this.responseSendQueue = responseSendQueue;
+        boonHandler.initQueue(responseSendQueue);
+    }
+
+    @Override
+    public void receive(MethodCall<Object> item) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void empty() {
+        boonHandler.empty();
+    }
+
+    @Override
+    public void limit() {
+        boonHandler.limit();
+    }
+
+    @Override
+    public void shutdown() {
+        boonHandler.shutdown();
+    }
+
+    @Override
+    public void idle() {
+        boonHandler.idle();
+    }
+
+
+    /**
+     * Calls one service method. Maps the body of a call to the arguments the same way the Boon handler does.
+     */
+    static final class Invoker {
+
+        /** Takes an Object[] of arguments, returns the return value or null for void. */
+        private final MethodHandle handle;
+
+        /** Null for Callback parameters, they get a callback that sends the response. */
+        private final Function<Object, Object>[] converters;
+
+        private final Object[] args;
+
+        private final boolean isVoid;
+
+        private Invoker(final MethodHandle handle, final Function<Object, Object>[] converters, final boolean isVoid) {
+            this.handle = handle;
+            this.converters = converters;
+            this.args = new Object[converters.length];
+            this.isVoid = isVoid;
+        }
+
+        /**
+         * @return the invoker or null if the method can not be turned into a method handle
+         */
+        @SuppressWarnings("unchecked")
+        static Invoker invoker(final Object service, final Method method) {
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            final MethodHandle handle;
+            try {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method)
+                        .bindTo(service)
+                        .asSpreader(Object[].class, parameterTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException | RuntimeException ex) {
+                return null;
+            }
+
+            final Function<Object, Object>[] converters = new Function[parameterTypes.length];
+            for (int index = 0; index < parameterTypes.length; index++) {
+                converters[index] = parameterTypes[index] == Callback.class ? null : converter(parameterTypes[index]);
+            }
+            final Class<?> returnType = method.getReturnType();
+            return new Invoker(handle, converters, returnType == void.class || returnType == Void.class);
+        }
+
+        Object invoke(final MethodCall<Object> methodCall,
+                      final SendQueue<Response<Object>> responseSendQueue) throws Throwable {
+            final Object[] args = this.args;
+            try {
+                for (int index = 0; index < args.length; index++) {
+                    if (converters[index] == null) {
+                        args[index] = new BoonServiceMethodCallHandler.BoonCallBackWrapper(responseSendQueue, methodCall);
+                    }
+                }
+                bindArguments(methodCall);
+                return (Object) handle.invokeExact(args);
+            } finally {
+                Arrays.fill(args, null);
+            }
+        }
+
+        private void bindArguments(final MethodCall<Object> methodCall) {
+            final int count = args.length;
+            if (count == 0) {
+                return;
+            }
+
+            final Object body = methodCall.body();
+
+            if (count == 1 && converters[0] != null
+                    && (body == null || (body instanceof String && Str.isEmpty(body)))) {
+                args[0] = converters[0].apply(methodCall.params());
+                return;
+            }
+
+            if (body instanceof List) {
+                final List<?> list = (List<?>) body;
+                /* A client can send its callback as the first argument, it is not an argument of the method. */
+                int next = list.size() - 1 == count && list.get(0) instanceof Callback ? 1 : 0;
+                for (int index = 0; index < count && next < list.size(); index++) {
+                    if (converters[index] != null) {
+                        args[index] = converters[index].apply(list.get(next++));
+                    }
+                }
+            } else if (body instanceof Object[]) {
+                final Object[] array = (Object[]) body;
+                final int offset = array.length - 1 == count && array[0] instanceof Callback ? 1 : 0;
+                /* Unlike lists, arrays keep a slot for each callback, so they line up with the parameters. */
+                for (int index = 0; index < count && index + offset < array.length; index++) {
+                    if (converters[index] != null) {
+                        args[index] = converters[index].apply(array[index + offset]);
+                    }
+                }
+            } else if (count == 1 && converters[0] != null) {
+                args[0] = converters[0].apply(body);
+            }
+        }
+
+        /**
+         * Picks the conversion for a parameter type once, values that already have the right type pass through.
+         */
+        static Function<Object, Object> converter(final Class<?> type) {
+            if (type == Object.class) {
+                return value -> value;
+            }
+            if (type == int.class || type == Integer.class) {
+                return numberConverter(type, Integer.class, Number::intValue);
+            }
+            if (type == long.class || type == Long.class) {
+                return numberConverter(type, Long.class, Number::longValue);
+            }
+            if (type == double.class || type == Double.class) {
+                return numberConverter(type, Double.class, Number::doubleValue);
+            }
+            if (type == float.class || type == Float.class) {
+                return numberConverter(type, Float.class, Number::floatValue);
+            }
+            if (type == short.class || type == Short.class) {
+                return numberConverter(type, Short.class, Number::shortValue);
+            }
+            if (type == byte.class || type == Byte.class) {
+                return numberConverter(type, Byte.class, Number::byteValue);
+            }
+            final Class<?> boxed = type == boolean.class ? Boolean.class : type == char.class ? Character.class : type;
+            final boolean primitive = type.isPrimitive();
+            return value -> boxed.isInstance(value) || (value == null && !primitive)
+                    ? value : Conversions.coerce(type, value);
+        }
+
+        private static Function<Object, Object> numberConverter(final Class<?> type, final Class<?> boxed,
+                                                                final Function<Number, Object> fromNumber) {
+            final boolean primitive = type.isPrimitive();
+            return value -> {
+                if (boxed.isInstance(value) || (value == null && !primitive)) {
+                    return value;
+                }
+                if (value instanceof Number) {
+                    return fromNumber.apply((Number) value);
+                }
+                return Conversions.coerce(type, value);
+            };
+        }
+    }
+}
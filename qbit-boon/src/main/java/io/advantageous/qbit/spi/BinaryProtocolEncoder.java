@@ -0,0 +1,383 @@
+package io.advantageous.qbit.spi;
+
+import io.advantageous.qbit.message.Message;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.util.ByteBuffers;
+import io.advantageous.qbit.util.MultiMap;
+import org.boon.core.reflection.fields.FieldAccess;
+import org.boon.json.JsonSerializer;
+import org.boon.json.JsonSerializerFactory;
+import org.boon.json.serializers.FieldFilter;
+import org.boon.primitive.CharBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.advantageous.qbit.service.Protocol.*;
+
+/**
+ * Binary protocol encoder, read by BinaryProtocolParser.
+ * <p>
+ * A frame starts with PROTOCOL_BINARY_MARKER and the same version markers as the text protocol,
+ * 'a' for a method call, 'r' for a response and 'g' for a group of them.
+ * Ids and timestamps are varints. Strings are UTF-8 and interned per frame: the first time a string is written it
+ * gets the next index in the frame's string table, after that only the index is written, so a group of calls to
+ * the same address carries the address once. Arguments and response bodies are JSON, each one prefixed with its
+ * length, so the parser can find the next field without scanning them.
+ * <p>
+ * Layout, with str for an interned string and v for a varint:
+ * <pre>
+ * frame     := MARKER ('a' call | 'r' response | 'g' v:count (('a' call | 'r' response))*)
+ * call      := v:id v:timestamp str:address str:returnAddress str:objectName str:name map:headers map:params
+ *              v:argCount (v:length json)*
+ * response  := v:id v:timestamp str:address str:returnAddress v:length json?
+ * str       := v:0 null | v:1 v:length utf8 (new table entry) | v:(index + 2)
+ * map       := v:0 null | v:(entries + 1) (str:key v:valueCount str:value*)*
+ * </pre>
+ * The encodeAsString methods return the frame as a ISO-8859-1 string, one char per byte, for transports that
+ * only move strings. Websockets should send the ByteBuffer as a binary frame instead.
+ * The encodeTo methods write the frame bytes as they are into the caller's buffer.
+ *
+ * @author rhightower
+ */
+public class BinaryProtocolEncoder implements ProtocolEncoder {
+
+    private static ThreadLocal<JsonSerializer> jsonSerializer = new ThreadLocal<JsonSerializer>() {
+        @Override
+        protected JsonSerializer initialValue() {
+            return new JsonSerializerFactory().addFilter(
+                    new FieldFilter() {
+                        @Override
+                        public boolean include(Object parent, FieldAccess fieldAccess) {
+                            return !fieldAccess.name().equals("metaClass");
+                        }
+                    }
+            ).create();
+        }
+    };
+
+    private static ThreadLocal<Writer> writers = new ThreadLocal<Writer>() {
+        @Override
+        protected Writer initialValue() {
+            return new Writer();
+        }
+    };
+
+    public ByteBuffer encode(final MethodCall<Object> methodCall) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1);
+        encodeMethodCall(writer, methodCall);
+        return writer.toByteBuffer();
+    }
+
+    public ByteBuffer encode(final Response<Object> response) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1_RESPONSE);
+        encodeResponse(writer, response);
+        return writer.toByteBuffer();
+    }
+
+    public ByteBuffer encode(final Iterable<? extends Message<Object>> messages) {
+        final Writer writer = writers.get().start();
+        encodeGroup(writer, messages);
+        return writer.toByteBuffer();
+    }
+
+    @Override
+    public String encodeAsString(final Response<Object> response) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1_RESPONSE);
+        encodeResponse(writer, response);
+        return writer.toLatin1String();
+    }
+
+    @Override
+    public String encodeAsString(final MethodCall<Object> methodCall) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1);
+        encodeMethodCall(writer, methodCall);
+        return writer.toLatin1String();
+    }
+
+    @Override
+    public String encodeAsString(final List<Message<Object>> messages) {
+        return encodeGroupAsString(messages);
+    }
+
+    @Override
+    public String encodeGroupAsString(final Iterable<? extends Message<Object>> messages) {
+        final Writer writer = writers.get().start();
+        encodeGroup(writer, messages);
+        return writer.toLatin1String();
+    }
+
+    @Override
+    public ByteBuffer encodeTo(final Response<Object> response, final ByteBuffer out) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1_RESPONSE);
+        encodeResponse(writer, response);
+        return writer.writeTo(out);
+    }
+
+    @Override
+    public ByteBuffer encodeTo(final MethodCall<Object> methodCall, final ByteBuffer out) {
+        final Writer writer = writers.get().start();
+        writer.writeByte(PROTOCOL_VERSION_1);
+        encodeMethodCall(writer, methodCall);
+        return writer.writeTo(out);
+    }
+
+    @Override
+    public ByteBuffer encodeTo(final Iterable<? extends Message<Object>> messages, final ByteBuffer out) {
+        final Writer writer = writers.get().start();
+        encodeGroup(writer, messages);
+        return writer.writeTo(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void encodeGroup(final Writer writer, final Iterable<? extends Message<Object>> messages) {
+        writer.writeByte(PROTOCOL_VERSION_1_GROUP);
+
+        /* The count goes first, so an iterable that can only be walked once is copied. */
+        final Collection<? extends Message<Object>> collection;
+        if (messages instanceof Collection) {
+            collection = (Collection<? extends Message<Object>>) messages;
+        } else {
+            final List<Message<Object>> list = new ArrayList<>();
+            messages.forEach(list::add);
+            collection = list;
+        }
+
+        int count = 0;
+        for (Message<Object> message : collection) {
+            if (message instanceof MethodCall || message instanceof Response) {
+                count++;
+            }
+        }
+        writer.writeVarLong(count);
+
+        for (Message<Object> message : collection) {
+            if (message instanceof MethodCall) {
+                writer.writeByte(PROTOCOL_VERSION_1);
+                encodeMethodCall(writer, (MethodCall<Object>) message);
+            } else if (message instanceof Response) {
+                writer.writeByte(PROTOCOL_VERSION_1_RESPONSE);
+                encodeResponse(writer, (Response<Object>) message);
+            }
+        }
+    }
+
+    private void encodeMethodCall(final Writer writer, final MethodCall<Object> methodCall) {
+        writer.writeVarLong(methodCall.id());
+        writer.writeVarLong(methodCall.timestamp());
+        writer.writeString(methodCall.address());
+        writer.writeString(methodCall.returnAddress());
+        writer.writeString(methodCall.objectName());
+        writer.writeString(methodCall.name());
+        writer.writeMultiMap(methodCall.headers());
+        writer.writeMultiMap(methodCall.params());
+
+        final Object body = methodCall.body();
+        if (body instanceof Collection) {
+            final Collection<?> args = (Collection<?>) body;
+            writer.writeVarLong(args.size());
+            for (Object arg : args) {
+                writer.writeJson(arg);
+            }
+        } else if (body instanceof Iterable) {
+            int count = 0;
+            for (Object ignored : (Iterable<?>) body) {
+                count++;
+            }
+            writer.writeVarLong(count);
+            for (Object arg : (Iterable<?>) body) {
+                writer.writeJson(arg);
+            }
+        } else if (body instanceof Object[]) {
+            final Object[] args = (Object[]) body;
+            writer.writeVarLong(args.length);
+            for (Object arg : args) {
+                writer.writeJson(arg);
+            }
+        } else if (body != null) {
+            writer.writeVarLong(1);
+            writer.writeJson(body);
+        } else {
+            writer.writeVarLong(0);
+        }
+    }
+
+    private void encodeResponse(final Writer writer, final Response<Object> response) {
+        writer.writeVarLong(response.id());
+        writer.writeVarLong(response.timestamp());
+        writer.writeString(response.address());
+        writer.writeString(response.returnAddress());
+
+        final Object body = response.body();
+        if (body != null) {
+            writer.writeJson(body);
+        } else {
+            writer.writeVarLong(0);
+        }
+    }
+
+
+    /**
+     * Growable byte buffer plus the string table of the frame it is writing. One per thread, reused.
+     */
+    private static final class Writer {
+
+        private byte[] bytes = new byte[1024];
+
+        private int length;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private final CharBuf json = CharBuf.createCharBuf(256);
+
+        Writer start() {
+            length = 0;
+            strings.clear();
+            writeByte(PROTOCOL_BINARY_MARKER);
+            return this;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+        }
+
+        String toLatin1String() {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+
+        ByteBuffer writeTo(final ByteBuffer out) {
+            final ByteBuffer buffer = ByteBuffers.ensure(out, length);
+            buffer.put(bytes, 0, length);
+            return buffer;
+        }
+
+        private void ensure(final int more) {
+            if (length + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+            }
+        }
+
+        void writeByte(final int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Unsigned LEB128, seven bits per byte, high bit set on every byte but the last.
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeString(final String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            final Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeVarLong(1);
+            writeUtf8(value);
+        }
+
+        void writeMultiMap(final MultiMap<String, String> map) {
+            if (map == null) {
+                writeVarLong(0);
+                return;
+            }
+            final Map<? extends String, ? extends Collection<String>> baseMap = map.baseMap();
+            int entries = 0;
+            for (Collection<String> values : baseMap.values()) {
+                if (values.size() > 0) {
+                    entries++;
+                }
+            }
+            writeVarLong(entries + 1);
+            for (Map.Entry<? extends String, ? extends Collection<String>> entry : baseMap.entrySet()) {
+                final Collection<String> values = entry.getValue();
+                if (values.size() == 0) {
+                    continue;
+                }
+                writeString(entry.getKey());
+                writeVarLong(values.size());
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+        }
+
+        void writeJson(final Object value) {
+            json.recycle();
+            jsonSerializer.get().serialize(json, value);
+            writeUtf8(json);
+        }
+
+        /**
+         * Length prefixed UTF-8, written straight from the chars without making a byte[] first.
+         */
+        void writeUtf8(final CharSequence chars) {
+            final int count = chars.length();
+            int utf8Length = 0;
+            for (int index = 0; index < count; index++) {
+                final char c = chars.charAt(index);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && index + 1 < count
+                        && Character.isLowSurrogate(chars.charAt(index + 1))) {
+                    utf8Length += 4;
+                    index++;
+                } else {
+                    utf8Length += 3;
+                }
+            }
+
+            writeVarLong(utf8Length);
+            ensure(utf8Length);
+
+            for (int index = 0; index < count; index++) {
+                final char c = chars.charAt(index);
+                if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && index + 1 < count
+                        && Character.isLowSurrogate(chars.charAt(index + 1))) {
+                    final int codePoint = Character.toCodePoint(c, chars.charAt(++index));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    /* Lone surrogates go out as the three byte form, same as they came in. */
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+}
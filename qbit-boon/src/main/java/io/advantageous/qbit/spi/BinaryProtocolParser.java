@@ -0,0 +1,387 @@
+package io.advantageous.qbit.spi;
+
+import io.advantageous.qbit.message.Message;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
+import io.advantageous.qbit.util.MultiMap;
+import io.advantageous.qbit.util.MultiMapImpl;
+import org.boon.Str;
+import org.boon.json.JsonParserAndMapper;
+import org.boon.json.JsonParserFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+import static io.advantageous.qbit.service.Protocol.*;
+import static org.boon.Exceptions.die;
+
+/**
+ * Parses the frames written by BinaryProtocolEncoder, see it for the layout.
+ * <p>
+ * Takes a ByteBuffer, a byte[] or a ISO-8859-1 string of the bytes, and reads a ByteBuffer from its position
+ * without changing it. supports only looks at the first two bytes, so text and binary frames can come in over
+ * the same connection and each one goes to its parser.
+ * <p>
+ * Addresses, return addresses and method names repeat from frame to frame, so the parser keeps a small cache of
+ * the strings it decoded and hands out the cached string when the bytes match, instead of a new one.
+ *
+ * @author rhightower
+ */
+public class BinaryProtocolParser implements ProtocolParser {
+
+    private static ThreadLocal<JsonParserAndMapper> jsonParserThreadLocal = new ThreadLocal<JsonParserAndMapper>() {
+        @Override
+        protected JsonParserAndMapper initialValue() {
+            return new JsonParserFactory().create();
+        }
+    };
+
+    private static final int STRING_CACHE_SIZE = 1024;
+
+    /**
+     * Decoded strings by hash of their bytes. Strings are immutable, so threads racing on a slot at worst
+     * decode a string that another thread already cached.
+     */
+    private final String[] stringCache = new String[STRING_CACHE_SIZE];
+
+    @Override
+    public boolean supports(final Object body, final MultiMap<String, String> params) {
+        if (body instanceof ByteBuffer) {
+            final ByteBuffer buffer = (ByteBuffer) body;
+            return buffer.remaining() > 1
+                    && buffer.get(buffer.position()) == PROTOCOL_BINARY_MARKER
+                    && isVersion(buffer.get(buffer.position() + 1));
+        } else if (body instanceof byte[]) {
+            final byte[] bytes = (byte[]) body;
+            return bytes.length > 1 && bytes[0] == PROTOCOL_BINARY_MARKER && isVersion(bytes[1]);
+        } else if (body instanceof String) {
+            final String string = (String) body;
+            return string.length() > 1 && string.charAt(0) == PROTOCOL_BINARY_MARKER && isVersion(string.charAt(1));
+        }
+        return false;
+    }
+
+    private static boolean isVersion(final int version) {
+        return version == PROTOCOL_VERSION_1 || version == PROTOCOL_VERSION_1_RESPONSE
+                || version == PROTOCOL_VERSION_1_GROUP;
+    }
+
+    @Override
+    public MethodCall<Object> parseMethodCall(final Object body) {
+        return parseMethodCallUsingAddressPrefix("", body);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public MethodCall<Object> parseMethodCallUsingAddressPrefix(final String addressPrefix, final Object body) {
+        final Reader reader = reader(body);
+        if (reader == null || reader.version != PROTOCOL_VERSION_1) {
+            return null;
+        }
+        return parseMethodCall(reader, addressPrefix);
+    }
+
+    @Override
+    public List<Message<Object>> parse(final Object body) {
+        final Reader reader = reader(body);
+        if (reader == null) {
+            return null;
+        }
+
+        switch (reader.version) {
+            case PROTOCOL_VERSION_1:
+                return Collections.singletonList(parseMethodCall(reader, ""));
+            case PROTOCOL_VERSION_1_RESPONSE:
+                return Collections.singletonList(parseResponse(reader));
+            default:
+                final int count = (int) reader.readVarLong();
+                final List<Message<Object>> messages = new ArrayList<>(count);
+                parseGroup(reader, "", count, messages::add);
+                return messages;
+        }
+    }
+
+    @Override
+    public void parse(final String addressPrefix, final Object body, final Consumer<Message<Object>> messages) {
+        final Reader reader = reader(body);
+        if (reader == null) {
+            return;
+        }
+
+        switch (reader.version) {
+            case PROTOCOL_VERSION_1:
+                messages.accept(parseMethodCall(reader, addressPrefix));
+                break;
+            case PROTOCOL_VERSION_1_RESPONSE:
+                messages.accept(parseResponse(reader));
+                break;
+            default:
+                parseGroup(reader, addressPrefix, (int) reader.readVarLong(), messages);
+        }
+    }
+
+    private void parseGroup(final Reader reader, final String addressPrefix, final int count,
+                            final Consumer<Message<Object>> messages) {
+        for (int index = 0; index < count; index++) {
+            final int version = reader.readByte();
+            if (version == PROTOCOL_VERSION_1) {
+                messages.accept(parseMethodCall(reader, addressPrefix));
+            } else if (version == PROTOCOL_VERSION_1_RESPONSE) {
+                messages.accept(parseResponse(reader));
+            } else {
+                die("Unsupported message in group", version);
+            }
+        }
+    }
+
+    /**
+     * Reads only the message id of each response until it knows the response is wanted. Skipped responses
+     * still have their strings read, later messages in the frame can refer to them, but not their body.
+     */
+    @Override
+    public void parseResponses(final Object body, final LongPredicate wanted,
+                               final Consumer<Response<Object>> responses) {
+        final Reader reader = reader(body);
+        if (reader == null) {
+            return;
+        }
+
+        switch (reader.version) {
+            case PROTOCOL_VERSION_1_RESPONSE:
+                parseResponse(reader, wanted, responses);
+                break;
+            case PROTOCOL_VERSION_1_GROUP:
+                final int count = (int) reader.readVarLong();
+                for (int index = 0; index < count; index++) {
+                    final int version = reader.readByte();
+                    if (version == PROTOCOL_VERSION_1_RESPONSE) {
+                        parseResponse(reader, wanted, responses);
+                    } else if (version == PROTOCOL_VERSION_1) {
+                        /* Read past it, the strings it adds to the table can be used by the next messages. */
+                        parseMethodCall(reader, "");
+                    } else {
+                        die("Unsupported message in group", version);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void parseResponse(final Reader reader, final LongPredicate wanted,
+                               final Consumer<Response<Object>> responses) {
+        final long id = reader.readVarLong();
+        if (wanted.test(id)) {
+            responses.accept(parseResponse(reader, id));
+        } else {
+            reader.readVarLong();
+            reader.readString();
+            reader.readString();
+            reader.skipJson();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<MethodCall<Object>> parseMethods(final Object body) {
+        return (List<MethodCall<Object>>) (Object) parse(body);
+    }
+
+    @Override
+    public Response<Object> parseResponse(final Object body) {
+        final Reader reader = reader(body);
+        if (reader == null || reader.version != PROTOCOL_VERSION_1_RESPONSE) {
+            return null;
+        }
+        return parseResponse(reader);
+    }
+
+    private Reader reader(final Object body) {
+        if (!supports(body, null)) {
+            return null;
+        }
+        final ByteBuffer buffer;
+        if (body instanceof ByteBuffer) {
+            buffer = ((ByteBuffer) body).duplicate();
+        } else if (body instanceof byte[]) {
+            buffer = ByteBuffer.wrap((byte[]) body);
+        } else {
+            buffer = ByteBuffer.wrap(((String) body).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        buffer.get();
+        return new Reader(buffer, buffer.get());
+    }
+
+    private MethodCall<Object> parseMethodCall(final Reader reader, final String addressPrefix) {
+        final long id = reader.readVarLong();
+        final long timestamp = reader.readVarLong();
+        final String address = reader.readString();
+        String returnAddress = reader.readString();
+        final String objectName = reader.readString();
+        final String methodName = reader.readString();
+        final MultiMap<String, String> headers = reader.readMultiMap();
+        final MultiMap<String, String> params = reader.readMultiMap();
+
+        if (!Str.isEmpty(addressPrefix)) {
+            returnAddress = Str.add(addressPrefix, "" + ((char) PROTOCOL_ARG_SEPARATOR), returnAddress);
+        }
+
+        final int argCount = (int) reader.readVarLong();
+        final List<Object> args = new ArrayList<>(argCount);
+        for (int index = 0; index < argCount; index++) {
+            args.add(reader.readJson());
+        }
+
+        final MethodCallImpl methodCall = MethodCallImpl.method(id, address, returnAddress, objectName, methodName,
+                timestamp, args, params);
+        methodCall.headers(headers);
+        return methodCall;
+    }
+
+    private Response<Object> parseResponse(final Reader reader) {
+        return parseResponse(reader, reader.readVarLong());
+    }
+
+    private Response<Object> parseResponse(final Reader reader, final long id) {
+        final long timestamp = reader.readVarLong();
+        final String address = reader.readString();
+        final String returnAddress = reader.readString();
+        final Object body = reader.readJson();
+        return new ResponseImpl<>(id, timestamp, address, returnAddress, null, body);
+    }
+
+
+    /**
+     * Reads one frame, holds the frame's string table.
+     */
+    private final class Reader {
+
+        private final ByteBuffer buffer;
+
+        private final int version;
+
+        private final List<String> strings = new ArrayList<>();
+
+        private Reader(final ByteBuffer buffer, final int version) {
+            this.buffer = buffer;
+            this.version = version;
+        }
+
+        int readByte() {
+            return buffer.get();
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                final byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    die("Malformed varint in binary frame");
+                }
+            }
+        }
+
+        String readString() {
+            final long ref = readVarLong();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref == 1) {
+                final String value = decode((int) readVarLong());
+                strings.add(value);
+                return value;
+            }
+            return strings.get((int) (ref - 2));
+        }
+
+        MultiMap<String, String> readMultiMap() {
+            final int entries = (int) readVarLong() - 1;
+            if (entries < 0) {
+                return null;
+            }
+            final MultiMap<String, String> map = new MultiMapImpl<>();
+            for (int entry = 0; entry < entries; entry++) {
+                final String key = readString();
+                final int values = (int) readVarLong();
+                for (int index = 0; index < values; index++) {
+                    map.add(key, readString());
+                }
+            }
+            return map;
+        }
+
+        Object readJson() {
+            final int length = (int) readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            final byte[] json = new byte[length];
+            buffer.get(json);
+            return jsonParserThreadLocal.get().parse(json);
+        }
+
+        void skipJson() {
+            final int length = (int) readVarLong();
+            buffer.position(buffer.position() + length);
+        }
+
+        /**
+         * Decodes a UTF-8 string of length bytes, or returns the cached one with the same bytes.
+         */
+        private String decode(final int length) {
+            final int start = buffer.position();
+            int hash = 0;
+            boolean ascii = true;
+            for (int index = start; index < start + length; index++) {
+                final byte b = buffer.get(index);
+                hash = 31 * hash + b;
+                ascii &= b >= 0;
+            }
+
+            if (!ascii) {
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            final int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+            final String cached = stringCache[slot];
+            if (cached != null && matches(cached, start, length)) {
+                buffer.position(start + length);
+                return cached;
+            }
+
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            final String value = new String(bytes, StandardCharsets.ISO_8859_1);
+            stringCache[slot] = value;
+            return value;
+        }
+
+        private boolean matches(final String cached, final int start, final int length) {
+            if (cached.length() != length) {
+                return false;
+            }
+            for (int index = 0; index < length; index++) {
+                if (cached.charAt(index) != buffer.get(start + index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -5,12 +5,14 @@ import io.advantageous.qbit.message.Message;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.service.Protocol;
+import io.advantageous.qbit.util.ByteBuffers;
 import org.boon.core.reflection.fields.FieldAccess;
 import org.boon.json.JsonSerializer;
 import org.boon.json.JsonSerializerFactory;
 import org.boon.json.serializers.FieldFilter;
 import org.boon.primitive.CharBuf;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +22,9 @@ import static io.advantageous.qbit.service.Protocol.*;
 
 /**
  * Protocol encoder.
+ * <p>
+ * Encodes into a CharBuf that each thread reuses. The encodeTo methods write the chars of that buffer
+ * straight into the caller's ByteBuffer as UTF-8, and the encode methods append to a CharBuf the caller owns.
  *
  * @author Rick Hightower
  */
@@ -39,42 +44,114 @@ public class BoonProtocolEncoder implements ProtocolEncoder {
         }
     };
 
+    /**
+     * Buffer each thread encodes into, so encoding does not grow a new buffer for every message.
+     * A buffer that grew past MAX_RECYCLED_BUFFER for a big message is dropped, so threads do not hold on to it.
+     */
+    private static ThreadLocal<CharBuf> buffers = new ThreadLocal<CharBuf>() {
+        @Override
+        protected CharBuf initialValue() {
+            return CharBuf.createCharBuf(1000);
+        }
+    };
+
+    private static final int MAX_RECYCLED_BUFFER = 64 * 1024;
+
+    private static CharBuf buffer() {
+        final CharBuf buf = buffers.get();
+        buf.recycle();
+        return buf;
+    }
+
+    private static void done(final CharBuf buf) {
+        if (buf.len() > MAX_RECYCLED_BUFFER) {
+            buffers.remove();
+        }
+    }
+
     @Override
     public String encodeAsString(Response<Object> response) {
-        CharBuf buf = CharBuf.createCharBuf();
-        encodeAsString(buf, response);
-        return buf.toString();
+        final CharBuf buf = buffer();
+        encode(buf, response);
+        final String string = buf.toString();
+        done(buf);
+        return string;
     }
 
     @Override
     public String encodeAsString(MethodCall<Object> methodCall) {
-        CharBuf buf = CharBuf.createCharBuf();
-        encodeAsString(buf, methodCall);
-        return buf.toString();
+        final CharBuf buf = buffer();
+        encode(buf, methodCall);
+        final String string = buf.toString();
+        done(buf);
+        return string;
     }
 
     @Override
     public String encodeAsString(List<Message<Object>> methodCalls) {
-        CharBuf buf = CharBuf.createCharBuf(1000);
+        return encodeGroupAsString(methodCalls);
+    }
+
+    @Override
+    public String encodeGroupAsString(Iterable<? extends Message<Object>> messages) {
+        final CharBuf buf = buffer();
+        encode(buf, messages);
+        final String string = buf.toString();
+        done(buf);
+        return string;
+    }
+
+    @Override
+    public ByteBuffer encodeTo(Response<Object> response, ByteBuffer out) {
+        final CharBuf buf = buffer();
+        encode(buf, response);
+        out = ByteBuffers.putUtf8(out, buf);
+        done(buf);
+        return out;
+    }
+
+    @Override
+    public ByteBuffer encodeTo(MethodCall<Object> methodCall, ByteBuffer out) {
+        final CharBuf buf = buffer();
+        encode(buf, methodCall);
+        out = ByteBuffers.putUtf8(out, buf);
+        done(buf);
+        return out;
+    }
+
+    @Override
+    public ByteBuffer encodeTo(Iterable<? extends Message<Object>> messages, ByteBuffer out) {
+        final CharBuf buf = buffer();
+        encode(buf, messages);
+        out = ByteBuffers.putUtf8(out, buf);
+        done(buf);
+        return out;
+    }
+
+    /**
+     * Appends the messages as one group message to a buffer the caller owns.
+     */
+    @SuppressWarnings("unchecked")
+    public void encode(CharBuf buf, Iterable<? extends Message<Object>> messages) {
 
         buf.addChar(PROTOCOL_MARKER);
         buf.addChar(PROTOCOL_VERSION_1_GROUP);
 
-        for (Message<Object> message : methodCalls) {
+        for (Message<Object> message : messages) {
 
             if (message instanceof MethodCall) {
-                encodeAsString(buf, (MethodCall<Object>) message);
+                encode(buf, (MethodCall<Object>) message);
             } else if (message instanceof Response) {
-                encodeAsString(buf, (Response<Object>) message);
+                encode(buf, (Response<Object>) message);
             }
             buf.addChar(PROTOCOL_MESSAGE_SEPARATOR);
         }
-
-        return buf.toString();
-
     }
 
-    private void encodeAsString(CharBuf buf, MethodCall<Object> methodCall) {
+    /**
+     * Appends the method call to a buffer the caller owns.
+     */
+    public void encode(CharBuf buf, MethodCall<Object> methodCall) {
         buf.addChar(PROTOCOL_MARKER);
         buf.addChar(PROTOCOL_VERSION_1);
         buf.addChar(PROTOCOL_SEPARATOR);
@@ -117,7 +194,10 @@ public class BoonProtocolEncoder implements ProtocolEncoder {
     }
 
 
-    private void encodeAsString(CharBuf buf, Response<Object> response) {
+    /**
+     * Appends the response to a buffer the caller owns.
+     */
+    public void encode(CharBuf buf, Response<Object> response) {
         buf.addChar(PROTOCOL_MARKER);
         buf.addChar(PROTOCOL_VERSION_1_RESPONSE);
         buf.addChar(PROTOCOL_SEPARATOR);
@@ -5,7 +5,6 @@ import io.advantageous.qbit.util.MultiMapImpl;
 import io.advantageous.qbit.message.Message;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
-import io.advantageous.qbit.service.Protocol;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
 import io.advantageous.qbit.service.method.impl.ResponseImpl;
 import org.boon.Lists;
@@ -13,11 +12,12 @@ import org.boon.Str;
 import org.boon.core.reflection.FastStringUtils;
 import org.boon.json.JsonParserAndMapper;
 import org.boon.json.JsonParserFactory;
-import org.boon.primitive.CharScanner;
-import org.boon.primitive.Chr;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 import static io.advantageous.qbit.service.Protocol.*;
 import static org.boon.Exceptions.die;
@@ -98,18 +98,11 @@ public class BoonProtocolParser implements ProtocolParser {
             final char versionMarker = chars[VERSION_MARKER_POSITION];
 
             if (versionMarker == PROTOCOL_VERSION_1) {
-                return Lists.list((Message<Object>)handleFastBodySubmissionVersion1Chars("", chars));
+                return Lists.list(parseMessageFromChars("", chars));
             } else if (versionMarker == PROTOCOL_VERSION_1_GROUP){
 
-                final char[][] methodCalls = CharScanner.splitFrom(chars,
-                        (char) PROTOCOL_MESSAGE_SEPARATOR, 2);
-
-                List<Message<Object>> messages = new ArrayList<>(methodCalls.length);
-                for (char[] methodCall : methodCalls) {
-                    final Message<Object> m = parseMessageFromChars("", methodCall);
-                    messages.add(m);
-                }
-
+                final List<Message<Object>> messages = new ArrayList<>();
+                parseGroup("", chars, messages::add);
                 return messages;
 
 
@@ -128,76 +121,131 @@ public class BoonProtocolParser implements ProtocolParser {
         return  (List<MethodCall<Object>>) (Object) parse(body);
     }
 
+    /**
+     * Walks a group message once and hands each message to the consumer as soon as it is parsed.
+     * Fields are parsed where they are in the message, nothing is split into copies first.
+     */
     @Override
-    public Response<Object> parseResponse(Object body) {
+    public void parse(String addressPrefix, Object body, Consumer<Message<Object>> messages) {
 
-        if (body instanceof  String) {
-            final char[] args = FastStringUtils.toCharArray((String) body);
-            if (args.length > 2 &&
-                    args[PROTOCOL_MARKER_POSITION]
-                            == PROTOCOL_MARKER) {
+        if (!(body instanceof String) || ((String) body).isEmpty()) {
+            return;
+        }
 
-                final char versionMarker = args[VERSION_MARKER_POSITION];
+        final char[] chars = FastStringUtils.toCharArray((String) body);
 
-                if (versionMarker == PROTOCOL_VERSION_1_RESPONSE) {
+        if (chars.length > 2 && chars[PROTOCOL_MARKER_POSITION] == PROTOCOL_MARKER) {
+            if (chars[VERSION_MARKER_POSITION] == PROTOCOL_VERSION_1_GROUP) {
+                parseGroup(addressPrefix, chars, messages);
+            } else {
+                final Message<Object> message = parseMessageFromChars(addressPrefix, chars);
+                if (message != null) {
+                    messages.accept(message);
+                }
+            }
+        }
+    }
 
+    private void parseGroup(String addressPrefix, char[] chars, Consumer<Message<Object>> messages) {
+        final int[] fields = new int[ARGS_POS + 1];
 
-                    return parseResponseFromChars("", args);
-                } else {
-                    return null;
+        int start = VERSION_MARKER_POSITION + 1;
+        while (start < chars.length) {
+            int end = indexOf(chars, PROTOCOL_MESSAGE_SEPARATOR, start, chars.length);
+            if (end == -1) {
+                end = chars.length;
+            }
+            if (end > start) {
+                final Message<Object> message = parseMessage(addressPrefix, chars, start, end, fields);
+                if (message != null) {
+                    messages.accept(message);
                 }
             }
+            start = end + 1;
+        }
+    }
 
+    /**
+     * Reads only the message id of each response until it knows the response is wanted.
+     */
+    @Override
+    public void parseResponses(Object body, LongPredicate wanted, Consumer<Response<Object>> responses) {
 
+        if (!(body instanceof String) || ((String) body).isEmpty()) {
+            return;
         }
-        return null;
-    }
 
-    private Response<Object> parseResponseFromChars(String addressPrefix, char[] args) {
-        final char[][] chars = CharScanner.splitFromStartWithLimit(args,
-                (char) PROTOCOL_SEPARATOR, 0, METHOD_NAME_POS + 2);
+        final char[] chars = FastStringUtils.toCharArray((String) body);
 
+        if (chars.length <= 2 || chars[PROTOCOL_MARKER_POSITION] != PROTOCOL_MARKER) {
+            return;
+        }
 
-        String messageId = FastStringUtils.noCopyStringFromChars(chars[
-                MESSAGE_ID_POS]);
+        final int[] fields = new int[ARGS_POS + 1];
 
-        long id = 0L;
-        if (!Str.isEmpty(messageId)) {
-            id = Long.parseLong(messageId);
+        if (chars[VERSION_MARKER_POSITION] != PROTOCOL_VERSION_1_GROUP) {
+            parseResponse(chars, 0, chars.length, fields, wanted, responses);
+            return;
         }
 
-        String address = FastStringUtils.noCopyStringFromChars(chars[
-                ADDRESS_POS]);
+        int start = VERSION_MARKER_POSITION + 1;
+        while (start < chars.length) {
+            int end = indexOf(chars, PROTOCOL_MESSAGE_SEPARATOR, start, chars.length);
+            if (end == -1) {
+                end = chars.length;
+            }
+            if (end > start) {
+                parseResponse(chars, start, end, fields, wanted, responses);
+            }
+            start = end + 1;
+        }
+    }
 
-        String returnAddress = FastStringUtils.noCopyStringFromChars(chars[
-                RETURN_ADDRESS_POS]);
+    /**
+     * Parses the message between start and end if it is a response and its id is wanted.
+     */
+    private void parseResponse(char[] chars, int start, int end, int[] fields,
+                               LongPredicate wanted, Consumer<Response<Object>> responses) {
 
+        if (end - start > 2 && chars[start + PROTOCOL_MARKER_POSITION] == PROTOCOL_MARKER
+                && chars[start + VERSION_MARKER_POSITION] == PROTOCOL_VERSION_1_RESPONSE) {
 
+            findFields(chars, start, end, fields);
 
+            if (wanted.test(number(chars, fields, MESSAGE_ID_POS, end))) {
+                responses.accept(parseResponse(chars, start, end, fields));
+            }
+        }
+    }
 
-        String stime = FastStringUtils.noCopyStringFromChars(chars[
-                TIMESTAMP_POS]);
+    @Override
+    public Response<Object> parseResponse(Object body) {
 
-        long timestamp = 0L;
+        if (body instanceof  String) {
+            final char[] args = FastStringUtils.toCharArray((String) body);
+            if (args.length > 2 &&
+                    args[PROTOCOL_MARKER_POSITION]
+                            == PROTOCOL_MARKER) {
 
-        if (!Str.isEmpty(stime)) {
-            timestamp = Long.parseLong(stime);
-        }
+                final char versionMarker = args[VERSION_MARKER_POSITION];
 
-        char[] messageBodyChars = chars[ ARGS_POS ];
+                if (versionMarker == PROTOCOL_VERSION_1_RESPONSE) {
 
-        Object messageBody=null;
-        if (!Chr.isEmpty(messageBodyChars)) {
-            messageBody = jsonParserThreadLocal.get().parse(messageBodyChars);
-        } else {
-            messageBody = null;
-        }
-        return new ResponseImpl<>( id,  timestamp,  address,  returnAddress, null, messageBody);
 
+                    return parseResponseFromChars("", args);
+                } else {
+                    return null;
+                }
+            }
 
 
+        }
+        return null;
     }
 
+    private Response<Object> parseResponseFromChars(String addressPrefix, char[] args) {
+        return parseResponse(args, 0, args.length, findFields(args, 0, args.length, new int[ARGS_POS + 1]));
+    }
 
     private static ThreadLocal<JsonParserAndMapper> jsonParserThreadLocal = new ThreadLocal<JsonParserAndMapper>() {
         @Override
@@ -219,98 +267,150 @@ public class BoonProtocolParser implements ProtocolParser {
 
 
     private Message<Object> parseMessageFromChars(String addressPrefix, char[] chars) {
+        return parseMessage(addressPrefix, chars, 0, chars.length, new int[ARGS_POS + 1]);
+    }
 
 
-        if (chars.length > 2 &&
-                chars[PROTOCOL_MARKER_POSITION]
-                        == PROTOCOL_MARKER) {
+    /**
+     * Parses the message between start and end.
+     * @param fields scratch space for where the fields start, reused from message to message
+     */
+    private Message<Object> parseMessage(String addressPrefix, char[] chars, int start, int end, int[] fields) {
 
-            final char versionMarker = chars[VERSION_MARKER_POSITION];
+        if (end - start > 2 && chars[start + PROTOCOL_MARKER_POSITION] == PROTOCOL_MARKER) {
+
+            final char versionMarker = chars[start + VERSION_MARKER_POSITION];
+
+            findFields(chars, start, end, fields);
 
             if (versionMarker == PROTOCOL_VERSION_1) {
-                return handleFastBodySubmissionVersion1Chars(addressPrefix, chars);
+                return parseMethodCall(addressPrefix, chars, end, fields);
             } else if (versionMarker == PROTOCOL_VERSION_1_RESPONSE) {
-                return parseResponseFromChars(addressPrefix, chars);
+                return parseResponse(chars, start, end, fields);
             }
             else {
-                die("Unsupported method call", new String(chars));
+                die("Unsupported method call", new String(chars, start, end - start));
                 return null;
             }
         }
         return null;
     }
 
+    /**
+     * Finds where each field starts. A field ends one char before the next field starts,
+     * the args run to the end of the message. Missing fields start at the end, so they are empty.
+     */
+    private static int[] findFields(char[] chars, int start, int end, int[] fields) {
+        fields[0] = start;
+        int position = start;
+        for (int field = 1; field <= ARGS_POS; field++) {
+            final int separator = position > end ? -1 : indexOf(chars, PROTOCOL_SEPARATOR, position, end);
+            if (separator == -1) {
+                position = end + 1;
+            } else {
+                position = separator + 1;
+            }
+            fields[field] = position;
+        }
+        return fields;
+    }
 
-    private MethodCallImpl handleFastBodySubmissionVersion1Chars(String addressPrefix, char[] args) {
-
-        final char[][] chars = CharScanner.splitFromStartWithLimit(args,
-                (char) PROTOCOL_SEPARATOR, 0, METHOD_NAME_POS+2);
-
-
-        String messageId = FastStringUtils.noCopyStringFromChars(chars[
-                MESSAGE_ID_POS]);
+    private static int fieldEnd(int[] fields, int field, int end) {
+        return field == ARGS_POS ? end : Math.min(fields[field + 1] - 1, end);
+    }
 
-        long id = 0L;
-        if (!Str.isEmpty(messageId)) {
-            id = Long.parseLong(messageId);
+    private static int indexOf(char[] chars, int c, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if (chars[index] == c) {
+                return index;
+            }
         }
+        return -1;
+    }
 
-        String address = FastStringUtils.noCopyStringFromChars(chars[
-                ADDRESS_POS]);
-
-        String returnAddress = FastStringUtils.noCopyStringFromChars(chars[
-                RETURN_ADDRESS_POS]);
+    private static String string(char[] chars, int[] fields, int field, int end) {
+        final int start = Math.min(fields[field], end);
+        return new String(chars, start, fieldEnd(fields, field, end) - start);
+    }
 
-        if (!Str.isEmpty(addressPrefix)) {
-            returnAddress = Str.add(addressPrefix, ""+((char) PROTOCOL_ARG_SEPARATOR), returnAddress);
+    private static long number(char[] chars, int[] fields, int field, int end) {
+        final int start = Math.min(fields[field], end);
+        final int fieldEnd = fieldEnd(fields, field, end);
+        if (start == fieldEnd) {
+            return 0L;
+        }
+        boolean negative = chars[start] == '-';
+        long value = 0L;
+        for (int index = negative ? start + 1 : start; index < fieldEnd; index++) {
+            final char c = chars[index];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(new String(chars, start, fieldEnd - start));
+            }
+            value = value * 10 + (c - '0');
         }
+        return negative ? -value : value;
+    }
 
+    private static Object json(char[] chars, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        return jsonParserThreadLocal.get().parse(Arrays.copyOfRange(chars, start, end));
+    }
 
-        String headerBlock = FastStringUtils.noCopyStringFromChars(chars[
-                HEADER_POS]);
+    private Response<Object> parseResponse(char[] chars, int start, int end, int[] fields) {
 
-        MultiMap<String, String> headers = parseHeaders(headerBlock);
+        long id = number(chars, fields, MESSAGE_ID_POS, end);
 
+        String address = string(chars, fields, ADDRESS_POS, end);
 
-        String paramBlock = FastStringUtils.noCopyStringFromChars(chars[
-                PARAMS_POS]);
+        String returnAddress = string(chars, fields, RETURN_ADDRESS_POS, end);
 
+        long timestamp = number(chars, fields, TIMESTAMP_POS, end);
 
-        MultiMap<String, String> params = parseHeaders(paramBlock);
+        Object messageBody = json(chars, Math.min(fields[ARGS_POS], end), end);
 
-        String methodName = FastStringUtils.noCopyStringFromChars(chars[
-                METHOD_NAME_POS]);
+        return new ResponseImpl<>( id,  timestamp,  address,  returnAddress, null, messageBody);
+    }
 
 
-        String objectName = FastStringUtils.noCopyStringFromChars(chars[
-                OBJECT_NAME_POS]);
+    private MethodCallImpl parseMethodCall(String addressPrefix, char[] chars, int end, int[] fields) {
 
+        long id = number(chars, fields, MESSAGE_ID_POS, end);
 
-        String stime = FastStringUtils.noCopyStringFromChars(chars[
-                TIMESTAMP_POS]);
+        String address = string(chars, fields, ADDRESS_POS, end);
 
-        long timestamp = 0L;
+        String returnAddress = string(chars, fields, RETURN_ADDRESS_POS, end);
 
-        if (!Str.isEmpty(stime)) {
-            timestamp = Long.parseLong(stime);
+        if (!Str.isEmpty(addressPrefix)) {
+            returnAddress = Str.add(addressPrefix, ""+((char) PROTOCOL_ARG_SEPARATOR), returnAddress);
         }
 
-        char[] body = chars[ ARGS_POS ];
+        MultiMap<String, String> headers = parseHeaders(chars, Math.min(fields[HEADER_POS], end),
+                fieldEnd(fields, HEADER_POS, end));
 
+        MultiMap<String, String> params = parseHeaders(chars, Math.min(fields[PARAMS_POS], end),
+                fieldEnd(fields, PARAMS_POS, end));
 
-        final char[][] argumentList = CharScanner.split(body,
-                (char) PROTOCOL_ARG_SEPARATOR);
+        String methodName = string(chars, fields, METHOD_NAME_POS, end);
 
-        List<Object> argList = new ArrayList<>();
+        String objectName = string(chars, fields, OBJECT_NAME_POS, end);
 
-        for (int index=0; index< argumentList.length; index++) {
-            char [] charArgs = argumentList[index];
+        long timestamp = number(chars, fields, TIMESTAMP_POS, end);
 
-            if (charArgs.length==0) {
+        List<Object> argList = new ArrayList<>();
+
+        int argStart = Math.min(fields[ARGS_POS], end);
+        while (argStart < end) {
+            int argEnd = indexOf(chars, PROTOCOL_ARG_SEPARATOR, argStart, end);
+            if (argEnd == -1) {
+                argEnd = end;
+            }
+            if (argEnd == argStart) {
                 break;
             }
-            Object arg = jsonParserThreadLocal.get().parse(charArgs);
-            argList.add(arg);
+            argList.add(json(chars, argStart, argEnd));
+            argStart = argEnd + 1;
         }
 
         MethodCallImpl methodCall =  MethodCallImpl.method(id, address, returnAddress, objectName, methodName, timestamp, argList, params);
@@ -320,36 +420,51 @@ public class BoonProtocolParser implements ProtocolParser {
 
     }
 
-    public MultiMap<String, String> parseHeaders(String header) {
+    /**
+     * Parses headers or params where they are, entries look like key KEY_DELIM (value VALUE_DELIM)* ENTRY_DELIM.
+     */
+    private static MultiMap<String, String> parseHeaders(char[] chars, int start, int end) {
 
-        if (Str.isEmpty(header)) {
+        if (start >= end) {
             return null;
         }
 
         MultiMap<String, String> params = new MultiMapImpl<>();
 
-        final char[][] split = CharScanner.split(FastStringUtils.toCharArray(header), (char) Protocol.PROTOCOL_ENTRY_HEADER_DELIM);
-
-        for (char [] entry : split) {
-
-            final char[][] kvSplit = CharScanner.split(entry, (char) PROTOCOL_KEY_HEADER_DELIM);
-            if (kvSplit.length>1) {
-                char [] ckey = kvSplit[0];
-                char[] valuesAsOne = kvSplit[1];
-                final char[][] values = CharScanner.split(valuesAsOne, (char) PROTOCOL_VALUE_HEADER_DELIM);
-                String key = new String(ckey);
-                for (char[] value : values) {
+        int entryStart = start;
+        while (entryStart < end) {
+            int entryEnd = indexOf(chars, PROTOCOL_ENTRY_HEADER_DELIM, entryStart, end);
+            if (entryEnd == -1) {
+                entryEnd = end;
+            }
 
-                    params.add(key, new String(value));
+            final int keyEnd = indexOf(chars, PROTOCOL_KEY_HEADER_DELIM, entryStart, entryEnd);
+            if (keyEnd > entryStart) {
+                final String key = new String(chars, entryStart, keyEnd - entryStart);
+                int valueStart = keyEnd + 1;
+                while (valueStart < entryEnd) {
+                    int valueEnd = indexOf(chars, PROTOCOL_VALUE_HEADER_DELIM, valueStart, entryEnd);
+                    if (valueEnd == -1) {
+                        valueEnd = entryEnd;
+                    }
+                    params.add(key, new String(chars, valueStart, valueEnd - valueStart));
+                    valueStart = valueEnd + 1;
                 }
-
             }
-
+            entryStart = entryEnd + 1;
         }
 
         return params;
+    }
+
+    public MultiMap<String, String> parseHeaders(String header) {
 
+        if (Str.isEmpty(header)) {
+            return null;
+        }
 
+        final char[] chars = FastStringUtils.toCharArray(header);
+        return parseHeaders(chars, 0, chars.length);
     }
 
 
@@ -0,0 +1,107 @@
+package io.advantageous.qbit.proxy;
+
+import io.advantageous.qbit.service.Callback;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.boon.Exceptions.die;
+
+public class ProxyClassGeneratorTest {
+
+    boolean ok;
+
+    final List<String> calls = new ArrayList<>();
+
+    Object returnValue;
+
+    public static interface Service {
+
+        void noArgs();
+
+        void primitives(int i, long l, double d, float f, boolean b, char c, short s, byte by);
+
+        String echo(String value);
+
+        int count(List<String> values);
+
+        long[] longs();
+
+        void callback(Callback<String> callback, String value);
+    }
+
+    interface NotPublic {
+        String hi(String name);
+    }
+
+    private <T> T proxy(final Class<T> serviceInterface) {
+        final Method[] methods = ProxyClassGenerator.methods(serviceInterface);
+        return ProxyClassGenerator.newProxy(serviceInterface, (method, args) -> {
+            calls.add(methods[method].getName() + (args == null ? "" : Arrays.asList(args)));
+            return returnValue;
+        });
+    }
+
+    @Test
+    public void testGenerated() {
+        ok = ProxyClassGenerator.generated(Service.class) || die();
+
+        final Service service = proxy(Service.class);
+        ok = !Proxy.isProxyClass(service.getClass()) || die(service.getClass().getName());
+
+        service.noArgs();
+        service.primitives(1, 2L, 3.5, 4.5f, true, 'c', (short) 6, (byte) 7);
+
+        returnValue = "back";
+        ok = service.echo("hi").equals("back") || die();
+
+        returnValue = null;
+        ok = service.count(Arrays.asList("a", "b")) == 0 || die("primitive returns are zero");
+
+        returnValue = new long[]{1L};
+        ok = service.longs()[0] == 1L || die();
+
+        ok = calls.get(0).equals("noArgs") || die(calls.get(0));
+        ok = calls.get(1).equals("primitives[1, 2, 3.5, 4.5, true, c, 6, 7]") || die(calls.get(1));
+        ok = calls.get(2).equals("echo[hi]") || die(calls.get(2));
+        ok = calls.get(3).equals("count[[a, b]]") || die(calls.get(3));
+        ok = calls.get(4).equals("longs") || die(calls.get(4));
+    }
+
+    @Test
+    public void testWrongReturnType() {
+        final Service service = proxy(Service.class);
+        returnValue = 1;
+        try {
+            service.echo("hi");
+            die("should not cast");
+        } catch (ClassCastException ex) {
+            ok = true;
+        }
+    }
+
+    @Test
+    public void testNotPublicFallsBack() {
+        ok = !ProxyClassGenerator.generated(NotPublic.class) || die();
+
+        final NotPublic notPublic = proxy(NotPublic.class);
+        ok = Proxy.isProxyClass(notPublic.getClass()) || die();
+
+        returnValue = "Hi Rick";
+        ok = notPublic.hi("Rick").equals("Hi Rick") || die();
+        ok = calls.get(0).equals("hi[Rick]") || die(calls);
+        ok = notPublic.equals(notPublic) || die();
+        ok = calls.size() == 1 || die("Object methods are not calls");
+    }
+
+    @Test
+    public void testOneClassPerInterface() {
+        final Object first = proxy(Service.class);
+        final Object second = proxy(Service.class);
+        ok = first.getClass() == second.getClass() || die();
+    }
+}
@@ -15,7 +15,11 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static org.boon.Boon.puts;
 import static org.boon.Exceptions.die;
@@ -50,6 +54,11 @@ public class ServiceProxyFactoryTest {
 
         }
 
+        @Override
+        public void addServiceReplicas(String address, int replicas, Supplier<Object> serviceSupplier) {
+
+        }
+
         @Override
         public ReceiveQueue<Response<Object>> responses() {
             return null;
@@ -422,5 +431,91 @@ public class ServiceProxyFactoryTest {
 
 
 
+    }
+
+
+    public static interface FutureClientInterface {
+
+        CompletableFuture<String> method3(String hi, int amount);
+
+        CompletionStage<String> method1();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testProxyFuture() {
+        final FutureClientInterface myService = serviceBundle.createLocalProxy(FutureClientInterface.class, "myService");
+
+        calls.clear();
+
+        final CompletableFuture<String> future = myService.method3("Hello", 5);
+        final CompletableFuture<Integer> length = future.thenCompose(
+                value -> CompletableFuture.completedFuture(value.length()));
+
+        ok = calls.size() == 1 || die();
+        Object[] args = (Object[]) calls.get(0).body();
+        ok = args.length == 3 || die();
+        ok = args[0] instanceof Callback || die();
+        ok = "Hello".equals(args[1]) || die();
+        ok = !future.isDone() || die();
+
+        ((Callback<Object>) args[0]).accept("Hi Hello 5");
+
+        ok = "Hi Hello 5".equals(future.getNow(null)) || die();
+        ok = length.getNow(0) == 10 || die();
+
+
+        calls.clear();
+
+        final CompletableFuture<String> noArgs = myService.method1().toCompletableFuture();
+        args = (Object[]) calls.get(0).body();
+        ok = args.length == 1 || die();
+
+        ((Callback<Object>) args[0]).onError(new IllegalStateException("down"));
+
+        ok = noArgs.isCompletedExceptionally() || die();
+
+    }
+
+    @Test
+    public void callingActualServiceWithFuture() throws Exception {
+
+        @RequestMapping("myService")
+        class MyServiceClass implements SomeInterface {
+            @Override
+            public void method1() {
+
+            }
+
+            @Override
+            public void method2(String hi, int amount) {
+
+            }
+
+            @Override
+            public String method3(String hi, int amount) {
+                return "Hi" + hi + " " + amount;
+            }
+        }
+
+        final Factory factory  = QBit.factory();
+        final ServiceBundle bundle = factory.createServiceBundle("/root");
+
+        bundle.addService(new MyServiceClass());
+        bundle.startReturnHandlerProcessor();
+
+        final FutureClientInterface myServiceProxy = bundle.createLocalProxy(
+                FutureClientInterface.class,
+                "myService");
+
+        final CompletableFuture<String> first = myServiceProxy.method3("hi", 5);
+        final CompletableFuture<String> second = myServiceProxy.method3("hi", 6);
+        bundle.flushSends();
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        puts("We got", first.get(), second.get());
+        ok = "Hihi 5".equals(first.get()) || die();
+        ok = "Hihi 6".equals(second.get()) || die();
+
     }
 }
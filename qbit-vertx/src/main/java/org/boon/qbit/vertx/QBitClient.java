@@ -28,6 +28,7 @@
 
 package org.boon.qbit.vertx;
 
+import io.advantageous.qbit.GlobalConstants;
 import io.advantageous.qbit.QBit;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
@@ -35,45 +36,87 @@ import io.advantageous.qbit.queue.Queue;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.queue.SendQueue;
 import io.advantageous.qbit.queue.impl.BasicQueue;
+import io.advantageous.qbit.sender.BatchingSender;
+import io.advantageous.qbit.sender.Sender;
 import io.advantageous.qbit.service.BeforeMethodCall;
 import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.service.FutureCallback;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.util.ExpiringLongMap;
+import io.advantageous.qbit.util.Timer;
 import org.boon.Boon;
 import org.boon.Logger;
 import org.boon.Str;
-import org.boon.StringScanner;
 import org.boon.core.Conversions;
 import org.boon.core.reflection.ClassMeta;
 import org.boon.core.reflection.MapObjectConversion;
 import org.boon.core.reflection.MethodAccess;
 import org.boon.primitive.Arry;
+import org.boon.qbit.vertx.integration.vertx.WebSocketFrames;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.WebSocket;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static io.advantageous.qbit.service.Protocol.PROTOCOL_ARG_SEPARATOR;
 import static org.boon.Exceptions.die;
 
 /**
  * Factory to create client proxies using interfaces.
+ * <p>
+ * Keeps a pool of websocket connections to the server and spreads the calls of its proxies over them, round robin
+ * or to the connection with the fewest calls waiting for a response. Each connection has its own event loop thread
+ * on the server. A connection that closes is opened again, waiting longer after each failed try. Frames that could
+ * not go out while no connection was open are buffered and sent once one is, on the event loop of that connection.
+ * When the buffer is full the frame is dropped and the calls in it fail right away.
  * Created by Richard on 10/2/14.
  *
  * @author Rick Hightower
  */
 public class QBitClient {
 
+    /**
+     * How calls are spread over the connections.
+     */
+    public enum Selection {
+        /** Each call goes to the next open connection. */
+        ROUND_ROBIN,
+        /** Each call goes to the open connection with the fewest calls waiting for a response. */
+        LEAST_OUTSTANDING
+    }
+
+    /**
+     * Responses come back in group frames, same max frame size as the server.
+     */
+    private static final int MAX_FRAME_SIZE = 100_000_000;
+
+    /**
+     * First wait before opening a connection again, in milliseconds. Doubles with each failed try.
+     */
+    private static final long RECONNECT_BACKOFF = 100;
+
+    /**
+     * Longest wait before opening a connection again, in milliseconds.
+     */
+    private static final long MAX_RECONNECT_BACKOFF = 10_000;
+
+    /**
+     * Frames that are buffered while no connection is open.
+     */
+    private static final int SEND_BUFFER_SIZE = 1000;
 
     /**
-     * Are we closed.
+     * Are we stopped, stops connections from being opened again.
      */
-    private volatile boolean closed;
+    private volatile boolean stopped;
 
     /**
      * Host to connect to.
@@ -94,14 +137,29 @@ public class QBitClient {
     private Vertx vertx;
 
     /**
-     * Queue to get a connection.
+     * True if we created vertx, then stop stops it.
+     */
+    private final boolean ownsVertx;
+
+    /**
+     * Connections to the server.
+     */
+    private final Connection[] connections;
+
+    /**
+     * How calls are spread over the connections.
      */
-    private final BlockingQueue<WebSocket> connectionQueue = new ArrayBlockingQueue<>(1);
+    private final Selection selection;
 
     /**
-     * Output queue to server.
+     * Next connection for round robin.
      */
-    private final BlockingQueue<String> queueToServer = new ArrayBlockingQueue<>(1000);
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * Frames that could not be sent while no connection was open, they go out when one opens.
+     */
+    private final BlockingDeque<String> queueToServer = new LinkedBlockingDeque<>(SEND_BUFFER_SIZE);
 
 
     /**
@@ -110,9 +168,21 @@ public class QBitClient {
     private final Queue<String> queueFromServer;
 
     /**
-     * Map of handlers so we can do the whole async call back thing.
+     * Callbacks of calls that are waiting for their response, by message id. Message ids are unique in the JVM,
+     * so the id alone finds the callback, the return address does not have to be looked at.
+     * Guarded by itself.
      */
-    private Map<HandlerKey, Callback<Object>> handlers = new ConcurrentHashMap<>();
+    private final ExpiringLongMap<Callback<Object>> callbacks = new ExpiringLongMap<>(1024);
+
+    /**
+     * How often the return processing looks for callbacks that timed out, in milliseconds.
+     */
+    private static final long CALLBACK_SWEEP_INTERVAL = 10;
+
+    /**
+     * Last time the return processing looked for callbacks that timed out.
+     */
+    private long lastCallbackSweep;
 
     /**
      * Logger.
@@ -120,14 +190,33 @@ public class QBitClient {
     private Logger logger = Boon.logger(QBitClient.class);
 
     /**
-     * Websocket from vertx land.
+     * Runs the return processing, we need to shut this down on close.
      */
-    private WebSocket webSocket;
+    private ScheduledExecutorService returnProcessing;
+
+    /**
+     * Sender the proxies send their calls with, picks a connection for each call.
+     */
+    private final Sender<String> poolSender = new Sender<String>() {
+        @Override
+        public void send(String returnAddress, String message) {
+            select().batchingSender.send(returnAddress, message);
+        }
+
+        @Override
+        public void sendCall(MethodCall<Object> methodCall, String message) {
+            final Connection connection = select();
+            if (selection == Selection.LEAST_OUTSTANDING) {
+                countOutstanding(methodCall.id(), connection);
+            }
+            connection.batchingSender.send(methodCall.returnAddress(), message);
+        }
+    };
 
     /**
-     * scheduledFuture, we need to shut this down on close.
+     * Timer that flushes the batching senders, so a call waits at most SEND_LATENCY to go out.
      */
-    private ScheduledFuture<?> scheduledFuture;
+    private final long flushTimer;
 
     /**
      * @param host  host to connect to
@@ -136,31 +225,61 @@ public class QBitClient {
      * @param vertx vertx to attach to
      */
     public QBitClient(String host, int port, String uri, Vertx vertx) {
+        this(host, port, uri, vertx, GlobalConstants.CLIENT_CONNECTIONS, Selection.ROUND_ROBIN);
+    }
+
+    /**
+     * @param host        host to connect to
+     * @param port        port on host
+     * @param uri         uri to connect to
+     * @param vertx       vertx to attach to
+     * @param connections number of websocket connections to keep open
+     * @param selection   how calls are spread over the connections
+     */
+    public QBitClient(String host, int port, String uri, Vertx vertx, int connections, Selection selection) {
+
+        if (connections < 1) {
+            die("QBitClient:: needs at least one connection", connections);
+        }
 
         this.host = host;
         this.port = port;
         this.uri = uri;
+        this.ownsVertx = vertx == null;
         this.vertx = vertx == null ? VertxFactory.newVertx() : vertx;
-
-        connect();
+        this.selection = selection;
 
         queueFromServer = new BasicQueue<>(
                 Boon.joinBy('-', "QBitClient", host, port, uri), 5, TimeUnit.MILLISECONDS, 20);
 
+        this.connections = new Connection[connections];
+        for (int index = 0; index < connections; index++) {
+            this.connections[index] = new Connection();
+        }
+        flushTimer = this.vertx.setPeriodic(GlobalConstants.SEND_LATENCY, event -> flush());
 
+        for (Connection connection : this.connections) {
+            connection.connect();
+        }
     }
 
 
     /**
-     * Stop client. Stops processing call backs.
+     * Stop client. Sends what the proxies batched, closes the connections and stops processing call backs.
      */
     public void stop() {
-        if (scheduledFuture != null) {
-            try {
-                scheduledFuture.cancel(true);
-            } catch (Exception ex) {
-                logger.warn(ex, "Problem stopping client");
-            }
+        stopped = true;
+        vertx.cancelTimer(flushTimer);
+        flush();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        if (returnProcessing != null) {
+            returnProcessing.shutdownNow();
+        }
+        queueFromServer.stop();
+        if (ownsVertx) {
+            vertx.stop();
         }
     }
 
@@ -170,18 +289,21 @@ public class QBitClient {
     public void startReturnProcessing() {
         final ReceiveQueue<String> receiveQueue = queueFromServer.receiveQueue();
 
-        scheduledFuture = Executors.newScheduledThreadPool(2).scheduleAtFixedRate(() -> {
+        returnProcessing = Executors.newSingleThreadScheduledExecutor();
+        returnProcessing.scheduleAtFixedRate(() -> {
             try {
 
-                while (true) {
+                while (!stopped) {
                     String poll = receiveQueue.pollWait();
 
                     while (poll != null) {
                         handleWebsocketQueueResponses(poll);
+                        sweepCallbacks();
 
 
                         poll = receiveQueue.pollWait();
                     }
+                    sweepCallbacks();
                 }
             } catch (Exception ex) {
                 logger.error(ex, "Problem handling queue");
@@ -191,25 +313,34 @@ public class QBitClient {
 
     /**
      * Handles websocket messages and parses them into responses.
-     * This does not handle batching or rather un-batching which we need for performance
-     * we do handle batching in the parser/encoder.
+     * The server puts the responses for a connection together into group messages,
+     * each response in the group is handled as soon as it is parsed.
+     * Only the message id is read until it is known that a callback waits for the response.
      *
      * @param websocketText websocket text
      */
     private void handleWebsocketQueueResponses(String websocketText) {
-    /* Message comes in as a string but we parse it into a Response object. */
-        final Response<Object> response = QBit.factory().createResponse(websocketText);
-
+        /* Message comes in as a string but we parse it into Response objects. */
+        QBit.factory().createResponses(websocketText, this::waitingFor, this::handleResponse);
+    }
 
-        final String[] split = StringScanner.split(response.returnAddress(),
-                (char) PROTOCOL_ARG_SEPARATOR);
-        HandlerKey key = new HandlerKey(split[1], response.id());
+    private boolean waitingFor(long messageId) {
+        synchronized (callbacks) {
+            return callbacks.get(messageId) != null;
+        }
+    }
 
+    private void handleResponse(Response<Object> response) {
 
-        final Callback<Object>  handler = handlers.get(key);
+        final Callback<Object> handler;
+        synchronized (callbacks) {
+            handler = callbacks.remove(response.id());
+        }
 
+        /* It can time out between waitingFor and here. */
         if (handler != null) {
 
+            released(handler);
             handleAsyncCallback(response, handler);
         }
     }
@@ -227,90 +358,195 @@ public class QBitClient {
 
     }
 
+    /**
+     * Keeps the callback of a call until its response comes back or it times out.
+     */
+    private void registerCallback(final long messageId, final Callback<Object> handler) {
+        final long timeout = handler.timeoutMillis() != 0 ? handler.timeoutMillis() : GlobalConstants.CALLBACK_TIMEOUT;
+        final long deadline = timeout > 0 ? Timer.timer().now() + timeout : Long.MAX_VALUE;
+        synchronized (callbacks) {
+            callbacks.put(messageId, handler, deadline);
+        }
+    }
 
     /**
-     * Key to store callback in call back map.
+     * Times out callbacks at most every CALLBACK_SWEEP_INTERVAL, so a busy connection does not keep sweeping.
      */
-    private class HandlerKey {
-        /**
-         * Return address
-         */
-        final String returnAddress;
-        /**
-         * Message id
-         */
-        final long messageId;
+    private void sweepCallbacks() {
+        final long now = Timer.timer().now();
+        if (now - lastCallbackSweep >= CALLBACK_SWEEP_INTERVAL) {
+            lastCallbackSweep = now;
+            expireCallbacks(now);
+        }
+    }
 
-        private HandlerKey(String returnAddress, long messageId) {
-            this.returnAddress = returnAddress;
-            this.messageId = messageId;
+    /**
+     * Calls onError with a TimeoutException on the callbacks whose deadline passed.
+     * Return processing does this, this is for clients that do not start it.
+     *
+     * @return number of callbacks that timed out
+     */
+    public int expireCallbacks() {
+        return expireCallbacks(Timer.timer().now());
+    }
+
+    private int expireCallbacks(final long now) {
+        final List<Callback<Object>> expired = new ArrayList<>();
+        final List<Long> messageIds = new ArrayList<>();
+        synchronized (callbacks) {
+            if (callbacks.isEmpty()) {
+                return 0;
+            }
+            callbacks.expire(now, (messageId, callback) -> {
+                expired.add(callback);
+                messageIds.add(messageId);
+            });
+        }
+        for (int index = 0; index < expired.size(); index++) {
+            released(expired.get(index));
+            expired.get(index).onError(new TimeoutException("Call timed out, message id " + messageIds.get(index)));
         }
+        return expired.size();
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            HandlerKey that = (HandlerKey) o;
-            return messageId == that.messageId
-                    && !(returnAddress != null
-                    ? !returnAddress.equals(that.returnAddress)
-                    : that.returnAddress != null);
+    /**
+     * Counts the call as waiting on the connection, if it has a callback.
+     */
+    private void countOutstanding(final long messageId, final Connection connection) {
+        synchronized (callbacks) {
+            final Callback<Object> callback = callbacks.get(messageId);
+            if (callback instanceof ReturnHandler) {
+                ((ReturnHandler) callback).connection = connection;
+                connection.outstanding.incrementAndGet();
+            }
         }
+    }
 
-        @Override
-        public int hashCode() {
-            int result = returnAddress != null ? returnAddress.hashCode() : 0;
-            result = 31 * result + (int) (messageId ^ (messageId >>> 32));
-            return result;
+    /**
+     * The call of the callback is not waiting on its connection any more.
+     */
+    private void released(final Callback<Object> callback) {
+        if (callback instanceof ReturnHandler) {
+            final Connection connection = ((ReturnHandler) callback).connection;
+            if (connection != null) {
+                connection.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Callbacks that are waiting for a response.
+     *
+     * @return number of callbacks
+     */
+    public int pendingCallbacks() {
+        synchronized (callbacks) {
+            return callbacks.size();
         }
     }
 
 
     /**
-     * Looks up websocket connection.
+     * Picks the connection for a call.
+     *
+     * @return an open connection, or any connection if none is open, it buffers what it is sent
      */
-    private WebSocket webSocket() {
-        if (webSocket == null) {
-            try {
-                webSocket = connectionQueue.poll(200, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                Thread.interrupted();
-                die("QBitClient::Unable to connect", host, port);
+    private Connection select() {
+        final int count = connections.length;
+        if (count == 1) {
+            return connections[0];
+        }
+
+        if (selection == Selection.LEAST_OUTSTANDING) {
+            Connection least = null;
+            for (Connection connection : connections) {
+                if (connection.open && (least == null
+                        || connection.outstanding.get() < least.outstanding.get())) {
+                    least = connection;
+                }
             }
+            return least != null ? least : connections[0];
+        }
 
+        for (int tries = 0; tries < count; tries++) {
+            final Connection connection = connections[Math.floorMod(nextConnection.getAndIncrement(), count)];
+            if (connection.open) {
+                return connection;
+            }
         }
-        return webSocket;
+        return connections[0];
     }
 
     /**
-     * Sends a message over websocket.
+     * @return number of connections that are open
      */
-    public void send(String newMessage) {
-        webSocket();
-        if (webSocket == null || closed) {
-            webSocket = null;
-            if (!queueToServer.add(newMessage)) {
-                die("QBitClient::not connected and output queueToServer is full");
+    public int openConnections() {
+        int open = 0;
+        for (Connection connection : connections) {
+            if (connection.open) {
+                open++;
             }
-        } else {
-            try {
-                String message = queueToServer.poll();
+        }
+        return open;
+    }
 
-                while (message != null) {
-                    webSocket.writeTextFrame(message);
-                }
+    /**
+     * Sends the calls the proxies made that are waiting to go out in a group frame.
+     */
+    public void flush() {
+        for (Connection connection : connections) {
+            connection.batchingSender.flush();
+        }
+    }
 
-                webSocket.writeTextFrame(newMessage);
-            } catch (Exception ex) {
-                queueToServer.add(newMessage);
-                closed = true;
-                webSocket = null;
-                connect();
-            }
+    /**
+     * Sends a message over websocket, on one of the open connections.
+     * Buffers it if no connection is open, buffered messages go out when one opens.
+     */
+    public void send(String newMessage) {
+        select().write(newMessage);
+    }
 
+    /**
+     * Buffers a frame until a connection opens. If one opened in the meantime, sends the buffer on it.
+     * If the buffer is full the frame is rejected.
+     */
+    private void buffer(final String frame) {
+        if (!queueToServer.offer(frame)) {
+            reject(frame);
+            return;
+        }
+        for (Connection connection : connections) {
+            if (connection.open) {
+                connection.replayLater();
+                break;
+            }
         }
+    }
 
+    /**
+     * Drops a frame that did not fit in the send buffer. The calls in it that have a callback fail right away,
+     * instead of waiting for their timeout. Only happens while no connection is open, so parsing the frame
+     * again to find the calls is not on the hot path.
+     */
+    private void reject(final String frame) {
+        logger.warn("QBitClient::not connected and the send buffer is full, dropping a frame", host, port);
+
+        final List<Callback<Object>> rejected = new ArrayList<>();
+        QBit.factory().createMethodCallsToBeParsedFromBody(uri, frame, methodCall -> {
+            final Callback<Object> callback;
+            synchronized (callbacks) {
+                callback = callbacks.remove(methodCall.id());
+            }
+            if (callback != null) {
+                rejected.add(callback);
+            }
+        });
 
+        for (Callback<Object> callback : rejected) {
+            released(callback);
+            callback.onError(new RejectedExecutionException("QBitClient::not connected and the send buffer is full"));
+        }
     }
 
 
@@ -360,8 +596,7 @@ public class QBitClient {
                     if (list.length > 0) {
                         final Object o = list[0];
                         if (o instanceof Callback) {
-                            handlers.put(new HandlerKey(call.returnAddress(), call.id()),
-                                    createHandler(serviceInterface, call, (Callback) o));
+                            registerCallback(call.id(), createHandler(serviceInterface, call, (Callback) o));
 
                             if (list.length - 1 == 0) {
                                 list = new Object[0];
@@ -383,12 +618,13 @@ public class QBitClient {
         };
         return QBit.factory().createRemoteProxyWithReturnAddress(serviceInterface,
                 uri,
-                serviceName, returnAddressArg, (returnAddress, buffer) -> QBitClient.this.send(buffer), beforeMethodCall
+                serviceName, returnAddressArg, poolSender, beforeMethodCall
         );
     }
 
     /**
-     * Create an async handler. Uses some generics reflection to see what the actual type is
+     * Create an async handler. Uses some generics reflection to see what the actual type is,
+     * from the Callback parameter, or from the return type of methods that return a future.
      *
      * @param serviceInterface service interface
      * @param call             method call object
@@ -404,10 +640,16 @@ public class QBitClient {
         Class<?> returnType = null;
 
         Class<?> compType = null;
-        if (method.parameterTypes().length > 0) {
-            Type[] genericParameterTypes = method.getGenericParameterTypes();
-            ParameterizedType parameterizedType = genericParameterTypes.length > 0 ?
-                    (ParameterizedType) genericParameterTypes[0] : null;
+
+        Type genericType = null;
+        if (FutureCallback.returnsFuture(method.method())) {
+            genericType = method.method().getGenericReturnType();
+        } else if (method.parameterTypes().length > 0) {
+            genericType = method.getGenericParameterTypes()[0];
+        }
+
+        if (genericType instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) genericType;
 
             Type type = (parameterizedType.getActualTypeArguments().length > 0 ? parameterizedType.getActualTypeArguments()[0] : null);
 
@@ -427,27 +669,59 @@ public class QBitClient {
 
         final Class<?> componentClass = compType;
 
-        /** Create the return handler. */
-        Callback<Object> returnHandler = new Callback<Object>() {
-            @Override
-            public void accept(Object event) {
+        return new ReturnHandler(handler, actualReturnType, componentClass);
+    }
+
+    /**
+     * Converts the response to the type the client callback wants.
+     */
+    private static final class ReturnHandler implements Callback<Object> {
 
-                if (actualReturnType != null) {
+        private final Callback handler;
 
-                    if (componentClass != null && actualReturnType == List.class) {
-                        event = MapObjectConversion.convertListOfMapsToObjects(componentClass, (List) event);
-                    } else {
-                        event = Conversions.coerce(actualReturnType, event);
-                    }
-                    handler.accept(event);
-                }
+        private final Class<?> actualReturnType;
+
+        private final Class<?> componentClass;
+
+        /**
+         * Connection the call went out on, when calls are counted per connection. Guarded by the callbacks lock.
+         */
+        private Connection connection;
 
+        private ReturnHandler(Callback handler, Class<?> actualReturnType, Class<?> componentClass) {
+            this.handler = handler;
+            this.actualReturnType = actualReturnType;
+            this.componentClass = componentClass;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void accept(Object event) {
+
+            if (actualReturnType != null) {
+
+                if (componentClass != null && actualReturnType == List.class) {
+                    event = MapObjectConversion.convertListOfMapsToObjects(componentClass, (List) event);
+                } else {
+                    event = Conversions.coerce(actualReturnType, event);
+                }
+                handler.accept(event);
+            } else if (handler instanceof FutureCallback) {
+                /* A raw future still has to complete. */
+                handler.accept(event);
             }
-        };
 
+        }
 
+        @Override
+        public void onError(Throwable error) {
+            handler.onError(error);
+        }
 
-        return returnHandler;
+        @Override
+        public long timeoutMillis() {
+            return handler.timeoutMillis();
+        }
     }
 
 
@@ -460,20 +734,191 @@ public class QBitClient {
 
 
     /**
-     * Use vertx to connect to websocket server that is hosting this service.
+     * One websocket connection to the server, with the batching sender that puts its calls into group frames.
+     * Opening, closing, reconnecting and sending the buffered frames happen on the vertx event loop.
      */
-    private void connect() {
-        vertx.createHttpClient().setHost(host).setPort(port)
-                .connectWebsocket(uri,
-                        event -> {
-                            connectionQueue.add(event);
-                            closed = false;
-                            final SendQueue<String> sendQueueFromServer = queueFromServer.sendQueue();
-                            event.dataHandler(event1 -> sendQueueFromServer.sendAndFlush(event1.toString()));
-                            event.exceptionHandler(event1 ->
-                                    logger.error(event1, "Exception handling web socket connection"));
-                            event.closeHandler(event1 -> closed = true);
+    private final class Connection {
+
+        /**
+         * Puts calls from the proxies together into group frames.
+         */
+        private final BatchingSender batchingSender = new BatchingSender((returnAddress, frame) -> write(frame),
+                GlobalConstants.GROUP_FRAME_SIZE, GlobalConstants.GROUP_FRAME_CHARS);
+
+        /**
+         * Calls sent on this connection that wait for a response, counted for LEAST_OUTSTANDING.
+         */
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private volatile WebSocket webSocket;
+
+        private volatile boolean open;
+
+        /**
+         * Event loop of the open websocket, the buffered frames are sent from there.
+         */
+        private volatile Context context;
+
+        /**
+         * Client of the last connect, closed when the next connect starts so failed tries do not pile up.
+         */
+        private volatile HttpClient httpClient;
+
+        /**
+         * Timer of the next reconnect, -1 if there is none.
+         */
+        private volatile long reconnectTimer = -1;
+
+        private boolean connecting;
+
+        private boolean reconnectScheduled;
+
+        private long backoff = RECONNECT_BACKOFF;
+
+        /**
+         * Use vertx to connect to websocket server that is hosting this service.
+         */
+        private void connect() {
+            connecting = true;
+            if (httpClient != null) {
+                httpClient.close();
+            }
+            httpClient = vertx.createHttpClient();
+            httpClient.setHost(host).setPort(port)
+                    .setMaxWebSocketFrameSize(MAX_FRAME_SIZE)
+                    .exceptionHandler(event -> {
+                        logger.warn(event, "QBitClient::Unable to connect", host, port);
+                        if (connecting) {
+                            connecting = false;
+                            reconnectLater();
                         }
-                );
+                    })
+                    .connectWebsocket(uri, this::opened);
+        }
+
+        private void opened(final WebSocket webSocket) {
+            connecting = false;
+            if (stopped) {
+                webSocket.close();
+                return;
+            }
+            backoff = RECONNECT_BACKOFF;
+
+            final SendQueue<String> sendQueueFromServer = queueFromServer.sendQueue();
+            webSocket.dataHandler(event -> sendQueueFromServer.sendAndFlush(WebSocketFrames.text(event)));
+            webSocket.exceptionHandler(event -> {
+                logger.error(event, "Exception handling web socket connection");
+                closed(webSocket);
+            });
+            webSocket.closeHandler(event -> closed(webSocket));
+
+            this.webSocket = webSocket;
+            context = vertx.currentContext();
+            open = true;
+            replay();
+        }
+
+        /**
+         * Closes the websocket and the client for good, the client is stopped.
+         */
+        private void close() {
+            open = false;
+            final long timer = reconnectTimer;
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+            }
+            final WebSocket webSocket = this.webSocket;
+            this.webSocket = null;
+            if (webSocket != null) {
+                webSocket.close();
+            }
+            final HttpClient httpClient = this.httpClient;
+            if (httpClient != null) {
+                httpClient.close();
+            }
+        }
+
+        private void closed(final WebSocket webSocket) {
+            if (this.webSocket != webSocket) {
+                return;
+            }
+            open = false;
+            this.webSocket = null;
+            reconnectLater();
+        }
+
+        /**
+         * Connects again after the backoff, which doubles up to MAX_RECONNECT_BACKOFF until a connect works.
+         */
+        private void reconnectLater() {
+            if (stopped || reconnectScheduled) {
+                return;
+            }
+            reconnectScheduled = true;
+            final long delay = backoff;
+            backoff = Math.min(backoff * 2, MAX_RECONNECT_BACKOFF);
+            reconnectTimer = vertx.setTimer(delay, event -> {
+                reconnectTimer = -1;
+                reconnectScheduled = false;
+                if (!stopped) {
+                    connect();
+                }
+            });
+        }
+
+        /**
+         * Writes the frame, or buffers it if the connection is not open.
+         * While there are buffered frames new ones get in line behind them instead of passing them.
+         */
+        private void write(final String frame) {
+            if (!queueToServer.isEmpty() || !tryWrite(frame)) {
+                buffer(frame);
+            }
+        }
+
+        private boolean tryWrite(final String frame) {
+            final WebSocket webSocket = this.webSocket;
+            if (webSocket == null || !open) {
+                return false;
+            }
+            try {
+                if (WebSocketFrames.isBinary(frame)) {
+                    webSocket.writeBinaryFrame(WebSocketFrames.binary(frame));
+                } else {
+                    webSocket.writeTextFrame(frame);
+                }
+                return true;
+            } catch (Exception ex) {
+                logger.warn(ex, "QBitClient::Unable to send, buffering");
+                return false;
+            }
+        }
+
+        /**
+         * Sends the buffered frames from the event loop of this connection, callable from any thread.
+         */
+        private void replayLater() {
+            final Context context = this.context;
+            if (context != null) {
+                context.runOnContext(event -> replay());
+            }
+        }
+
+        /**
+         * Sends the frames that were buffered while no connection was open. Only runs on the event loop.
+         */
+        private void replay() {
+            String frame = queueToServer.poll();
+            while (frame != null) {
+                if (!tryWrite(frame)) {
+                    /* Back to the front of the line, unless the proxies filled the buffer in the meantime. */
+                    if (!queueToServer.offerFirst(frame)) {
+                        reject(frame);
+                    }
+                    return;
+                }
+                frame = queueToServer.poll();
+            }
+        }
     }
 }
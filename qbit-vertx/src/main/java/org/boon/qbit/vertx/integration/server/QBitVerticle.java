@@ -28,13 +28,14 @@
 
 package org.boon.qbit.vertx.integration.server;
 
+import io.advantageous.qbit.GlobalConstants;
 import io.advantageous.qbit.QBit;
-import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.service.ServiceBundle;
 import io.advantageous.qbit.spi.ProtocolEncoder;
 import org.boon.qbit.vertx.integration.model.EmployeeManagerImpl;
+import org.boon.qbit.vertx.integration.vertx.WebSocketFrames;
 
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
@@ -43,6 +44,10 @@ import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.ServerWebSocket;
 import org.vertx.java.platform.Verticle;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -50,6 +55,8 @@ import static org.boon.Boon.puts;
 
 public class QBitVerticle extends Verticle {
 
+    private static final int MAX_RESPONSES_PER_TICK = 1_000;
+
     private ServiceBundle serviceBundle;
 
     private  HttpServer httpServer;
@@ -61,6 +68,16 @@ public class QBitVerticle extends Verticle {
 
     private Map<String, ServerWebSocket> webSocketMap = new ConcurrentHashMap<>();
 
+    /**
+     * Responses of the current drain tick by the websocket they go to. Only used on the event loop.
+     */
+    private final Map<ServerWebSocket, List<Response<Object>>> responsesByWebSocket = new IdentityHashMap<>();
+
+    /**
+     * Responses are encoded into this, it grows as needed and is kept for the next frame. Only used on the event loop.
+     */
+    private ByteBuffer encodeBuffer = ByteBuffer.allocate(64 * 1024);
+
     public void start() {
 
 
@@ -120,18 +137,63 @@ public class QBitVerticle extends Verticle {
 
     }
 
+    /**
+     * Writes at most MAX_RESPONSES_PER_TICK responses so a burst can not stall the event loop.
+     * Whatever is left gets picked up on the next tick.
+     * Responses for the same websocket are sent together as group frames of up to GROUP_FRAME_SIZE responses.
+     */
     private void drainServiceQueue() {
-        final Iterable<Response<Object>> responsesBatch = responses.readBatch();
-
-        for (Response<Object> response : responsesBatch) {
-            final ServerWebSocket serverWebSocket = webSocketMap.get(response.returnAddress());
+        int count = 0;
+
+        while (count < MAX_RESPONSES_PER_TICK) {
+            final Iterable<Response<Object>> responsesBatch = responses.readBatch(MAX_RESPONSES_PER_TICK - count);
+            final int before = count;
+
+            for (Response<Object> response : responsesBatch) {
+                count++;
+                final ServerWebSocket serverWebSocket = webSocketMap.get(response.returnAddress());
+
+                if (serverWebSocket != null) {
+                    List<Response<Object>> group = responsesByWebSocket.get(serverWebSocket);
+                    if (group == null) {
+                        group = new ArrayList<>();
+                        responsesByWebSocket.put(serverWebSocket, group);
+                    }
+                    group.add(response);
+                    if (group.size() >= GlobalConstants.GROUP_FRAME_SIZE) {
+                        writeResponses(serverWebSocket, group);
+                    }
+                }
+            }
 
-            if (serverWebSocket != null) {
-                String responseAsText = encoder.encodeAsString(response);
-                serverWebSocket.writeTextFrame(responseAsText);
+            if (count == before) {
+                break;
             }
         }
 
+        for (Map.Entry<ServerWebSocket, List<Response<Object>>> entry : responsesByWebSocket.entrySet()) {
+            writeResponses(entry.getKey(), entry.getValue());
+        }
+        responsesByWebSocket.clear();
+
+    }
+
+    /**
+     * Encodes the group straight into the encode buffer, no String in between, and writes it as one frame.
+     * vert.x hangs on to the bytes of a Buffer until the frame is on the wire, so each frame gets its own Buffer,
+     * filled with one copy of the encoded bytes. Only a String can go out as a text frame, so this is a binary
+     * frame, the client reads it back with WebSocketFrames.text.
+     */
+    private void writeResponses(final ServerWebSocket serverWebSocket, final List<Response<Object>> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        encodeBuffer.clear();
+        encodeBuffer = group.size() == 1 ? encoder.encodeTo(group.get(0), encodeBuffer)
+                : encoder.encodeTo(group, encodeBuffer);
+        encodeBuffer.flip();
+        serverWebSocket.writeBinaryFrame(new Buffer(encodeBuffer.remaining()).setBytes(0, encodeBuffer));
+        group.clear();
     }
 
 
@@ -140,7 +202,7 @@ public class QBitVerticle extends Verticle {
         websocket.dataHandler(new Handler<Buffer>() {
             @Override
             public void handle(Buffer event) {
-                handleWebSocketData(websocket, event.toString());
+                handleWebSocketData(websocket, WebSocketFrames.text(event));
             }
         });
 
@@ -161,13 +223,12 @@ public class QBitVerticle extends Verticle {
     private  void handleWebSocketData(ServerWebSocket websocket, String message) {
 
 
-        final MethodCall<Object> methodCall = QBit.factory().createMethodCallToBeParsedFromBody(websocket.remoteAddress().toString(), message);
-        serviceBundle.call(methodCall);
-
-        puts("Websocket data", methodCall.returnAddress(), websocket, message);
-
-        webSocketMap.put(methodCall.returnAddress(), websocket);
-
+        /* A message can be a group of calls, each call goes to the bundle as soon as it is parsed. */
+        QBit.factory().createMethodCallsToBeParsedFromBody(websocket.remoteAddress().toString(), message,
+                methodCall -> {
+                    serviceBundle.call(methodCall);
+                    webSocketMap.put(methodCall.returnAddress(), websocket);
+                });
 
     }
 
@@ -0,0 +1,42 @@
+package org.boon.qbit.vertx.integration.vertx;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.advantageous.qbit.service.Protocol.PROTOCOL_BINARY_MARKER;
+
+/**
+ * Moves qbit frames in and out of websocket Buffers.
+ * <p>
+ * Binary protocol frames start with PROTOCOL_BINARY_MARKER and hold raw bytes, varints and all, so they go out as
+ * binary frames and come back as a ISO-8859-1 string, one char per byte, which is what BinaryProtocolParser reads.
+ * Decoding them as UTF-8 would mangle every byte at or above 0x80. Text protocol frames stay UTF-8.
+ */
+public class WebSocketFrames {
+
+    private WebSocketFrames() {
+    }
+
+    public static boolean isBinary(final String frame) {
+        return !frame.isEmpty() && frame.charAt(0) == PROTOCOL_BINARY_MARKER;
+    }
+
+    public static boolean isBinary(final Buffer frame) {
+        return frame.length() > 0 && frame.getByte(0) == PROTOCOL_BINARY_MARKER;
+    }
+
+    /**
+     * The frame as the string the parsers take.
+     */
+    public static String text(final Buffer frame) {
+        return isBinary(frame) ? new String(frame.getBytes(), StandardCharsets.ISO_8859_1) : frame.toString();
+    }
+
+    /**
+     * The bytes of a binary frame that was encoded as a ISO-8859-1 string.
+     */
+    public static Buffer binary(final String frame) {
+        return new Buffer(frame.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,297 @@
+package org.boon.qbit.vertx;
+
+import io.advantageous.qbit.GlobalConstants;
+import io.advantageous.qbit.QBit;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
+import io.advantageous.qbit.spi.ProtocolEncoder;
+import org.boon.qbit.vertx.integration.vertx.WebSocketFrames;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.ServerWebSocket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class QBitClientTest {
+
+    public interface Adder {
+        void add(Callback<Integer> callback, int a, int b);
+    }
+
+    boolean ok;
+
+    Vertx vertx;
+
+    HttpServer server;
+
+    int port;
+
+    QBitClient client;
+
+    /** Server side of each websocket the client opened, in the order they were opened. */
+    final List<ServerWebSocket> sockets = new CopyOnWriteArrayList<>();
+
+    /** Calls each server side websocket got. */
+    final Map<ServerWebSocket, List<MethodCall<Object>>> calls = new ConcurrentHashMap<>();
+
+    final AtomicInteger closed = new AtomicInteger();
+
+    final AtomicInteger results = new AtomicInteger();
+
+    final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        vertx = VertxFactory.newVertx();
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+        vertx.stop();
+    }
+
+    private void startServer() {
+        server = vertx.createHttpServer();
+        server.websocketHandler(webSocket -> {
+            final List<MethodCall<Object>> received = new CopyOnWriteArrayList<>();
+            calls.put(webSocket, received);
+            webSocket.dataHandler(buffer -> QBit.factory().createMethodCallsToBeParsedFromBody("",
+                    WebSocketFrames.text(buffer), received::add));
+            webSocket.closeHandler(event -> closed.incrementAndGet());
+            sockets.add(webSocket);
+        });
+        server.listen(port);
+    }
+
+    private QBitClient client(final int connections, final QBitClient.Selection selection) {
+        client = new QBitClient("localhost", port, "/services", vertx, connections, selection);
+        return client;
+    }
+
+    private Callback<Integer> callback() {
+        return new Callback<Integer>() {
+            @Override
+            public void accept(Integer result) {
+                results.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+        };
+    }
+
+    private void waitFor(final BooleanSupplier condition, final Object... message) {
+        for (int index = 0; index < 500 && !condition.getAsBoolean(); index++) {
+            sleep(10);
+        }
+        ok = condition.getAsBoolean() || die(message);
+    }
+
+    private int received(final int socket) {
+        return calls.get(sockets.get(socket)).size();
+    }
+
+    private int receivedTotal() {
+        int total = 0;
+        for (List<MethodCall<Object>> received : calls.values()) {
+            total += received.size();
+        }
+        return total;
+    }
+
+    @Test
+    public void testRoundRobinUsesEveryConnection() {
+        startServer();
+        final QBitClient client = client(3, QBitClient.Selection.ROUND_ROBIN);
+        waitFor(() -> client.openConnections() == 3 && sockets.size() == 3, "pool should open 3 connections");
+
+        final Adder adder = client.createProxy(Adder.class, "adder");
+        for (int index = 0; index < 30; index++) {
+            adder.add(callback(), index, 1);
+        }
+        client.flush();
+
+        waitFor(() -> receivedTotal() == 30, "all calls should arrive", receivedTotal());
+        for (int socket = 0; socket < 3; socket++) {
+            ok = received(socket) == 10 || die("round robin should spread calls evenly", socket, received(socket));
+        }
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        startServer();
+        final QBitClient client = client(3, QBitClient.Selection.LEAST_OUTSTANDING);
+        client.startReturnProcessing();
+        waitFor(() -> client.openConnections() == 3 && sockets.size() == 3, "pool should open 3 connections");
+
+        final Adder adder = client.createProxy(Adder.class, "adder");
+        for (int index = 0; index < 30; index++) {
+            adder.add(callback(), index, 1);
+        }
+        client.flush();
+        waitFor(() -> receivedTotal() == 30, "all calls should arrive", receivedTotal());
+        for (int socket = 0; socket < 3; socket++) {
+            ok = received(socket) == 10 || die("nothing answered yet, calls should spread evenly", received(socket));
+        }
+
+        /* The first connection answers, so it is the only one with nothing outstanding. */
+        final ServerWebSocket answering = sockets.get(0);
+        final ProtocolEncoder encoder = QBit.factory().createEncoder();
+        for (MethodCall<Object> call : new ArrayList<>(calls.get(answering))) {
+            answering.writeTextFrame(encoder.encodeAsString(ResponseImpl.response(call, 2)));
+        }
+        waitFor(() -> results.get() == 10 && client.pendingCallbacks() == 20, "answers should come back",
+                results.get());
+
+        for (int index = 0; index < 10; index++) {
+            adder.add(callback(), index, 1);
+        }
+        client.flush();
+        waitFor(() -> receivedTotal() == 40, "all calls should arrive", receivedTotal());
+
+        ok = received(0) == 20 || die("calls should go to the connection with nothing outstanding", received(0));
+        ok = received(1) == 10 && received(2) == 10 || die(received(1), received(2));
+    }
+
+    @Test
+    public void testBinaryProtocol() {
+        final boolean binary = GlobalConstants.BINARY_PROTOCOL;
+        GlobalConstants.BINARY_PROTOCOL = true;
+        try {
+            startServer();
+            final QBitClient client = client(1, QBitClient.Selection.ROUND_ROBIN);
+            client.startReturnProcessing();
+            waitFor(() -> client.openConnections() == 1 && sockets.size() == 1, "pool should open a connection");
+
+            /* Ids and timestamps are varints, so the frames are full of bytes at or above 0x80. */
+            final Adder adder = client.createProxy(Adder.class, "adder");
+            for (int index = 0; index < 200; index++) {
+                adder.add(callback(), index, 1);
+            }
+            client.flush();
+            waitFor(() -> receivedTotal() == 200, "binary calls should arrive whole", receivedTotal());
+
+            /* Answer the way QBitVerticle does, raw encoder bytes in binary frames, some alone, some grouped. */
+            final ServerWebSocket answering = sockets.get(0);
+            final ProtocolEncoder encoder = QBit.factory().createEncoder();
+            final List<Response<Object>> group = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            for (MethodCall<Object> call : new ArrayList<>(calls.get(answering))) {
+                final Response<Object> response = ResponseImpl.response(call, 2);
+                buffer.clear();
+                if (call.id() % 2 == 0) {
+                    buffer = encoder.encodeTo(response, buffer);
+                } else {
+                    group.add(response);
+                    if (group.size() < 10) {
+                        continue;
+                    }
+                    buffer = encoder.encodeTo(group, buffer);
+                    group.clear();
+                }
+                buffer.flip();
+                answering.writeBinaryFrame(new Buffer(buffer.remaining()).setBytes(0, buffer));
+            }
+
+            waitFor(() -> results.get() == 200, "every binary response should reach its callback", results.get(),
+                    errors);
+            ok = client.pendingCallbacks() == 0 || die(client.pendingCallbacks());
+        } finally {
+            GlobalConstants.BINARY_PROTOCOL = binary;
+        }
+    }
+
+    @Test
+    public void testReconnect() {
+        startServer();
+        final QBitClient client = client(3, QBitClient.Selection.ROUND_ROBIN);
+        waitFor(() -> client.openConnections() == 3 && sockets.size() == 3, "pool should open 3 connections");
+
+        for (ServerWebSocket socket : new ArrayList<>(sockets)) {
+            socket.close();
+        }
+
+        waitFor(() -> sockets.size() == 6 && client.openConnections() == 3, "closed connections should open again",
+                sockets.size(), client.openConnections());
+    }
+
+    @Test
+    public void testBufferedUntilConnected() {
+        final QBitClient client = client(2, QBitClient.Selection.ROUND_ROBIN);
+        final Adder adder = client.createProxy(Adder.class, "adder");
+        for (int index = 0; index < 10; index++) {
+            adder.add(callback(), index, 1);
+        }
+        client.flush();
+
+        sleep(150);
+        ok = client.openConnections() == 0 || die();
+        startServer();
+
+        waitFor(() -> receivedTotal() == 10, "buffered calls should go out once a connection opens", receivedTotal());
+        ok = errors.isEmpty() || die(errors);
+    }
+
+    @Test
+    public void testFullBufferFailsCalls() {
+        final QBitClient client = client(1, QBitClient.Selection.ROUND_ROBIN);
+        final Adder adder = client.createProxy(Adder.class, "adder");
+
+        /* One frame per call, the buffer holds 1000 frames. */
+        for (int index = 0; index < 1005; index++) {
+            adder.add(callback(), index, 1);
+            client.flush();
+        }
+
+        ok = errors.size() == 5 || die("calls that did not fit should fail", errors.size());
+        ok = errors.get(0) instanceof RejectedExecutionException || die(errors.get(0));
+        ok = client.pendingCallbacks() == 1000 || die(client.pendingCallbacks());
+    }
+
+    @Test
+    public void testStopClosesConnections() {
+        startServer();
+        final QBitClient client = client(3, QBitClient.Selection.ROUND_ROBIN);
+        waitFor(() -> client.openConnections() == 3 && sockets.size() == 3, "pool should open 3 connections");
+
+        client.stop();
+        this.client = null;
+
+        ok = client.openConnections() == 0 || die(client.openConnections());
+        waitFor(() -> closed.get() == 3, "stop should close every connection", closed.get());
+
+        sleep(300);
+        ok = sockets.size() == 3 || die("a stopped client should not connect again", sockets.size());
+    }
+}
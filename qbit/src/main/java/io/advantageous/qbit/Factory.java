@@ -3,6 +3,7 @@ package io.advantageous.qbit;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.queue.Queue;
+import io.advantageous.qbit.queue.QueueBuilder;
 import io.advantageous.qbit.queue.ReceiveQueueListener;
 import io.advantageous.qbit.sender.Sender;
 import io.advantageous.qbit.service.BeforeMethodCall;
@@ -11,6 +12,9 @@ import io.advantageous.qbit.service.ServiceBundle;
 import io.advantageous.qbit.spi.ProtocolEncoder;
 import io.advantageous.qbit.util.MultiMap;
 
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
 /**
  * Main factory for QBit. This gets used internally to create / parse methods.
  * @author rhightower
@@ -68,6 +72,14 @@ public interface Factory {
      */
     ServiceBundle createServiceBundle(String path);
 
+    /**
+     * Create a service bundle.
+     * @param path path to bundle (base URI really)
+     * @param queueBuilder settings for the queues of the bundle and its services
+     * @return new service bundle
+     */
+    ServiceBundle createServiceBundle(String path, QueueBuilder queueBuilder);
+
 
     /**
      * Create a service
@@ -79,6 +91,31 @@ public interface Factory {
      */
     Service createService(String rootAddress, String serviceAddress, Object object, Queue<Response<Object>> responseQueue);
 
+    /**
+     * Create a service
+     * @param rootAddress base URI
+     * @param serviceAddress service address URI
+     * @param object object that implements the service
+     * @param responseQueue the response queue.
+     * @param queueBuilder settings for the request queue of the service
+     * @return
+     */
+    Service createService(String rootAddress, String serviceAddress, Object object, Queue<Response<Object>> responseQueue,
+                          QueueBuilder queueBuilder);
+
+    /**
+     * Create a service that shares its request queue, e.g., one replica of a stateless service.
+     * @param rootAddress base URI
+     * @param serviceAddress service address URI
+     * @param object object that implements the service
+     * @param responseQueue the response queue.
+     * @param requestQueue the request queue, it needs to be built for as many consumers as services share it
+     * @param queueBuilder settings for the queues of the service
+     * @return
+     */
+    Service createService(String rootAddress, String serviceAddress, Object object, Queue<Response<Object>> responseQueue,
+                          Queue<MethodCall<Object>> requestQueue, QueueBuilder queueBuilder);
+
 
     /**
      * Create an encoder.
@@ -124,6 +161,22 @@ public interface Factory {
      */
     Response<Object> createResponse(String text);
 
+    /**
+     * Parses a response or a group of responses, handing each response over as soon as it is parsed.
+     * @param body of response message
+     * @param responses gets each response
+     */
+    void createResponses(Object body, Consumer<Response<Object>> responses);
+
+    /**
+     * Parses a response or a group of responses, see ProtocolParser.parseResponses.
+     * Clients use it to skip the responses that no callback waits for any more.
+     * @param body of response message
+     * @param wanted tells if a response with this message id is wanted
+     * @param responses gets each wanted response
+     */
+    void createResponses(Object body, LongPredicate wanted, Consumer<Response<Object>> responses);
+
     /**
      * Create a remote proxy using a sender that knows how to send method body over wire
      * @param serviceInterface client view of service
@@ -147,4 +200,14 @@ public interface Factory {
      * @return
      */
     MethodCall<Object> createMethodCallToBeParsedFromBody(String addressPrefix, Object message);
+
+    /**
+     * Parses a message that can be a group of method calls, handing each method call over as soon as it is parsed.
+     * Useful for Websocket frames that carry a batch of calls, each call can go to a service bundle right away.
+     * @param addressPrefix prefix for the return addresses
+     * @param message message
+     * @param methodCalls gets each method call
+     */
+    void createMethodCallsToBeParsedFromBody(String addressPrefix, Object message,
+                                             Consumer<MethodCall<Object>> methodCalls);
 }
@@ -6,6 +6,54 @@ public class GlobalConstants {
 
     public static int POLL_WAIT = 5;
 
+    public static int MAX_LATENCY = Integer.valueOf(System.getProperty("org.qbit.MAX_LATENCY", "50"));
+
+    public static boolean RING_BUFFER = Boolean.valueOf(System.getProperty("org.qbit.RING_BUFFER", "false"));
+
+    public static int RING_BUFFER_SIZE = Integer.valueOf(System.getProperty("org.qbit.RING_BUFFER_SIZE", "1024"));
+
+    public static boolean BATCH_POOLING = Boolean.valueOf(System.getProperty("org.qbit.BATCH_POOLING", "false"));
+
+    public static int QUEUE_CAPACITY = Integer.valueOf(System.getProperty("org.qbit.QUEUE_CAPACITY",
+            String.valueOf(Integer.MAX_VALUE)));
+
+    public static boolean WORKER_POOL = Boolean.valueOf(System.getProperty("org.qbit.WORKER_POOL", "false"));
+
+    public static int WORKER_POOL_SIZE = Integer.valueOf(System.getProperty("org.qbit.WORKER_POOL_SIZE",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+    public static boolean VIRTUAL_THREADS = Boolean.valueOf(System.getProperty("org.qbit.VIRTUAL_THREADS", "false"));
+
+    /** How often the shared Timer updates its time, in milliseconds. */
+    public static int TIMER_RESOLUTION = Integer.valueOf(System.getProperty("org.qbit.TIMER_RESOLUTION", "1"));
+
+    public static boolean TIMER_HIGH_RESOLUTION = Boolean.valueOf(
+            System.getProperty("org.qbit.TIMER_HIGH_RESOLUTION", "false"));
+
+    /** Services call their methods through method handles built up front instead of through reflection. */
+    public static boolean METHOD_HANDLES = Boolean.valueOf(System.getProperty("org.qbit.METHOD_HANDLES", "false"));
+
+    /** Encoders from the factory write the binary protocol instead of the text protocol. */
+    public static boolean BINARY_PROTOCOL = Boolean.valueOf(System.getProperty("org.qbit.BINARY_PROTOCOL", "false"));
+
+    /** How long a service bundle waits for a response before the callback times out, in milliseconds. */
+    public static long CALLBACK_TIMEOUT = Long.valueOf(System.getProperty("org.qbit.CALLBACK_TIMEOUT", "30000"));
+
+    /** Most messages a websocket client or server puts in one group frame. */
+    public static int GROUP_FRAME_SIZE = Integer.valueOf(System.getProperty("org.qbit.GROUP_FRAME_SIZE", "100"));
+
+    /** A client sends the group frame it is building once it has this many chars. */
+    public static int GROUP_FRAME_CHARS = Integer.valueOf(System.getProperty("org.qbit.GROUP_FRAME_CHARS", "32768"));
+
+    /** How long a client holds calls to send them in one group frame, in milliseconds. */
+    public static int SEND_LATENCY = Integer.valueOf(System.getProperty("org.qbit.SEND_LATENCY", "5"));
+
+    /** Websocket connections a client keeps open to its server. */
+    public static int CLIENT_CONNECTIONS = Integer.valueOf(System.getProperty("org.qbit.CLIENT_CONNECTIONS", "1"));
+
+    /** Node id in the top bits of message ids, give each server in a cluster its own, see MessageIds. */
+    public static int NODE_ID = Integer.valueOf(System.getProperty("org.qbit.NODE_ID", "0"));
+
     public static boolean DEBUG = Boolean.valueOf(System.getProperty("org.qbit.DEBUG", "false"));
 
 }
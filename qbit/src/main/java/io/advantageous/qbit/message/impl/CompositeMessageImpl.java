@@ -1,5 +1,6 @@
 package io.advantageous.qbit.message.impl;
 
+import io.advantageous.qbit.util.MessageIds;
 import io.advantageous.qbit.util.Timer;
 import io.advantageous.qbit.message.CompositeMessage;
 import io.advantageous.qbit.message.Message;
@@ -22,11 +23,9 @@ public class CompositeMessageImpl<M extends Message<T>, T> implements CompositeM
     private final long timestamp;
     private List<M> messages;
 
-    private static volatile long idSequence;
-
     public CompositeMessageImpl(List<M> messages) {
         this.messages = messages;
-        this.id = idSequence++;
+        this.id = MessageIds.next();
         this.timestamp = Timer.timer().time();
     }
 
@@ -0,0 +1,30 @@
+package io.advantageous.qbit.queue;
+
+/**
+ * What a SendQueue does when its queue is at capacity.
+ *
+ * @author rhightower
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for the consumer to make room. Slows the producer down to the speed of the consumer.
+     */
+    BLOCK,
+
+    /**
+     * Drop the batch we are trying to send.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest items in the queue to make room for the new ones.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Reject items as soon as they are sent if the queue is full, so the caller can react right away,
+     * e.g., by sending back an error.
+     */
+    FAIL_FAST
+}
@@ -1,5 +1,7 @@
 package io.advantageous.qbit.queue;
 
+import java.util.function.Consumer;
+
 /**
  * Created by Richard on 8/4/14.
  * @author rhightower
@@ -22,6 +24,14 @@ public interface Queue <T> {
      */
     SendQueue<T> sendQueue();
 
+    /**
+     * Same as sendQueue() but lets the caller pick what happens when the queue is at capacity.
+     * @param overflowPolicy block, drop newest, drop oldest or fail fast
+     * @param onRejected called with every item that gets dropped or rejected, can be null
+     * @return send queue
+     */
+    SendQueue<T> sendQueue(OverflowPolicy overflowPolicy, Consumer<T> onRejected);
+
     /**
      * This starts up a listener which will listen to items on the
      * receive queue. It will notify when the queue is empty, when the queue is idle, when the queue is shutdown, etc.
@@ -35,4 +45,10 @@ public interface Queue <T> {
      * Stop the listener.
      */
     void stop();
+
+    /**
+     * Depth, capacity and rejections of this queue.
+     * @return stats
+     */
+    QueueStats stats();
 }
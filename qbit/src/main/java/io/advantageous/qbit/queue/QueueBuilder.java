@@ -0,0 +1,357 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.GlobalConstants;
+import io.advantageous.qbit.queue.impl.BasicQueue;
+import io.advantageous.qbit.queue.impl.PollWaitStrategy;
+import io.advantageous.qbit.queue.impl.RingBufferQueue;
+import io.advantageous.qbit.queue.impl.VirtualThreads;
+import io.advantageous.qbit.queue.impl.WorkerPool;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Holds the settings used to create queues so services and service bundles can pick which queue implementation
+ * they use for their request and response queues.
+ * <p>
+ * Defaults come from GlobalConstants.
+ *
+ * @author rhightower
+ */
+public class QueueBuilder {
+
+    /** Batches a derived batch pool keeps per consumer, the one it reads plus a few queued up behind it. */
+    private static final int POOLED_BATCHES_PER_CONSUMER = 16;
+
+    /** Item slots a derived batch pool keeps at most, so big batches get fewer pooled arrays. */
+    private static final int POOLED_SLOTS = 64 * 1024;
+
+    private int pollWait = GlobalConstants.POLL_WAIT;
+
+    private TimeUnit timeUnit = TimeUnit.MILLISECONDS;
+
+    private int batchSize = GlobalConstants.BATCH_SIZE;
+
+    private boolean ringBuffer = GlobalConstants.RING_BUFFER;
+
+    private int ringBufferSize = GlobalConstants.RING_BUFFER_SIZE;
+
+    private Supplier<WaitStrategy> waitStrategy = PollWaitStrategy::new;
+
+    private boolean batchPooling = GlobalConstants.BATCH_POOLING;
+
+    private int batchPoolSize;
+
+    private boolean adaptiveBatching;
+
+    private int minBatchSize;
+
+    private int maxBatchSize;
+
+    private long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(GlobalConstants.MAX_LATENCY);
+
+    private int capacity = GlobalConstants.QUEUE_CAPACITY;
+
+    private int consumers = 1;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    private WorkerPool workerPool = GlobalConstants.WORKER_POOL ? WorkerPool.shared() : null;
+
+    private ThreadFactory threadFactory = GlobalConstants.VIRTUAL_THREADS ? VirtualThreads.factory() : Thread::new;
+
+    public static QueueBuilder queueBuilder() {
+        return new QueueBuilder();
+    }
+
+    public QueueBuilder pollWait(int pollWait) {
+        this.pollWait = pollWait;
+        return this;
+    }
+
+    public QueueBuilder timeUnit(TimeUnit timeUnit) {
+        this.timeUnit = timeUnit;
+        return this;
+    }
+
+    public QueueBuilder batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Use a pre-allocated ring buffer instead of an unbounded linked transfer queue.
+     * @param ringBuffer true to use the ring buffer
+     * @return this
+     */
+    public QueueBuilder ringBuffer(boolean ringBuffer) {
+        this.ringBuffer = ringBuffer;
+        return this;
+    }
+
+    /**
+     * Number of slots in the ring buffer, rounded up to a power of two.
+     * Each slot holds one flushed batch, not one item.
+     * @param ringBufferSize slots
+     * @return this
+     */
+    public QueueBuilder ringBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+        return this;
+    }
+
+    /**
+     * How the listener of each queue waits when its queue is empty.
+     * Wait strategies keep per queue state, so this takes a supplier and every queue gets its own.
+     * @param waitStrategy creates a wait strategy, e.g., SpinWaitStrategy::new
+     * @return this
+     */
+    public QueueBuilder waitStrategy(Supplier<WaitStrategy> waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+
+    /**
+     * Let each send queue pick its own batch size between min and max. The batch grows while the receiver is busy
+     * and batches fill up, and shrinks when the receiver is waiting for work or traffic is too light to fill it.
+     * batchSize is where it starts.
+     * @param minBatchSize smallest batch size
+     * @param maxBatchSize largest batch size, this is how big the batch arrays are
+     * @return this
+     */
+    public QueueBuilder adaptiveBatching(int minBatchSize, int maxBatchSize) {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("need 1 <= minBatchSize <= maxBatchSize, but was "
+                    + minBatchSize + " and " + maxBatchSize);
+        }
+        this.adaptiveBatching = true;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Longest an item may wait in a send queue for its batch to fill up.
+     * Checked while sending and by flushIfDue.
+     * @param maxLatency max latency, negative for no limit
+     * @param timeUnit time unit of max latency
+     * @return this
+     */
+    public QueueBuilder maxLatency(long maxLatency, TimeUnit timeUnit) {
+        this.maxLatencyNanos = maxLatency < 0 ? -1 : timeUnit.toNanos(maxLatency);
+        return this;
+    }
+
+    /**
+     * Reuse batch arrays instead of allocating one per flush. Receive queues hand batches back to send queues
+     * once they have read them. Together with the ring buffer this takes allocation off the queue hot path.
+     * The pool holds up to batchPoolSize batches.
+     * @param batchPooling true to recycle batches
+     * @return this
+     */
+    public QueueBuilder batchPooling(boolean batchPooling) {
+        this.batchPooling = batchPooling;
+        return this;
+    }
+
+    /**
+     * Most batches the batch pool of each queue keeps, batches handed back to a full pool are left for the GC.
+     * By default a ring buffer queue keeps one per slot, since that is how many batches can be queued, and other
+     * queues keep a few per consumer, fewer if the batches are big.
+     * @param batchPoolSize batches, 0 to work it out from the other settings
+     * @return this
+     */
+    public QueueBuilder batchPoolSize(int batchPoolSize) {
+        if (batchPoolSize < 0) {
+            throw new IllegalArgumentException("batch pool size can not be negative, but was " + batchPoolSize);
+        }
+        this.batchPoolSize = batchPoolSize;
+        return this;
+    }
+
+    /**
+     * Max number of items in each queue, counted when a send queue flushes.
+     * @param capacity capacity, Integer.MAX_VALUE for unbounded
+     * @return this
+     */
+    public QueueBuilder capacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Number of listeners that drain the queue together, e.g., replicas of a stateless service.
+     * With more than one consumer, a receive queue does not keep a whole batch to itself. It claims a chunk of
+     * the batch and puts the batch back so the other consumers can steal the rest.
+     * Items from one batch can then be handled out of order, on different threads.
+     * @param consumers number of listeners, 1 for a single listener
+     * @return this
+     */
+    public QueueBuilder consumers(int consumers) {
+        if (consumers < 1) {
+            throw new IllegalArgumentException("need at least one consumer, but was " + consumers);
+        }
+        this.consumers = consumers;
+        return this;
+    }
+
+    /**
+     * What send queues do when the queue is at capacity, unless they pick their own.
+     * @param overflowPolicy overflow policy
+     * @return this
+     */
+    public QueueBuilder overflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Run queue listeners on a shared pool of worker threads instead of a thread per queue.
+     * Use this when there are many more services than cores.
+     * @param workerPool pool, e.g., WorkerPool.shared(), or null for a thread per queue
+     * @return this
+     */
+    public QueueBuilder workerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+        return this;
+    }
+
+    /**
+     * Creates the listener thread of each queue that does not use a worker pool.
+     * @param threadFactory thread factory
+     * @return this
+     */
+    public QueueBuilder threadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    /**
+     * Run each queue listener on its own virtual thread instead of a platform thread.
+     * A listener blocked in pollWait then costs a small heap object instead of a whole thread,
+     * so one JVM can host many more services.
+     * Needs JDK 21 and QBit built with -Pjava21, see VirtualThreads.
+     * @param virtualThreads true for virtual threads, false for platform threads
+     * @return this
+     */
+    public QueueBuilder virtualThreads(boolean virtualThreads) {
+        this.threadFactory = virtualThreads ? VirtualThreads.factory() : Thread::new;
+        return this;
+    }
+
+    public int pollWait() {
+        return pollWait;
+    }
+
+    public TimeUnit timeUnit() {
+        return timeUnit;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public boolean ringBuffer() {
+        return ringBuffer;
+    }
+
+    public int ringBufferSize() {
+        return ringBufferSize;
+    }
+
+    public Supplier<WaitStrategy> waitStrategy() {
+        return waitStrategy;
+    }
+
+    public boolean adaptiveBatching() {
+        return adaptiveBatching;
+    }
+
+    public int minBatchSize() {
+        return adaptiveBatching ? minBatchSize : batchSize;
+    }
+
+    public int maxBatchSize() {
+        return adaptiveBatching ? Math.max(maxBatchSize, batchSize) : batchSize;
+    }
+
+    public long maxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public boolean batchPooling() {
+        return batchPooling;
+    }
+
+    public int batchPoolSize() {
+        if (batchPoolSize > 0) {
+            return batchPoolSize;
+        }
+        if (ringBuffer) {
+            return ringBufferSize;
+        }
+        final int bySlots = Math.max(1, POOLED_SLOTS / maxBatchSize());
+        return Math.max(consumers + 1, Math.min(consumers * POOLED_BATCHES_PER_CONSUMER, bySlots));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int consumers() {
+        return consumers;
+    }
+
+    public OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public WorkerPool workerPool() {
+        return workerPool;
+    }
+
+    public ThreadFactory threadFactory() {
+        return threadFactory;
+    }
+
+    /**
+     * Queues keep a copy of their settings, so changing this builder later does not change queues built with it.
+     * @return a copy of this builder
+     */
+    public QueueBuilder copy() {
+        final QueueBuilder copy = new QueueBuilder();
+        copy.pollWait = pollWait;
+        copy.timeUnit = timeUnit;
+        copy.batchSize = batchSize;
+        copy.ringBuffer = ringBuffer;
+        copy.ringBufferSize = ringBufferSize;
+        copy.waitStrategy = waitStrategy;
+        copy.batchPooling = batchPooling;
+        copy.batchPoolSize = batchPoolSize;
+        copy.adaptiveBatching = adaptiveBatching;
+        copy.minBatchSize = minBatchSize;
+        copy.maxBatchSize = maxBatchSize;
+        copy.maxLatencyNanos = maxLatencyNanos;
+        copy.capacity = capacity;
+        copy.consumers = consumers;
+        copy.overflowPolicy = overflowPolicy;
+        copy.workerPool = workerPool;
+        copy.threadFactory = threadFactory;
+        return copy;
+    }
+
+    /**
+     * Create a new queue with these settings.
+     * @param name name of the queue, this is used to name the listener thread
+     * @param <T> type of items in queue
+     * @return new queue
+     */
+    public <T> Queue<T> build(String name) {
+        if (ringBuffer) {
+            return new RingBufferQueue<>(name, this);
+        } else {
+            return new BasicQueue<>(name, this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.advantageous.qbit.queue;
+
+/**
+ * Statistics for a queue. Safe to read from any thread.
+ * The counters are cheap enough to leave on, see QueueStatsRegistry to poll them by queue name.
+ *
+ * @author rhightower
+ */
+public interface QueueStats {
+
+    /**
+     * @return name of the queue
+     */
+    String name();
+
+    /**
+     * Items sent to the queue that no receive queue has picked up yet.
+     * Items still sitting in a send queue that has not flushed are not counted.
+     * @return depth
+     */
+    long depth();
+
+    /**
+     * @return max depth before the overflow policy kicks in, Integer.MAX_VALUE if unbounded
+     */
+    int capacity();
+
+    /**
+     * @return number of items that were dropped or rejected because the queue was full
+     */
+    long rejected();
+
+    /**
+     * @return number of items send queues have put on the queue
+     */
+    long sent();
+
+    /**
+     * @return number of items receive queues have taken off the queue
+     */
+    long received();
+
+    /**
+     * @return number of batches send queues have put on the queue
+     */
+    long flushes();
+
+    /**
+     * Histogram of the size of the batches put on the queue.
+     * Bucket i counts batches of 2^i up to 2^(i+1) - 1 items, so bucket 0 is single items,
+     * bucket 1 is 2 to 3 items, and so on. The last bucket counts everything bigger.
+     * @return a copy of the histogram
+     */
+    long[] batchSizes();
+
+    /**
+     * Number of times we measured how long a request waited, from its timestamp until a receive queue took it.
+     * Only the first request of each batch is measured.
+     * @return samples
+     */
+    long residenceSamples();
+
+    /**
+     * @return sum of the measured waits in milliseconds, divide by residenceSamples for the mean
+     */
+    long residenceMillis();
+
+    /**
+     * @return longest measured wait in milliseconds
+     */
+    long maxResidenceMillis();
+}
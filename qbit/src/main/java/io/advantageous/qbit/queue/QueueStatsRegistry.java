@@ -0,0 +1,65 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.util.ConcurrentHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stats of all running queues for monitoring to poll.
+ * Queues register when their first listener starts and unregister when they are stopped, so a queue that
+ * never ran is not in here and a running one is held by its listener anyway.
+ * Entries are kept by identity, two queues with the same name are both in here.
+ *
+ * @author rhightower
+ */
+public final class QueueStatsRegistry {
+
+    private static final Set<QueueStats> stats = new ConcurrentHashSet<>(100);
+
+    private QueueStatsRegistry() {
+    }
+
+    public static void register(final QueueStats queueStats) {
+        stats.add(queueStats);
+    }
+
+    public static void unregister(final QueueStats queueStats) {
+        stats.remove(queueStats);
+    }
+
+    /**
+     * @param name name of the queue
+     * @return stats of a running queue with this name, or null if there is none, see all(name) for duplicates
+     */
+    public static QueueStats stats(final String name) {
+        for (QueueStats queueStats : stats) {
+            if (queueStats.name().equals(name)) {
+                return queueStats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name name of the queue
+     * @return stats of all running queues with this name
+     */
+    public static List<QueueStats> all(final String name) {
+        final List<QueueStats> named = new ArrayList<>();
+        for (QueueStats queueStats : stats) {
+            if (queueStats.name().equals(name)) {
+                named.add(queueStats);
+            }
+        }
+        return named;
+    }
+
+    /**
+     * @return stats of all running queues
+     */
+    public static List<QueueStats> all() {
+        return new ArrayList<>(stats);
+    }
+}
@@ -37,11 +37,19 @@ public interface ReceiveQueue<T> extends Input {
     T take();
 
     /** Read in a batch of items.
+     * Returns at most max items. The batch may be a read-only view over the queue's own batch array,
+     * so it is only valid until the next read from this receive queue.
      * @param max max number you want from batch
      * @return batch of values
      */
     Iterable<T> readBatch(int max);
 
+    /** Read in a batch of items into a buffer the caller owns and reuses, so nothing gets allocated.
+     * @param buffer filled from index 0, at most buffer.length items
+     * @return number of items read, 0 if the queue is empty
+     */
+    int readBatch(T[] buffer);
+
 
     /** Read in a batch of items.
      * @return batch of values
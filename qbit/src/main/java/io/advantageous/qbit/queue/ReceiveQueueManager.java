@@ -13,4 +13,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public interface ReceiveQueueManager <T> {
 
     void manageQueue(ReceiveQueue<T> queue, ReceiveQueueListener<T> listener, int batchSize, AtomicBoolean stop);
+
+    /**
+     * What the manager does when the queue is empty.
+     * @return wait strategy
+     */
+    WaitStrategy waitStrategy();
 }
@@ -21,5 +21,11 @@ public interface SendQueue<T> extends Output {
     boolean shouldBatch();
     void flushSends();
 
+    /**
+     * Flush if the receiver is waiting or the oldest unsent item is older than the max latency of the queue.
+     * @return true if it flushed
+     */
+    boolean flushIfDue();
+
 
  }
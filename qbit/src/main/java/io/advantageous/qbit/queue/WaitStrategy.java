@@ -0,0 +1,31 @@
+package io.advantageous.qbit.queue;
+
+/**
+ * Decides what a queue manager does when the receive queue comes back empty.
+ * Latency critical services can busy spin, mostly idle services can back off and park so they burn no CPU.
+ * <p>
+ * A wait strategy keeps track of time so it is not thread safe. Use one per queue.
+ *
+ * @author rhightower
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called by the queue manager after the queue was found empty.
+     *
+     * @param queue queue we are waiting on
+     * @param <T>   type of item
+     * @return the next item, or null if we waited and there was still nothing, which means the queue is idle
+     */
+    <T> T waitForItem(ReceiveQueue<T> queue);
+
+    /**
+     * @return nanoseconds spent inside of waitForItem
+     */
+    long idleTimeNanos();
+
+    /**
+     * @return nanoseconds spent outside of waitForItem, i.e., processing items
+     */
+    long workTimeNanos();
+}
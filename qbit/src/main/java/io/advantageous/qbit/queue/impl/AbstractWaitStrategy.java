@@ -0,0 +1,51 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.ReceiveQueue;
+import io.advantageous.qbit.queue.WaitStrategy;
+
+/**
+ * Base for wait strategies. Keeps track of how long we were idle (waiting) versus working.
+ * Only the queue manager thread writes the counters, they are volatile so stats can be read from other threads.
+ */
+public abstract class AbstractWaitStrategy implements WaitStrategy {
+
+    private volatile long idleTimeNanos;
+    private volatile long workTimeNanos;
+    private long lastWakeUp = System.nanoTime();
+
+    @Override
+    public final <T> T waitForItem(final ReceiveQueue<T> queue) {
+        final long start = System.nanoTime();
+        workTimeNanos += start - lastWakeUp;
+        try {
+            return doWait(queue);
+        } finally {
+            lastWakeUp = System.nanoTime();
+            idleTimeNanos += lastWakeUp - start;
+        }
+    }
+
+    /**
+     * Wait for the next item.
+     *
+     * @param queue queue
+     * @param <T>   type of item
+     * @return item or null if we gave up waiting
+     */
+    protected abstract <T> T doWait(ReceiveQueue<T> queue);
+
+    @Override
+    public long idleTimeNanos() {
+        return idleTimeNanos;
+    }
+
+    @Override
+    public long workTimeNanos() {
+        return workTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{idleTimeNanos=" + idleTimeNanos + ", workTimeNanos=" + workTimeNanos + '}';
+    }
+}
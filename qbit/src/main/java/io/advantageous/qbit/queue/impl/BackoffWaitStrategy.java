@@ -0,0 +1,81 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.ReceiveQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Progressive back off for services that sit mostly idle.
+ * Spin a little, yield a little, then park, doubling the park time each round up to a max.
+ * Once we have waited idleTime without an item we report the queue as idle.
+ */
+public class BackoffWaitStrategy extends AbstractWaitStrategy {
+
+    private final int spins;
+    private final int yields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+    private final long idleNanos;
+
+    public BackoffWaitStrategy() {
+        this(100, 10, TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1), 50, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param spins    number of polls before we start yielding
+     * @param yields   number of yields before we start parking
+     * @param minPark  first park time
+     * @param maxPark  longest park time
+     * @param idleTime how long we wait before we report the queue as idle
+     * @param timeUnit time unit for idleTime, minPark and maxPark are nanoseconds
+     */
+    public BackoffWaitStrategy(final int spins, final int yields, final long minPark, final long maxPark,
+                               final long idleTime, final TimeUnit timeUnit) {
+        this.spins = spins;
+        this.yields = yields;
+        this.minParkNanos = minPark;
+        this.maxParkNanos = maxPark;
+        this.idleNanos = timeUnit.toNanos(idleTime);
+    }
+
+    @Override
+    protected <T> T doWait(final ReceiveQueue<T> queue) {
+        T item;
+
+        for (int spin = 0; spin < spins; spin++) {
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+
+        for (int index = 0; index < yields; index++) {
+            Thread.yield();
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+
+        final long start = System.nanoTime();
+        long parkNanos = minParkNanos;
+
+        while (System.nanoTime() - start < idleNanos) {
+            LockSupport.parkNanos(parkNanos);
+
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+            if (parkNanos < maxParkNanos) {
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+        return null;
+    }
+}
@@ -4,8 +4,13 @@ import io.advantageous.qbit.queue.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * This is the base for all the queues we use.
@@ -16,7 +21,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class BasicQueue<T> implements Queue<T> {
 
-    private final LinkedTransferQueue<Object> queue = new LinkedTransferQueue<>();
+    /** First wait before restarting a listener that threw, doubles with each failure in a row. */
+    private static final long MIN_RESTART_BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Longest wait between restarts, a listener that ran this long before throwing starts over at the minimum. */
+    private static final long MAX_RESTART_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+
+    private final TransferQueue<Object> queue;
     private final int batchSize;
     private final AtomicBoolean stop = new AtomicBoolean();
     private final Logger logger = LoggerFactory.getLogger(BasicQueue.class);
@@ -24,19 +35,114 @@ public class BasicQueue<T> implements Queue<T> {
     private final String name;
     private final int waitTime;
     private final TimeUnit timeUnit;
+    private final WorkerPool workerPool;
+    private final ThreadFactory threadFactory;
+
+    private final QueueBuilder settings;
+    private final QueueCapacity capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final BatchPool batchPool;
+    private final QueueMetrics metrics = new QueueMetrics();
+    private final QueueStats stats = new Stats();
+    private final int consumers;
 
-    private ScheduledExecutorService monitor;
-    private ScheduledFuture<?> future;
+    private final List<Thread> listenerThreads = new ArrayList<>();
+    private final List<WorkerPool.Registration<T>> registrations = new CopyOnWriteArrayList<>();
 
     public BasicQueue(String name,
                       final int waitTime,
                       final TimeUnit timeUnit,
                       int batchSize) {
+        this(name, waitTime, timeUnit, batchSize, new PollWaitStrategy(), null, Thread::new);
+    }
+
+    public BasicQueue(String name,
+                      final int waitTime,
+                      final TimeUnit timeUnit,
+                      int batchSize,
+                      final WaitStrategy waitStrategy) {
+        this(name, waitTime, timeUnit, batchSize, waitStrategy, null, Thread::new);
+    }
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait, also how long the queue is quiet before the listener gets idle
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param waitStrategy what the listener does when the queue is empty, not used when there is a worker pool
+     * @param workerPool if not null the listener runs on this pool instead of its own thread
+     */
+    public BasicQueue(String name,
+                      final int waitTime,
+                      final TimeUnit timeUnit,
+                      int batchSize,
+                      final WaitStrategy waitStrategy,
+                      final WorkerPool workerPool) {
+        this(name, waitTime, timeUnit, batchSize, waitStrategy, workerPool, Thread::new);
+    }
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait, also how long the queue is quiet before the listener gets idle
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param waitStrategy what the listener does when the queue is empty, not used when there is a worker pool
+     * @param workerPool if not null the listener runs on this pool instead of its own thread
+     * @param threadFactory creates the listener thread, e.g., VirtualThreads.factory()
+     */
+    public BasicQueue(String name,
+                      final int waitTime,
+                      final TimeUnit timeUnit,
+                      int batchSize,
+                      final WaitStrategy waitStrategy,
+                      final WorkerPool workerPool,
+                      final ThreadFactory threadFactory) {
+        this(name, settings(waitTime, timeUnit, batchSize, waitStrategy, workerPool, threadFactory));
+    }
+
+    /**
+     * @param name name of queue
+     * @param queueBuilder settings of the queue, the ring buffer settings are ignored
+     */
+    public BasicQueue(String name, final QueueBuilder queueBuilder) {
+        this(name, queueBuilder, new LinkedTransferQueue<>());
+    }
+
+    /**
+     * Allows subclasses to swap out the underlying transfer queue, for example for a bounded ring buffer.
+     *
+     * @param name name of queue
+     * @param queueBuilder settings of the queue
+     * @param queue the transfer queue that holds items and batches of items
+     */
+    protected BasicQueue(String name,
+                         final QueueBuilder queueBuilder,
+                         final TransferQueue<Object> queue) {
         this.name = name;
-        this.waitTime = waitTime;
-        this.timeUnit = timeUnit;
-        this.batchSize = batchSize;
-        this.receiveQueueManager = new BasicReceiveQueueManager<>();
+        this.workerPool = queueBuilder.workerPool();
+        this.threadFactory = queueBuilder.threadFactory();
+        this.waitTime = queueBuilder.pollWait();
+        this.timeUnit = queueBuilder.timeUnit();
+        this.batchSize = queueBuilder.batchSize();
+        this.capacity = new QueueCapacity(queueBuilder.capacity());
+        this.overflowPolicy = queueBuilder.overflowPolicy();
+        this.consumers = queueBuilder.consumers();
+        this.settings = queueBuilder.copy();
+        this.batchPool = queueBuilder.batchPooling()
+                ? new BatchPool(queueBuilder.adaptiveBatching() ? queueBuilder.maxBatchSize() : batchSize,
+                queueBuilder.batchPoolSize()) : null;
+        this.queue = queue;
+        this.receiveQueueManager = new BasicReceiveQueueManager<>(queueBuilder.waitStrategy().get());
+    }
+
+    static QueueBuilder settings(final int waitTime,
+                                 final TimeUnit timeUnit,
+                                 final int batchSize,
+                                 final WaitStrategy waitStrategy,
+                                 final WorkerPool workerPool,
+                                 final ThreadFactory threadFactory) {
+        return QueueBuilder.queueBuilder().pollWait(waitTime).timeUnit(timeUnit).batchSize(batchSize)
+                .waitStrategy(() -> waitStrategy).workerPool(workerPool).threadFactory(threadFactory);
     }
 
 
@@ -48,56 +154,229 @@ public class BasicQueue<T> implements Queue<T> {
      */
     @Override
     public ReceiveQueue<T> receiveQueue() {
-        return new BasicReceiveQueue<>(queue, waitTime, timeUnit, batchSize);
+        return new BasicReceiveQueue<>(queue, waitTime, timeUnit, batchSize, capacity, metrics, batchPool, consumers);
     }
 
     /**
      * This returns a new instance of SendQueue every time you call it
      * so call it only once per thread.
+     * The send queue uses the overflow policy of the queue and drops rejected items silently.
      *
      * @return sendQueue.
      */
     @Override
     public SendQueue<T> sendQueue() {
-        return new BasicSendQueue<>(batchSize, this.queue);
+        return sendQueue(overflowPolicy, null);
+    }
+
+    /**
+     * Same as sendQueue() but with its own overflow policy.
+     *
+     * @param overflowPolicy what to do when the queue is at capacity
+     * @param onRejected gets every item that is dropped or rejected, called from the sending thread, can be null
+     * @return sendQueue.
+     */
+    @Override
+    public SendQueue<T> sendQueue(final OverflowPolicy overflowPolicy, final Consumer<T> onRejected) {
+        return new BasicSendQueue<>(settings, this.queue, workerPool == null ? null : this::scheduleListener,
+                capacity, metrics, overflowPolicy, onRejected, batchPool);
+    }
+
+    @Override
+    public QueueStats stats() {
+        return stats;
+    }
+
+    private void scheduleListener() {
+        for (WorkerPool.Registration<T> registration : registrations) {
+            registration.schedule();
+        }
     }
 
+    /**
+     * Starts a dedicated thread that drains the queue. The thread comes from the thread factory,
+     * which can hand out virtual threads.
+     * The thread is running and draining by the time this returns, there is no scheduling delay.
+     * If the listener throws, the loop is restarted with the same receive queue so the rest of the batch
+     * that was in flight is not lost.
+     * <p>
+     * If the queue has a worker pool, the listener is registered with the pool instead and no thread is started.
+     * <p>
+     * A queue built for more than one consumer takes up to that many listeners, each on its own thread or
+     * registration. They share the items of the queue, see QueueBuilder.consumers.
+     * <p>
+     * The first listener registers the stats of the queue with the QueueStatsRegistry, stop unregisters them.
+     *
+     * @param listener listener
+     */
     @Override
-    public void startListener(final ReceiveQueueListener<T> listener) {
-        if (monitor == null) {
-            monitor = Executors.newScheduledThreadPool(1,
-                    runnable -> {
-                        Thread thread = new Thread(runnable);
-                        thread.setName("QueueListener " + name);
-                        return thread;
-                    }
-            );
-        } else {
-            throw new IllegalStateException("Only one BasicQueue listener allowed at a time");
-        }
-
-        future = monitor.scheduleAtFixedRate(() -> {
+    public synchronized void startListener(final ReceiveQueueListener<T> listener) {
+        final int listeners = listenerThreads.size() + registrations.size();
+        if (listeners >= consumers) {
+            throw new IllegalStateException(consumers == 1 ? "Only one BasicQueue listener allowed at a time"
+                    : "Only " + consumers + " BasicQueue listeners allowed at a time");
+        }
+        if (listeners == 0 && !stop.get()) {
+            QueueStatsRegistry.register(stats);
+        }
+
+        if (workerPool != null) {
+            registrations.add(workerPool.register(
+                    new BasicReceiveQueue<>(queue, waitTime, timeUnit, batchSize, capacity, metrics, batchPool, consumers),
+                    listener, batchSize, timeUnit.toNanos(waitTime)));
+            return;
+        }
+
+        final ReceiveQueue<T> receiveQueue = receiveQueue();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        /* Wait strategies keep state, so each extra listener gets its own manager. */
+        final ReceiveQueueManager<T> manager = listeners == 0 ? receiveQueueManager
+                : new BasicReceiveQueueManager<>(settings.waitStrategy().get());
+
+        final Thread listenerThread = threadFactory.newThread(() -> {
+            started.countDown();
+            runListener(receiveQueue, listener, manager);
+        });
+        listenerThread.setName(listeners == 0 ? "QueueListener " + name : "QueueListener " + name + " " + listeners);
+        listenerThreads.add(listenerThread);
+        listenerThread.start();
+
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consumer loop. Runs the queue manager until the queue is stopped.
+     * The manager only returns on stop, but if the listener throws we log it and keep going.
+     * A listener that throws every time it is called would restart in a tight loop, flooding the log,
+     * so each failure in a row waits twice as long before the restart, up to MAX_RESTART_BACKOFF.
+     */
+    private void runListener(final ReceiveQueue<T> receiveQueue, final ReceiveQueueListener<T> listener,
+                             final ReceiveQueueManager<T> manager) {
+        long backoff = 0;
+        boolean lastRun = false;
+        while (true) {
+            final long started = System.nanoTime();
             try {
-                manageQueue(listener);
+                manager.manageQueue(receiveQueue, listener, batchSize, stop);
+                return;
             } catch (Exception ex) {
-                logger.error("BasicQueue Manager", "Problem running queue manager", ex);
+                if (lastRun) {
+                    logger.error("BasicQueue Manager, problem running queue manager, stopped " + name, ex);
+                    return;
+                }
+                backoff = System.nanoTime() - started >= MAX_RESTART_BACKOFF ? MIN_RESTART_BACKOFF
+                        : Math.min(MAX_RESTART_BACKOFF, Math.max(MIN_RESTART_BACKOFF, backoff * 2));
+                logger.error("BasicQueue Manager, problem running queue manager, restarting " + name
+                        + " in " + TimeUnit.NANOSECONDS.toMillis(backoff) + " ms", ex);
+                if (!stop.get()) {
+                    /* stop interrupts us, which ends the park early. */
+                    LockSupport.parkNanos(backoff);
+                }
+                /* Once stopped, run the manager one more time so the listener gets shutdown. */
+                lastRun = stop.get();
             }
-        }, 50, 50, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
-    public void stop() {
-        if (future != null) {
-            future.cancel(true);
+    public synchronized void stop() {
+        if (stop.getAndSet(true)) {
+            return;
         }
-        if (monitor != null) {
-            monitor.shutdownNow();
+        QueueStatsRegistry.unregister(stats);
+        for (Thread listenerThread : listenerThreads) {
+            listenerThread.interrupt();
         }
-        stop.set(true);
+        for (WorkerPool.Registration<T> registration : registrations) {
+            registration.cancel();
+        }
+    }
+
+    /**
+     * The wait strategy used by the first listener. Reports how much time the listener spent idle versus working.
+     * @return wait strategy
+     */
+    public WaitStrategy waitStrategy() {
+        return receiveQueueManager.waitStrategy();
+    }
+
+    /**
+     * @return the worker pool the listener runs on, or null if it has its own thread
+     */
+    public WorkerPool workerPool() {
+        return workerPool;
     }
 
-    private void manageQueue(ReceiveQueueListener<T> listener) {
-        this.receiveQueueManager.manageQueue(receiveQueue(), listener, batchSize, stop);
+    private class Stats implements QueueStats {
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public long depth() {
+            return capacity.depth();
+        }
+
+        @Override
+        public int capacity() {
+            return capacity.capacity();
+        }
+
+        @Override
+        public long rejected() {
+            return capacity.rejected();
+        }
+
+        @Override
+        public long sent() {
+            return metrics.sent();
+        }
+
+        @Override
+        public long received() {
+            return metrics.received();
+        }
+
+        @Override
+        public long flushes() {
+            return metrics.flushes();
+        }
+
+        @Override
+        public long[] batchSizes() {
+            return metrics.batchSizes();
+        }
+
+        @Override
+        public long residenceSamples() {
+            return metrics.residenceSamples();
+        }
+
+        @Override
+        public long residenceMillis() {
+            return metrics.residenceMillis();
+        }
+
+        @Override
+        public long maxResidenceMillis() {
+            return metrics.maxResidenceMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "QueueStats{name=" + name + ", depth=" + depth() + ", capacity=" + capacity()
+                    + ", rejected=" + rejected() + ", sent=" + sent() + ", received=" + received()
+                    + ", flushes=" + flushes() + ", batchSizes=" + Arrays.toString(batchSizes())
+                    + ", residenceSamples=" + residenceSamples() + ", residenceMillis=" + residenceMillis()
+                    + ", maxResidenceMillis=" + maxResidenceMillis() + '}';
+        }
     }
 
     public static <T> BasicQueue<T> create() {
@@ -5,7 +5,7 @@ import io.advantageous.qbit.queue.ReceiveQueue;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TransferQueue;
 import java.util.concurrent.TimeUnit;
 
 
@@ -22,18 +22,46 @@ class BasicReceiveQueue<T> implements ReceiveQueue<T> {
     private final int batchSize;
     private Object[] lastQueue = null;
     private int lastQueueIndex;
-    private final LinkedTransferQueue<Object> queue;
+    private int lastQueueLength;
 
-    public BasicReceiveQueue(LinkedTransferQueue<Object> queue, long waitTime, TimeUnit timeUnit, int batchSize) {
+    /** PooledBatch or SplitBatch the current batch array belongs to, null for a plain array. */
+    private Object lastOwner;
+
+    /** Owner of the batch handed out as a view by readBatch, it is released on the next read. */
+    private Object viewedOwner;
+
+    /** Shared batch we keep claiming chunks from once the current chunk is done. */
+    private SplitBatch currentSplit;
+    private final TransferQueue<Object> queue;
+    private final QueueCapacity capacity;
+    private final QueueMetrics metrics;
+    private final BatchPool batchPool;
+    private final int consumers;
+
+    public BasicReceiveQueue(TransferQueue<Object> queue, long waitTime, TimeUnit timeUnit, int batchSize) {
+        this(queue, waitTime, timeUnit, batchSize, new QueueCapacity(Integer.MAX_VALUE), new QueueMetrics(), null, 1);
+    }
+
+    /**
+     * @param consumers number of receive queues draining the queue, with more than one batches are split
+     */
+    BasicReceiveQueue(TransferQueue<Object> queue, long waitTime, TimeUnit timeUnit, int batchSize,
+                      QueueCapacity capacity, QueueMetrics metrics, BatchPool batchPool, int consumers) {
         this.queue = queue;
+        this.capacity = capacity;
+        this.metrics = metrics;
+        this.batchPool = batchPool;
         this.waitTime = waitTime;
         this.timeUnit = timeUnit;
         this.batchSize = batchSize;
+        this.consumers = consumers;
     }
 
     @Override
     public T pollWait() {
 
+        recycleViewedBatch();
+
         if (lastQueue!=null) {
 
             return getItemFromLocalQueue();
@@ -41,7 +69,10 @@ class BasicReceiveQueue<T> implements ReceiveQueue<T> {
 
         try {
 
-            Object o =  queue.poll(waitTime, timeUnit);
+            Object o = pollQueue();
+            if (o == null) {
+                o = queue.poll(waitTime, timeUnit);
+            }
             return extractItem(o);
         } catch (InterruptedException e) {
             return null;
@@ -54,23 +85,151 @@ class BasicReceiveQueue<T> implements ReceiveQueue<T> {
         T item = (T)lastQueue[lastQueueIndex];
         lastQueueIndex++;
 
-        if (lastQueueIndex == lastQueue.length) {
-            lastQueueIndex = 0;
-            lastQueue = null;
+        if (lastQueueIndex == lastQueueLength) {
+            finishBatch();
         }
         return item;
     }
 
+    private static boolean isBatch(final Object o) {
+        return o instanceof Object[] || o instanceof PooledBatch || o instanceof SplitBatch;
+    }
+
+    /**
+     * A shared batch that other consumers already claimed all of.
+     */
+    private static boolean isStale(final Object o) {
+        return o instanceof SplitBatch && ((SplitBatch) o).exhausted();
+    }
+
+    /**
+     * Makes o the current batch. With more than one consumer, only a chunk of it.
+     * @return false if o was a shared batch that was already fully claimed
+     */
+    private boolean startBatch(final Object o) {
+        if (o instanceof SplitBatch) {
+            final SplitBatch split = (SplitBatch) o;
+            split.unpublish();
+            return claim(split);
+        }
+
+        final Object[] items;
+        final int size;
+        final PooledBatch pooled;
+        if (o instanceof PooledBatch) {
+            pooled = (PooledBatch) o;
+            items = pooled.items;
+            size = pooled.size;
+        } else {
+            pooled = null;
+            items = (Object[]) o;
+            size = items.length;
+        }
+
+        if (size > 0) {
+            metrics.sampleResidence(items[0]);
+        }
+
+        if (consumers > 1 && size > 1) {
+            return claim(new SplitBatch(items, size, consumers, pooled));
+        }
+
+        lastOwner = pooled;
+        lastQueue = items;
+        lastQueueLength = size;
+        lastQueueIndex = 0;
+        taken(size);
+        return true;
+    }
+
+    /**
+     * Claims the next chunk of a shared batch, and puts the batch back on the queue if there is more to steal.
+     * If the queue is full, we keep the rest to ourselves, see finishBatch.
+     */
+    private boolean claim(final SplitBatch split) {
+        final int from = split.claim();
+        if (from >= split.size) {
+            return false;
+        }
+        final int to = Math.min(split.size, from + split.chunk);
+
+        lastOwner = split;
+        lastQueue = split.items;
+        lastQueueIndex = from;
+        lastQueueLength = to;
+        currentSplit = split;
+        taken(to - from);
+
+        if (to < split.size && split.publish() && !queue.offer(split)) {
+            split.unpublish();
+        }
+        return true;
+    }
+
+    /**
+     * Items left the queue. Once per batch or chunk.
+     */
+    private void taken(final int count) {
+        capacity.release(count);
+        metrics.received(count);
+    }
+
+    private void release(final Object owner) {
+        if (owner instanceof PooledBatch) {
+            batchPool.recycle((PooledBatch) owner);
+        } else if (owner instanceof SplitBatch) {
+            final SplitBatch split = (SplitBatch) owner;
+            if (split.finishChunk() && split.pooled != null) {
+                batchPool.recycle(split.pooled);
+            }
+        }
+    }
+
+    private void recycleViewedBatch() {
+        if (viewedOwner != null) {
+            release(viewedOwner);
+            viewedOwner = null;
+        }
+    }
+
+    private void finishBatch() {
+        finishBatch(false);
+    }
+
+    /**
+     * Done with the current batch. Pooled batches go back to the send side to be filled again.
+     * If the batch was a chunk of a shared batch, we go on with the next chunk nobody has stolen yet.
+     * @param viewed the caller still reads the batch through a view, so hold on to it until the next read
+     */
+    private void finishBatch(final boolean viewed) {
+        lastQueueIndex = 0;
+        lastQueue = null;
+        if (viewed) {
+            viewedOwner = lastOwner;
+        } else {
+            release(lastOwner);
+        }
+        lastOwner = null;
+
+        final SplitBatch split = currentSplit;
+        if (split != null) {
+            currentSplit = null;
+            claim(split);
+        }
+    }
+
 
     @Override
     public T poll() {
 
+        recycleViewedBatch();
+
         if (lastQueue!=null) {
 
             return getItemFromLocalQueue();
         }
 
-        Object o =   queue.poll();
+        Object o = pollQueue();
         return extractItem(o);
 
     }
@@ -78,14 +237,26 @@ class BasicReceiveQueue<T> implements ReceiveQueue<T> {
     @Override
     public T take() {
 
+        recycleViewedBatch();
+
         if (lastQueue!=null) {
 
             return getItemFromLocalQueue();
         }
 
         try {
-            Object o =  queue.take();
-            return extractItem(o);
+            Object o = pollQueue();
+            while (true) {
+                while (o == null || isStale(o)) {
+                    o = queue.take();
+                }
+                /* Null if another consumer claimed the last chunk of a shared batch and the queue is empty. */
+                final T item = extractItem(o);
+                if (item != null) {
+                    return item;
+                }
+                o = null;
+            }
 
         } catch (InterruptedException e) {
             Thread.interrupted();
@@ -93,29 +264,122 @@ class BasicReceiveQueue<T> implements ReceiveQueue<T> {
         }
     }
 
+    /**
+     * Polls the queue itself, and lets the send queues know if we found it empty.
+     */
+    private Object pollQueue() {
+        final Object o = queue.poll();
+        if (o == null) {
+            capacity.drained();
+        }
+        return o;
+    }
+
+    /**
+     * True if there is something left in the current batch or in the queue. Does not remove anything.
+     */
+    boolean hasItems() {
+        return lastQueue != null || !queue.isEmpty();
+    }
+
     private T extractItem(Object o) {
-        if (o instanceof Object[]) {
-            lastQueue = (Object[]) o;
-            return getItemFromLocalQueue();
+        if (isBatch(o)) {
+            /* Lost the race for the last chunk of a shared batch, see what else is there. */
+            return startBatch(o) ? getItemFromLocalQueue() : poll();
         } else {
-            return (T)o;
+            if (o != null) {
+                metrics.sampleResidence(o);
+                taken(1);
+            }
+            @SuppressWarnings("unchecked") final T item = (T) o;
+            return item;
         }
     }
 
+    /**
+     * Reads at most max items, and at most the rest of one batch.
+     * If the next thing on the queue is a batch, we return a read-only view of the batch array instead of copying it.
+     * The view is only good until the next read from this receive queue.
+     */
     @Override
     public Iterable<T> readBatch(int max) {
 
-        T item = this.poll();
-        if (item==null) {
+        recycleViewedBatch();
+
+        if (max <= 0) {
             return Collections.emptyList();
-        } else {
-            List<T> batch = new ArrayList<>();
+        }
+
+        while (lastQueue == null) {
+            final Object o = pollQueue();
+            if (o == null) {
+                return Collections.emptyList();
+            }
+            if (!isBatch(o)) {
+                return readItems(extractItem(o), max);
+            }
+            startBatch(o);
+        }
+
+        final int from = lastQueueIndex;
+        final int to = Math.min(lastQueueLength, from + max);
+        final List<T> view = new BatchView<>(lastQueue, from, to);
+        lastQueueIndex = to;
+
+        if (lastQueueIndex == lastQueueLength) {
+            /* Do not recycle yet, the caller is still reading the view. */
+            finishBatch(true);
+        }
+        return view;
+    }
+
+    /**
+     * Items were sent one at a time, so there is no batch array to hand out. Copy up to max of them.
+     */
+    private List<T> readItems(T item, final int max) {
+        final List<T> batch = new ArrayList<>();
+        batch.add(item);
+        while (batch.size() < max && (item = this.poll()) != null) {
             batch.add(item);
-            while ((item = this.poll()) != null) {
-                batch.add(item);
+        }
+        return batch;
+    }
+
+    /**
+     * Copies whole runs of the current batch into the buffer, nothing is allocated.
+     */
+    @Override
+    public int readBatch(final T[] buffer) {
+        recycleViewedBatch();
+        int count = 0;
+        while (count < buffer.length) {
+            if (lastQueue == null) {
+                final Object o = pollQueue();
+                if (o == null) {
+                    break;
+                }
+                if (!isBatch(o)) {
+                    metrics.sampleResidence(o);
+                    taken(1);
+                    @SuppressWarnings("unchecked") final T item = (T) o;
+                    buffer[count++] = item;
+                    continue;
+                }
+                if (!startBatch(o)) {
+                    continue;
+                }
+            }
+
+            final int length = Math.min(lastQueueLength - lastQueueIndex, buffer.length - count);
+            System.arraycopy(lastQueue, lastQueueIndex, buffer, count, length);
+            count += length;
+            lastQueueIndex += length;
+
+            if (lastQueueIndex == lastQueueLength) {
+                finishBatch();
             }
-            return batch;
         }
+        return count;
     }
 
     @Override
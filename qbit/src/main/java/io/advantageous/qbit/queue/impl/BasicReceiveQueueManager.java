@@ -3,6 +3,7 @@ package io.advantageous.qbit.queue.impl;
 import io.advantageous.qbit.queue.ReceiveQueueListener;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.queue.ReceiveQueueManager;
+import io.advantageous.qbit.queue.WaitStrategy;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -13,6 +14,21 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class BasicReceiveQueueManager<T> implements ReceiveQueueManager<T> {
 
+    private final WaitStrategy waitStrategy;
+
+    public BasicReceiveQueueManager() {
+        this(new PollWaitStrategy());
+    }
+
+    public BasicReceiveQueueManager(final WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
     @Override
     public void manageQueue(ReceiveQueue<T> inputQueue, ReceiveQueueListener<T> listener, int batchSize, AtomicBoolean stop) {
 
@@ -20,7 +36,6 @@ public class BasicReceiveQueueManager<T> implements ReceiveQueueManager<T> {
         T item = inputQueue.poll(); //Initialize things.
 
         int count = 0;
-        long longCount = 0;
 
         /* Continues forever or until someone calls stop. */
         while (true) {
@@ -54,44 +69,38 @@ public class BasicReceiveQueueManager<T> implements ReceiveQueueManager<T> {
             }
             count = 0;
 
+            /* Check once per batch so a busy queue can still be stopped. */
+            if (stop.get()) {
+                listener.shutdown();
+                return;
+            }
 
             item = inputQueue.poll();
 
-            /* See if a yield helps. Try to keep the thread alive. */
             if (item!=null) {
                 continue;
-            } else {
-                Thread.yield();
             }
 
 
-            /* Get the next item, but wait this time since the queue was empty. */
+            /* Get the next item, but wait this time since the queue was empty. How we wait is up to the strategy. */
 
-            item = inputQueue.pollWait();
+            item = waitStrategy.waitForItem(inputQueue);
 
 
 
             if (item==null ) {
-                if (longCount % 100 == 0) {
-                    if (Thread.currentThread().isInterrupted()) {
-                        if (stop.get()) {
-                            listener.shutdown();
-                            return;
-                        }
-                    }
-                } else if (longCount % 1000 == 0 && stop.get()) {
+                /* Stop interrupts the listener thread so the wait strategy gives up and we end up here. */
+                if (stop.get()) {
                     listener.shutdown();
+                    return;
                 }
-                /* Idle means we yielded and then waited a full wait time, so idle might be a good time to do clean up
+                /* Idle means the wait strategy gave up waiting, so idle might be a good time to do clean up
                 or timed tasks.
                  */
                 listener.idle();
 
             }
 
-
-            longCount++;
-
         }
 
 
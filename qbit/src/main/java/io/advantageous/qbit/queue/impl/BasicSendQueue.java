@@ -1,11 +1,16 @@
 package io.advantageous.qbit.queue.impl;
 
+import io.advantageous.qbit.queue.OverflowPolicy;
+import io.advantageous.qbit.queue.QueueBuilder;
 import io.advantageous.qbit.queue.SendQueue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TransferQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * This is not thread safe.
@@ -16,27 +21,149 @@ import java.util.concurrent.LinkedTransferQueue;
  */
 public class BasicSendQueue<T> implements SendQueue<T> {
 
-    private final LinkedTransferQueue<Object> queue;
-    private final Object[] queueLocal;
+    private final TransferQueue<Object> queue;
+    private Object[] queueLocal;
     private int index;
 
-    private final int batchSize;
+    /** If not null, batches come from this pool and go back to it once they have been read. */
+    private final BatchPool batchPool;
+    private PooledBatch batch;
 
-    public BasicSendQueue(int batchSize, LinkedTransferQueue<Object> queue) {
-        this.batchSize = batchSize;
+    /** Current batch size, only changes when batching is adaptive. */
+    private int batchSize;
+
+    private final boolean adaptiveBatching;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+
+    /** Longest an item may sit in this send queue before it gets flushed, negative for no limit. */
+    private final long maxLatencyNanos;
+    private long firstItemNanos;
+
+    /** Called after each flush, used to wake up a listener that is not waiting on the queue itself. */
+    private final Runnable onFlush;
+
+    private final QueueCapacity capacity;
+    private final QueueMetrics metrics;
+    private final OverflowPolicy overflowPolicy;
+
+    /** Gets every item that was dropped or rejected, can be null. */
+    private final Consumer<T> onRejected;
+
+    public BasicSendQueue(int batchSize, TransferQueue<Object> queue) {
+        this(batchSize, queue, null);
+    }
+
+    public BasicSendQueue(int batchSize, TransferQueue<Object> queue, Runnable onFlush) {
+        this(QueueBuilder.queueBuilder().batchSize(batchSize), queue, onFlush, new QueueCapacity(Integer.MAX_VALUE),
+                new QueueMetrics(), OverflowPolicy.BLOCK, null, null);
+    }
+
+    BasicSendQueue(final QueueBuilder settings,
+                   final TransferQueue<Object> queue,
+                   final Runnable onFlush,
+                   final QueueCapacity capacity,
+                   final QueueMetrics metrics,
+                   final OverflowPolicy overflowPolicy,
+                   final Consumer<T> onRejected,
+                   final BatchPool batchPool) {
+        this.batchSize = settings.batchSize();
+        this.adaptiveBatching = settings.adaptiveBatching();
+        this.minBatchSize = adaptiveBatching ? settings.minBatchSize() : batchSize;
+        this.maxBatchSize = adaptiveBatching ? settings.maxBatchSize() : batchSize;
+        this.maxLatencyNanos = settings.maxLatencyNanos();
         this.queue = queue;
-        queueLocal = new Object[batchSize];
+        this.onFlush = onFlush;
+        this.capacity = capacity;
+        this.metrics = metrics;
+        this.overflowPolicy = overflowPolicy;
+        this.onRejected = onRejected;
+        this.batchPool = batchPool;
+        if (batchPool == null) {
+            queueLocal = new Object[maxBatchSize];
+        } else {
+            batch = batchPool.take();
+            queueLocal = batch.items;
+        }
     }
 
     public boolean shouldBatch() {
-        return !queue.hasWaitingConsumer();
+        return !receiverIdle();
+    }
+
+    /**
+     * True if the receiver is waiting on the queue or found it empty since our last flush.
+     * The second part is what works when the listener runs on a worker pool or spins instead of blocking.
+     */
+    private boolean receiverIdle() {
+        return capacity.isDrained() || queue.hasWaitingConsumer();
     }
 
     @Override
     public void send(T item) {
+        if (overflowPolicy == OverflowPolicy.FAIL_FAST && capacity.full(index + 1)) {
+            reject(item);
+            return;
+        }
+        if (index == 0) {
+            firstItemNanos = System.nanoTime();
+        }
         queueLocal[index] = item;
         index++;
-        flushIfOverBatch();
+        if (index >= batchSize) {
+            adaptBatchSize(true);
+            sendLocalQueue();
+        } else if ((index & 15) == 0 && late()) {
+            /* Only look at the clock every 16 sends, a fast producer fills the batch long before the deadline. */
+            adaptBatchSize(false);
+            sendLocalQueue();
+        }
+    }
+
+    /**
+     * Flush if the receiver is idle or if the oldest item has been here longer than the max latency.
+     * Call this from the thread that owns the send queue when it has nothing else to do, e.g., from a listener's
+     * empty or idle callback, so items do not sit in a half full batch when traffic stops.
+     *
+     * @return true if we flushed
+     */
+    @Override
+    public boolean flushIfDue() {
+        if (index > 0 && (receiverIdle() || late())) {
+            flushSends();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean late() {
+        return maxLatencyNanos >= 0 && System.nanoTime() - firstItemNanos >= maxLatencyNanos;
+    }
+
+    /**
+     * Adaptive batching: grow the batch while the consumer is busy and batches fill up,
+     * shrink it when the receiver is idle or when traffic is too light to fill a batch in time.
+     *
+     * @param full true if we are flushing because the batch is full
+     */
+    private void adaptBatchSize(final boolean full) {
+        if (!adaptiveBatching) {
+            return;
+        }
+        if (receiverIdle()) {
+            batchSize = Math.max(minBatchSize, batchSize >> 1);
+        } else if (full) {
+            batchSize = Math.min(maxBatchSize, batchSize << 1);
+        } else {
+            batchSize = Math.max(minBatchSize, Math.max(index, batchSize >> 1));
+        }
+    }
+
+    /**
+     * @return how many items get batched before a flush, changes over time with adaptive batching
+     */
+    public int currentBatchSize() {
+        return batchSize;
     }
 
     @Override
@@ -49,48 +176,169 @@ public class BasicSendQueue<T> implements SendQueue<T> {
     @Override
     public final void sendMany(T... items) {
         flushSends();
-        if (!queue.tryTransfer(items)) {
-            queue.offer(items);
-        }
+        admit(items, items, items.length);
     }
 
     @Override
     public void sendBatch(Iterable<T> items) {
         flushSends();
         final Object[] array = objectArray(items);
-        if (!queue.tryTransfer(array)) {
-            queue.offer(array);
-        }
+        admit(array, array, array.length);
     }
 
     @Override
     public void sendBatch(Collection<T> items) {
         flushSends();
         final Object[] array = objectArray(items);
-        if (!queue.tryTransfer(array)) {
-            queue.offer(array);
-        }
-    }
-
-    private void flushIfOverBatch() {
-        if (index >= batchSize) {
-            sendLocalQueue();
-        }
+        admit(array, array, array.length);
     }
 
     @Override
     public void flushSends() {
         if (index > 0) {
+            adaptBatchSize(false);
             sendLocalQueue();
         }
     }
 
     private void sendLocalQueue() {
-        final Object[] copy = fastObjectArraySlice(queueLocal, 0, index);
-        if (!queue.tryTransfer(copy)) {
-            queue.offer(copy);
+        if (batchPool == null) {
+            final Object[] copy = fastObjectArraySlice(queueLocal, 0, index);
+            index = 0;
+            admit(copy, copy, copy.length);
+        } else {
+            /* Hand over the array itself, no copy, and start filling a recycled one. */
+            final PooledBatch full = batch;
+            full.size = index;
+            index = 0;
+            batch = batchPool.take();
+            queueLocal = batch.items;
+            admit(full, full.items, full.size);
+        }
+    }
+
+    /**
+     * Reserve room for the batch following the overflow policy, then hand it to the queue.
+     *
+     * @param entry what goes on the queue, the items array or the pooled batch that holds it
+     * @param items the items
+     * @param count number of items in use
+     */
+    private void admit(final Object entry, final Object[] items, final int count) {
+        if (capacity.tryReserve(count)) {
+            transferOrPut(entry, count);
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                waitForRoom(count);
+                transferOrPut(entry, count);
+                break;
+            case DROP_OLDEST:
+                dropOldest(count);
+                transferOrPut(entry, count);
+                break;
+            default:
+                rejectAll(items, count);
+                recycle(entry);
+        }
+    }
+
+    private void recycle(final Object entry) {
+        if (entry instanceof PooledBatch) {
+            batchPool.recycle((PooledBatch) entry);
+        }
+    }
+
+    private void waitForRoom(final int count) {
+        long parkNanos = 1_000;
+        while (!capacity.tryReserve(count)) {
+            LockSupport.parkNanos(parkNanos);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for room in the queue");
+            }
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Take the oldest entries off the queue until there is room for count items.
+     * The consumer may be taking items at the same time, so this can drop less than it needed to.
+     */
+    private void dropOldest(final int count) {
+        while (!capacity.tryReserve(count)) {
+            final Object oldest = queue.poll();
+            if (oldest instanceof PooledBatch) {
+                final PooledBatch pooled = (PooledBatch) oldest;
+                capacity.release(pooled.size);
+                rejectAll(pooled.items, pooled.size);
+                recycle(pooled);
+            } else if (oldest instanceof Object[]) {
+                final Object[] items = (Object[]) oldest;
+                capacity.release(items.length);
+                rejectAll(items, items.length);
+            } else if (oldest instanceof SplitBatch) {
+                dropUnclaimed((SplitBatch) oldest);
+            } else if (oldest != null) {
+                capacity.release(1);
+                @SuppressWarnings("unchecked") final T item = (T) oldest;
+                reject(item);
+            }
+        }
+    }
+
+    /**
+     * A batch that consumers of a multi-consumer queue are working on. Claim and drop the chunks nobody has yet.
+     */
+    private void dropUnclaimed(final SplitBatch split) {
+        int from;
+        while ((from = split.claim()) < split.size) {
+            final int to = Math.min(split.size, from + split.chunk);
+            capacity.release(to - from);
+            for (int index = from; index < to; index++) {
+                @SuppressWarnings("unchecked") final T item = (T) split.items[index];
+                reject(item);
+            }
+            if (split.finishChunk() && split.pooled != null) {
+                batchPool.recycle(split.pooled);
+            }
+        }
+    }
+
+    private void rejectAll(final Object[] items, final int count) {
+        for (int index = 0; index < count; index++) {
+            @SuppressWarnings("unchecked") final T item = (T) items[index];
+            reject(item);
+        }
+    }
+
+    private void reject(final T item) {
+        capacity.rejected(1);
+        if (onRejected != null) {
+            onRejected.accept(item);
+        }
+    }
+
+    /**
+     * Hand the item to a waiting consumer if there is one, otherwise enqueue it.
+     * For an unbounded queue put never blocks, for a bounded queue (ring buffer) it waits for space.
+     */
+    private void transferOrPut(final Object item, final int count) {
+        if (!queue.tryTransfer(item)) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for room in the queue", e);
+            }
+        }
+        capacity.filled();
+        metrics.flushed(count);
+        if (onFlush != null) {
+            onFlush.run();
         }
-        index = 0;
     }
 
     static Object[] objectArray(final Iterable iter) {
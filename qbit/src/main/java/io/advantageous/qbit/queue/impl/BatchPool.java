@@ -0,0 +1,35 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.Arrays;
+
+/**
+ * Return channel for batch arrays. Receive queues put batches back when they are done with them
+ * and send queues take them out again instead of allocating a new array for every flush.
+ * <p>
+ * The channel is a bounded ring buffer, so recycling does not allocate either.
+ * If the pool is empty we allocate, if it is full the batch is left for the GC.
+ */
+final class BatchPool {
+
+    private final RingBufferTransferQueue returned;
+    private final int batchSize;
+
+    BatchPool(final int batchSize, final int poolSize) {
+        this.batchSize = batchSize;
+        this.returned = new RingBufferTransferQueue(poolSize);
+    }
+
+    PooledBatch take() {
+        final Object batch = returned.poll();
+        return batch != null ? (PooledBatch) batch : new PooledBatch(batchSize);
+    }
+
+    /**
+     * Clears the batch so the pool does not keep items from being collected, then hands it back.
+     */
+    void recycle(final PooledBatch batch) {
+        Arrays.fill(batch.items, 0, batch.size, null);
+        batch.size = 0;
+        returned.offer(batch);
+    }
+}
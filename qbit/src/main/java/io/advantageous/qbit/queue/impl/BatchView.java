@@ -0,0 +1,34 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list over part of a batch array. Lets readBatch hand out a batch without copying it.
+ */
+final class BatchView<T> extends AbstractList<T> implements RandomAccess {
+
+    private final Object[] items;
+    private final int from;
+    private final int size;
+
+    BatchView(final Object[] items, final int from, final int to) {
+        this.items = items;
+        this.from = from;
+        this.size = to - from;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + size);
+        }
+        return (T) items[from + index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
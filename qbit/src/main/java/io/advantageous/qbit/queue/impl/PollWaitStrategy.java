@@ -0,0 +1,17 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.ReceiveQueue;
+
+/**
+ * The default. Yield once to see if something shows up, then wait up to the wait time of the queue (pollWait).
+ * This is also the blocking strategy: the thread is parked and uses no CPU while it waits, and it wakes up once per
+ * wait time so the listener still gets the idle notifications the service bundle flushes and sweeps timeouts on.
+ */
+public class PollWaitStrategy extends AbstractWaitStrategy {
+
+    @Override
+    protected <T> T doWait(final ReceiveQueue<T> queue) {
+        Thread.yield();
+        return queue.pollWait();
+    }
+}
@@ -0,0 +1,17 @@
+package io.advantageous.qbit.queue.impl;
+
+/**
+ * A batch array that goes back to its BatchPool once the receive queue has read it.
+ * Only arrays that came from the pool are wrapped, arrays handed to sendMany or sendBatch belong to the caller.
+ */
+final class PooledBatch {
+
+    final Object[] items;
+
+    /** Number of items in use, written by the send queue before the batch is put on the queue. */
+    int size;
+
+    PooledBatch(final int batchSize) {
+        this.items = new Object[batchSize];
+    }
+}
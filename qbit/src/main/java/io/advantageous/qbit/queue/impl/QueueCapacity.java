@@ -0,0 +1,94 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks how many items are in a queue, shared by all send and receive queues of a BasicQueue.
+ * Send queues reserve room before they put a batch, receive queues give it back when they take a batch.
+ * Updated once per batch, not once per item.
+ * <p>
+ * Also knows if a receiver found the queue empty since the last batch was put, which is how send queues tell
+ * that the receiver is caught up, however its listener runs.
+ */
+final class QueueCapacity {
+
+    private final int capacity;
+    private final AtomicLong depth = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    /** A receive queue found the queue empty and nothing was put since. */
+    private volatile boolean drained;
+
+    QueueCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reserve room for count items.
+     * A batch bigger than the capacity is let in when the queue is empty, otherwise it could never be sent.
+     * @param count items
+     * @return true if there was room
+     */
+    boolean tryReserve(final int count) {
+        if (capacity == Integer.MAX_VALUE) {
+            depth.addAndGet(count);
+            return true;
+        }
+        while (true) {
+            final long current = depth.get();
+            if (current > 0 && current + count > capacity) {
+                return false;
+            }
+            if (depth.compareAndSet(current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param count items we are about to send
+     * @return true if count more items would go over capacity right now
+     */
+    boolean full(final int count) {
+        return depth.get() + count > capacity;
+    }
+
+    void release(final int count) {
+        depth.addAndGet(-count);
+    }
+
+    /** A receive queue found nothing. Only writes when it changes, so an idle receiver does not dirty the line. */
+    void drained() {
+        if (!drained) {
+            drained = true;
+        }
+    }
+
+    /** A send queue put a batch. */
+    void filled() {
+        if (drained) {
+            drained = false;
+        }
+    }
+
+    boolean isDrained() {
+        return drained;
+    }
+
+    void rejected(final int count) {
+        rejected.add(count);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long depth() {
+        return depth.get();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+}
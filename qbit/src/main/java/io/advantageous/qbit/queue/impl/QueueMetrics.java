@@ -0,0 +1,98 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.message.Request;
+import io.advantageous.qbit.util.Timer;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a queue, shared by all send and receive queues of a BasicQueue.
+ * Everything is a LongAdder so senders and receivers on different threads do not fight over a cache line,
+ * and everything is updated once per batch, not once per item.
+ */
+final class QueueMetrics {
+
+    /** Bucket i counts batches of 2^i up to 2^(i+1) - 1 items, the last bucket counts everything bigger. */
+    static final int BATCH_BUCKETS = 17;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder[] batchSizes = new LongAdder[BATCH_BUCKETS];
+    private final LongAdder residenceSamples = new LongAdder();
+    private final LongAdder residenceMillis = new LongAdder();
+    private final LongAccumulator maxResidenceMillis = new LongAccumulator(Math::max, 0);
+
+    QueueMetrics() {
+        for (int index = 0; index < BATCH_BUCKETS; index++) {
+            batchSizes[index] = new LongAdder();
+        }
+    }
+
+    static int bucket(final int count) {
+        return Math.min(31 - Integer.numberOfLeadingZeros(Math.max(count, 1)), BATCH_BUCKETS - 1);
+    }
+
+    /** A send queue put a batch of count items on the queue. */
+    void flushed(final int count) {
+        sent.add(count);
+        flushes.increment();
+        batchSizes[bucket(count)].increment();
+    }
+
+    void received(final int count) {
+        received.add(count);
+    }
+
+    /**
+     * Records how long a request has been around, from its timestamp to now.
+     * Receive queues call this with the first item of each batch, the oldest one, so it is a sample.
+     * Items that are not requests, or have no timestamp, are skipped without looking at the clock.
+     */
+    void sampleResidence(final Object item) {
+        if (item instanceof Request) {
+            final long timestamp = ((Request) item).timestamp();
+            if (timestamp > 0) {
+                final long residence = Timer.timer().now() - timestamp;
+                if (residence >= 0) {
+                    residenceSamples.increment();
+                    residenceMillis.add(residence);
+                    maxResidenceMillis.accumulate(residence);
+                }
+            }
+        }
+    }
+
+    long sent() {
+        return sent.sum();
+    }
+
+    long received() {
+        return received.sum();
+    }
+
+    long flushes() {
+        return flushes.sum();
+    }
+
+    long[] batchSizes() {
+        final long[] histogram = new long[BATCH_BUCKETS];
+        for (int index = 0; index < BATCH_BUCKETS; index++) {
+            histogram[index] = batchSizes[index].sum();
+        }
+        return histogram;
+    }
+
+    long residenceSamples() {
+        return residenceSamples.sum();
+    }
+
+    long residenceMillis() {
+        return residenceMillis.sum();
+    }
+
+    long maxResidenceMillis() {
+        return maxResidenceMillis.get();
+    }
+}
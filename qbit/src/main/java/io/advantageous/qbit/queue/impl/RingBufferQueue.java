@@ -0,0 +1,124 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.QueueBuilder;
+import io.advantageous.qbit.queue.WaitStrategy;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A BasicQueue that sits on a pre-allocated, bounded ring buffer instead of an unbounded LinkedTransferQueue.
+ * <p>
+ * Each slot of the ring holds one flush from a SendQueue (a single item or an Object[] batch), so no linked node
+ * gets allocated per flush and the heap can not grow without bound when a service falls behind.
+ * When the ring is full a flush blocks until the consumer frees up a slot.
+ * <p>
+ * Use one SendQueue per producer thread, any number of threads can read from the receive queues.
+ *
+ * @param <T> type
+ */
+public class RingBufferQueue<T> extends BasicQueue<T> {
+
+    private final int ringSize;
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param ringSize number of slots in the ring buffer, this gets rounded up to a power of two
+     */
+    public RingBufferQueue(final String name,
+                           final int waitTime,
+                           final TimeUnit timeUnit,
+                           final int batchSize,
+                           final int ringSize) {
+        this(name, waitTime, timeUnit, batchSize, ringSize, new PollWaitStrategy());
+    }
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param ringSize number of slots in the ring buffer, this gets rounded up to a power of two
+     * @param waitStrategy what the listener does when the queue is empty
+     */
+    public RingBufferQueue(final String name,
+                           final int waitTime,
+                           final TimeUnit timeUnit,
+                           final int batchSize,
+                           final int ringSize,
+                           final WaitStrategy waitStrategy) {
+        this(name, waitTime, timeUnit, batchSize, ringSize, waitStrategy, null, Thread::new);
+    }
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param ringSize number of slots in the ring buffer, this gets rounded up to a power of two
+     * @param waitStrategy what the listener does when the queue is empty
+     * @param workerPool if not null the listener runs on this pool instead of its own thread
+     */
+    public RingBufferQueue(final String name,
+                           final int waitTime,
+                           final TimeUnit timeUnit,
+                           final int batchSize,
+                           final int ringSize,
+                           final WaitStrategy waitStrategy,
+                           final WorkerPool workerPool) {
+        this(name, waitTime, timeUnit, batchSize, ringSize, waitStrategy, workerPool, Thread::new);
+    }
+
+    /**
+     * @param name name of queue
+     * @param waitTime wait time for pollWait
+     * @param timeUnit time unit of wait time
+     * @param batchSize batch size of send queues
+     * @param ringSize number of slots in the ring buffer, this gets rounded up to a power of two
+     * @param waitStrategy what the listener does when the queue is empty
+     * @param workerPool if not null the listener runs on this pool instead of its own thread
+     * @param threadFactory creates the listener thread when there is no worker pool
+     */
+    public RingBufferQueue(final String name,
+                           final int waitTime,
+                           final TimeUnit timeUnit,
+                           final int batchSize,
+                           final int ringSize,
+                           final WaitStrategy waitStrategy,
+                           final WorkerPool workerPool,
+                           final ThreadFactory threadFactory) {
+        this(name, settings(waitTime, timeUnit, batchSize, waitStrategy, workerPool, threadFactory)
+                .ringBufferSize(ringSize));
+    }
+
+    /**
+     * @param name name of queue
+     * @param queueBuilder settings of the queue, ringBufferSize is the number of slots
+     */
+    public RingBufferQueue(final String name, final QueueBuilder queueBuilder) {
+        this(name, queueBuilder, new RingBufferTransferQueue(queueBuilder.ringBufferSize()));
+    }
+
+    private RingBufferQueue(final String name,
+                            final QueueBuilder queueBuilder,
+                            final RingBufferTransferQueue ringBuffer) {
+        super(name, queueBuilder, ringBuffer);
+        this.ringSize = ringBuffer.capacity();
+    }
+
+    /**
+     * Number of slots in the ring buffer. Each slot holds one flushed batch.
+     *
+     * @return ring size
+     */
+    public int ringSize() {
+        return ringSize;
+    }
+
+    public static <T> RingBufferQueue<T> create(int batchSize, int ringSize) {
+        return new RingBufferQueue<>("RingBufferQueue", 10, TimeUnit.MILLISECONDS, batchSize, ringSize);
+    }
+}
@@ -0,0 +1,473 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TransferQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, pre-allocated ring buffer that can stand in for the LinkedTransferQueue that BasicQueue uses.
+ * <p>
+ * Every slot carries a sequence number so producers and consumers can claim slots with a single CAS
+ * and no node gets allocated per offer. The size is rounded up to a power of two so we can mask instead of mod.
+ * Any number of producers and consumers can use it, but in QBit there is one producer per SendQueue and
+ * each SendQueue already batches items into an Object[] so a slot usually holds a whole batch.
+ * <p>
+ * Blocking is only done once the fast path fails. A lock and condition are used to park waiting threads, and
+ * the other side only touches the lock if it sees someone is waiting.
+ * <p>
+ * transfer waits until a consumer took the item. tryTransfer only enqueues when a consumer is waiting, since a
+ * ring buffer has no direct hand off. remove(Object) leaves a marker in the slot that consumers skip, so the
+ * iterator, which walks a snapshot of the slots, can remove too.
+ */
+class RingBufferTransferQueue extends AbstractQueue<Object> implements TransferQueue<Object> {
+
+    /** How many times we spin before we decide to park. */
+    private static final int SPINS = 100;
+
+    /** Left in the slot of an item that was removed, consumers skip it. */
+    private static final Object REMOVED = new Object();
+
+    private final AtomicReferenceArray<Object> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition taken = lock.newCondition();
+
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private final AtomicInteger waitingTransfers = new AtomicInteger();
+
+    RingBufferTransferQueue(final int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("ring buffer size must be at least 2, but was " + size);
+        }
+        final int capacity = powerOfTwo(size);
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int index = 0; index < capacity; index++) {
+            sequences.set(index, index);
+        }
+    }
+
+    static int powerOfTwo(final int size) {
+        final int highBit = Integer.highestOneBit(size);
+        return highBit == size ? size : highBit << 1;
+    }
+
+    /** Number of slots in the ring. */
+    public int capacity() {
+        return buffer.length();
+    }
+
+    @Override
+    public boolean offer(final Object item) {
+        return enqueue(item) >= 0;
+    }
+
+    /**
+     * @return position the item went to, -1 if the ring is full
+     */
+    private long enqueue(final Object item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        long position = tail.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long sequence = sequences.get(index);
+            final long difference = sequence - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, item);
+                    /* Volatile set, not lazySet, so signalConsumer can not miss a consumer that is about to park. */
+                    sequences.set(index, position + 1);
+                    signalConsumer();
+                    return position;
+                }
+            } else if (difference < 0) {
+                return -1;
+            }
+            position = tail.get();
+        }
+    }
+
+    @Override
+    public Object poll() {
+        long position = head.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long sequence = sequences.get(index);
+            final long difference = sequence - (position + 1);
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    /* getAndSet so an item is either taken here or removed by remove(Object), never both. */
+                    final Object item = buffer.getAndSet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    signalProducer();
+                    if (item != REMOVED) {
+                        return item;
+                    }
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    @Override
+    public Object peek() {
+        final long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            final Object item = published(position);
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the item at the position if it is still in the ring and was not removed, else null
+     */
+    private Object published(final long position) {
+        final int index = (int) position & mask;
+        final Object item = buffer.get(index);
+        if (item == null || item == REMOVED || sequences.get(index) != position + 1) {
+            return null;
+        }
+        return item;
+    }
+
+    @Override
+    public void put(final Object item) throws InterruptedException {
+        enqueueWaiting(item);
+    }
+
+    /**
+     * Enqueues, waiting for room if the ring is full.
+     *
+     * @return position the item went to
+     */
+    private long enqueueWaiting(final Object item) throws InterruptedException {
+        long position = enqueue(item);
+        if (position >= 0) {
+            return position;
+        }
+        for (int spin = 0; spin < SPINS; spin++) {
+            Thread.yield();
+            position = enqueue(item);
+            if (position >= 0) {
+                return position;
+            }
+        }
+
+        lock.lockInterruptibly();
+        waitingProducers.incrementAndGet();
+        try {
+            while ((position = enqueue(item)) < 0) {
+                notFull.await();
+            }
+            return position;
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(final Object item, final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (offer(item)) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        waitingProducers.incrementAndGet();
+        try {
+            while (!offer(item)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object take() throws InterruptedException {
+        Object item = spinPoll();
+        if (item != null) {
+            return item;
+        }
+
+        lock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((item = poll()) == null) {
+                notEmpty.await();
+            }
+            return item;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        Object item = spinPoll();
+        if (item != null) {
+            return item;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((item = poll()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return item;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private Object spinPoll() {
+        Object item = poll();
+        for (int spin = 0; item == null && spin < SPINS; spin++) {
+            Thread.yield();
+            item = poll();
+        }
+        return item;
+    }
+
+    private void signalConsumer() {
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalProducer() {
+        if (waitingProducers.get() > 0 || waitingTransfers.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signal();
+                taken.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Enqueues the item only if a consumer is waiting, so it goes straight to that consumer.
+     * The ring has no direct hand off, another consumer can still get to it first.
+     */
+    @Override
+    public boolean tryTransfer(final Object item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        return waitingConsumers.get() > 0 && offer(item);
+    }
+
+    /**
+     * Enqueues the item and waits until a consumer took it.
+     */
+    @Override
+    public void transfer(final Object item) throws InterruptedException {
+        final long position = enqueueWaiting(item);
+        if (head.get() > position) {
+            return;
+        }
+
+        lock.lockInterruptibly();
+        waitingTransfers.incrementAndGet();
+        try {
+            while (head.get() <= position) {
+                taken.await();
+            }
+        } finally {
+            waitingTransfers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the timeout for a consumer to wait, then enqueues the item for it, see tryTransfer(Object).
+     * If the timeout passes the item is not enqueued.
+     */
+    @Override
+    public boolean tryTransfer(final Object item, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long parkNanos = 1_000;
+        while (!tryTransfer(item)) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasWaitingConsumer() {
+        return waitingConsumers.get() > 0;
+    }
+
+    @Override
+    public int getWaitingConsumerCount() {
+        return waitingConsumers.get();
+    }
+
+    @Override
+    public int size() {
+        final long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > buffer.length() ? buffer.length() : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return buffer.length() - size();
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Object> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Object> collection, final int maxElements) {
+        int count = 0;
+        Object item;
+        while (count < maxElements && (item = poll()) != null) {
+            collection.add(item);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes the first item that equals the object. Its slot stays taken until the consumers get to it.
+     */
+    @Override
+    public boolean remove(final Object object) {
+        if (object == null) {
+            return false;
+        }
+        final long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            final Object item = published(position);
+            if (item != null && object.equals(item) && buffer.compareAndSet((int) position & mask, item, REMOVED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weakly consistent, walks a snapshot of the items that were in the ring when it was created.
+     * Its remove takes the item out of the ring if nobody took it yet.
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        final List<Object> snapshot = new ArrayList<>(size());
+        final long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            final Object item = published(position);
+            if (item != null) {
+                snapshot.add(item);
+            }
+        }
+
+        return new Iterator<Object>() {
+            private int next;
+            private Object last;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.size();
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = snapshot.get(next++);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                removeItem(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Removes this very item, not one that only equals it.
+     */
+    private void removeItem(final Object object) {
+        final long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            if (published(position) == object && buffer.compareAndSet((int) position & mask, object, REMOVED)) {
+                return;
+            }
+        }
+    }
+}
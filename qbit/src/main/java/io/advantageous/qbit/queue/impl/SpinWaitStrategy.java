@@ -0,0 +1,32 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.ReceiveQueue;
+
+/**
+ * Busy spins on poll. Lowest latency, but it keeps a core busy even when there is no work.
+ * After spins polls with no item we report the queue as idle so the listener still gets idle notifications.
+ */
+public class SpinWaitStrategy extends AbstractWaitStrategy {
+
+    private final int spins;
+
+    public SpinWaitStrategy() {
+        this(100_000);
+    }
+
+    public SpinWaitStrategy(final int spins) {
+        this.spins = spins;
+    }
+
+    @Override
+    protected <T> T doWait(final ReceiveQueue<T> queue) {
+        T item;
+        for (int spin = 0; spin < spins; spin++) {
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch shared by the consumers of a multi-consumer queue.
+ * Consumers claim chunks of it with a CAS on the next index. While there is something left to claim,
+ * the batch is put back on the queue so idle consumers can steal from it.
+ * A batch can be on the queue more than once, or after it was fully claimed. Those entries are stale
+ * and the consumer that polls one just moves on.
+ */
+final class SplitBatch {
+
+    final Object[] items;
+    final int size;
+    final int chunk;
+
+    /** Goes back to the pool once every chunk has been read, null for batches that did not come from the pool. */
+    final PooledBatch pooled;
+
+    private final int chunks;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicBoolean published = new AtomicBoolean();
+
+    SplitBatch(final Object[] items, final int size, final int consumers, final PooledBatch pooled) {
+        this.items = items;
+        this.size = size;
+        this.chunk = (size + consumers - 1) / consumers;
+        this.chunks = (size + chunk - 1) / chunk;
+        this.pooled = pooled;
+    }
+
+    /**
+     * @return start of the claimed chunk, size or more if there was nothing left
+     */
+    int claim() {
+        return next.getAndAdd(chunk);
+    }
+
+    boolean exhausted() {
+        return next.get() >= size;
+    }
+
+    /**
+     * @return true if the caller should put this batch on the queue, false if it is already there
+     */
+    boolean publish() {
+        return published.compareAndSet(false, true);
+    }
+
+    /** Called by the consumer that took this batch off the queue, or that failed to put it there. */
+    void unpublish() {
+        published.set(false);
+    }
+
+    /**
+     * @return true for the last chunk to finish
+     */
+    boolean finishChunk() {
+        return finished.incrementAndGet() == chunks;
+    }
+}
@@ -0,0 +1,42 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads without requiring JDK 21 to build or run the core library.
+ * <p>
+ * The factory lives in src/main/java21 and is only compiled when building with -Pjava21.
+ * We look it up by name, so on an older JDK or jar the rest of QBit works as before.
+ */
+public final class VirtualThreads {
+
+    private static final String FACTORY_CLASS = "io.advantageous.qbit.queue.impl.VirtualThreadFactory";
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if this jar was built with the java21 profile and we are running on JDK 21 or later
+     */
+    public static boolean available() {
+        try {
+            Class.forName(FACTORY_CLASS);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Thread factory that creates virtual threads.
+     * @return thread factory
+     * @throws IllegalStateException if virtual threads are not available
+     */
+    public static ThreadFactory factory() {
+        try {
+            return (ThreadFactory) Class.forName(FACTORY_CLASS).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Virtual threads need JDK 21 and QBit built with -Pjava21", e);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.GlobalConstants;
+import io.advantageous.qbit.queue.ReceiveQueueListener;
+import io.advantageous.qbit.util.ConcurrentHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the listeners of many queues on a small, fixed number of worker threads instead of one thread per queue.
+ * <p>
+ * A queue that has work is put on the run queue of the pool. A worker takes it, drains up to one batch,
+ * and then hands the worker back. A queue is on the run queue at most once, so a listener is only ever
+ * called from one thread at a time, which keeps the single threaded service model intact.
+ * <p>
+ * Producers signal the pool after each flush. A ticker thread schedules queues that have been quiet for
+ * their wait time so their listeners still get idle notifications. A queue that stays quiet gets them
+ * further and further apart, so a pool with many quiet queues is not woken for each of them every tick.
+ * The first one after the queue went quiet still comes after the wait time, that is the one that flushes
+ * partial batches.
+ * <p>
+ * Listeners should not block. A worker blocked on a full bounded queue is a worker the other queues can not use.
+ */
+public class WorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    /** Idle notifications of a queue that stays quiet back off up to 2^MAX_IDLE_BACKOFF times its idle time. */
+    private static final int MAX_IDLE_BACKOFF = 6;
+
+    private static volatile WorkerPool shared;
+
+    private final String name;
+    private final LinkedBlockingQueue<Registration<?>> runQueue = new LinkedBlockingQueue<>();
+    private final Set<Registration<?>> registrations = new ConcurrentHashSet<>(100);
+    private final Thread[] workers;
+    private final ScheduledExecutorService ticker;
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    /**
+     * @param name name used for the worker threads
+     * @param workerCount number of worker threads
+     * @param idleTick how often we check for quiet queues that need an idle notification
+     * @param timeUnit time unit of idleTick
+     */
+    public WorkerPool(final String name, final int workerCount, final long idleTick, final TimeUnit timeUnit) {
+        this.name = name;
+        this.workers = new Thread[workerCount];
+
+        for (int index = 0; index < workerCount; index++) {
+            final Thread worker = new Thread(this::work);
+            worker.setName(name + " worker " + index);
+            worker.setDaemon(true);
+            workers[index] = worker;
+            worker.start();
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(name + " idle ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, idleTick, idleTick, timeUnit);
+    }
+
+    public WorkerPool(final String name, final int workerCount) {
+        this(name, workerCount, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * JVM wide pool, sized by GlobalConstants.WORKER_POOL_SIZE (defaults to the number of cores).
+     * @return shared pool
+     */
+    public static WorkerPool shared() {
+        WorkerPool pool = shared;
+        if (pool == null) {
+            synchronized (WorkerPool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = new WorkerPool("QBit WorkerPool", GlobalConstants.WORKER_POOL_SIZE);
+                    shared = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int workerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Number of queues that are using this pool.
+     * @return registered queue count
+     */
+    public int registered() {
+        return registrations.size();
+    }
+
+    /**
+     * Register a queue with the pool.
+     * @param receiveQueue receive queue that the listener drains, only the pool reads from it
+     * @param listener listener
+     * @param batchSize max items processed per turn so one busy queue can not hog a worker
+     * @param idleNanos how long a queue is quiet before the listener gets an idle notification
+     * @param <T> type of items
+     * @return registration, call schedule when there is new work and cancel to stop
+     */
+    <T> Registration<T> register(final BasicReceiveQueue<T> receiveQueue,
+                                 final ReceiveQueueListener<T> listener,
+                                 final int batchSize,
+                                 final long idleNanos) {
+        if (stop.get()) {
+            throw new IllegalStateException("WorkerPool " + name + " is stopped");
+        }
+        final Registration<T> registration = new Registration<>(receiveQueue, listener, batchSize, idleNanos);
+        registrations.add(registration);
+        registration.schedule();
+        return registration;
+    }
+
+    /**
+     * Stop the workers. Registered listeners do not get a shutdown notification.
+     */
+    public void stop() {
+        stop.set(true);
+        ticker.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void work() {
+        while (!stop.get()) {
+            final Registration<?> registration;
+            try {
+                registration = runQueue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            registration.run();
+        }
+    }
+
+    private void tick() {
+        final long now = System.nanoTime();
+        for (Registration<?> registration : registrations) {
+            registration.checkIdle(now);
+        }
+    }
+
+    /**
+     * A queue and its listener as seen by the pool.
+     */
+    final class Registration<T> {
+
+        private final BasicReceiveQueue<T> receiveQueue;
+        private final ReceiveQueueListener<T> listener;
+        private final int batchSize;
+        private final long idleNanos;
+
+        /** True while the registration is on the run queue or being run. */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicInteger idleRequests = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile long lastActive = System.nanoTime();
+
+        /** Idle notifications since the last item, only written by the worker running this. */
+        private volatile int quietIdles;
+        private boolean shutdown;
+
+        private Registration(final BasicReceiveQueue<T> receiveQueue, final ReceiveQueueListener<T> listener,
+                             final int batchSize, final long idleNanos) {
+            this.receiveQueue = receiveQueue;
+            this.listener = listener;
+            this.batchSize = batchSize;
+            this.idleNanos = idleNanos;
+        }
+
+        /**
+         * Put this on the run queue unless it is already there.
+         */
+        void schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                runQueue.offer(this);
+            }
+        }
+
+        /**
+         * Stop. The listener gets its shutdown notification from a worker thread.
+         */
+        void cancel() {
+            cancelled = true;
+            registrations.remove(this);
+            schedule();
+        }
+
+        private void checkIdle(final long now) {
+            final long quietNanos = idleNanos << Math.min(quietIdles, MAX_IDLE_BACKOFF);
+            if (now - lastActive >= quietNanos && !scheduled.get()) {
+                idleRequests.incrementAndGet();
+                schedule();
+            }
+        }
+
+        private void run() {
+            try {
+                if (cancelled) {
+                    if (!shutdown) {
+                        shutdown = true;
+                        listener.shutdown();
+                    }
+                    return;
+                }
+                drain();
+            } catch (Exception ex) {
+                logger.error("WorkerPool " + name + " problem running queue listener", ex);
+            } finally {
+                scheduled.set(false);
+                /* A producer may have added items after our last poll but before we cleared the flag,
+                   or cancel may have come in while we were draining and found the flag still set. */
+                if (cancelled ? !shutdown : receiveQueue.hasItems()) {
+                    schedule();
+                }
+            }
+        }
+
+        private void drain() {
+            int count = 0;
+            T item = receiveQueue.poll();
+
+            while (item != null) {
+                listener.receive(item);
+                count++;
+                if (count >= batchSize) {
+                    break;
+                }
+                item = receiveQueue.poll();
+            }
+
+            if (count > 0) {
+                lastActive = System.nanoTime();
+                quietIdles = 0;
+                idleRequests.set(0);
+                if (item == null) {
+                    listener.empty();
+                } else {
+                    listener.limit();
+                }
+            } else if (idleRequests.getAndSet(0) > 0) {
+                lastActive = System.nanoTime();
+                quietIdles++;
+                listener.idle();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.advantageous.qbit.queue.impl;
+
+import io.advantageous.qbit.queue.ReceiveQueue;
+
+/**
+ * Polls and yields the thread between polls. Low latency without starving other threads of the core,
+ * but still uses CPU when there is no work.
+ */
+public class YieldWaitStrategy extends AbstractWaitStrategy {
+
+    private final int yields;
+
+    public YieldWaitStrategy() {
+        this(1_000);
+    }
+
+    public YieldWaitStrategy(final int yields) {
+        this.yields = yields;
+    }
+
+    @Override
+    protected <T> T doWait(final ReceiveQueue<T> queue) {
+        T item;
+        for (int index = 0; index < yields; index++) {
+            Thread.yield();
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+package io.advantageous.qbit.sender;
+
+import static io.advantageous.qbit.service.Protocol.*;
+
+/**
+ * Sender that puts encoded messages together into group messages, so a burst of calls goes out as a few frames.
+ * <p>
+ * A group goes out when it has maxMessages messages or maxChars chars, or when flush is called. Whoever owns the
+ * sender calls flush on a timer, that caps how long a message waits. A group of one is sent as the message itself.
+ * Messages that are not text protocol method calls or responses, for example binary frames, are sent on their own
+ * after the group that was building up.
+ * <p>
+ * Thread safe. Groups are built under a lock and sent outside of it.
+ *
+ * @author rhightower
+ */
+public class BatchingSender implements Sender<String> {
+
+    private final Sender<String> sender;
+
+    private final int maxMessages;
+
+    private final int maxChars;
+
+    private final StringBuilder group;
+
+    private String first;
+
+    /** Return address of the last message, passed on with the group. */
+    private String returnAddress;
+
+    private int count;
+
+    /**
+     * @param sender      sender that writes the frames
+     * @param maxMessages most messages in a group
+     * @param maxChars    a group goes out once it has this many chars
+     */
+    public BatchingSender(final Sender<String> sender, final int maxMessages, final int maxChars) {
+        this.sender = sender;
+        this.maxMessages = maxMessages;
+        this.maxChars = maxChars;
+        this.group = new StringBuilder(Math.min(maxChars, 64 * 1024) + 16);
+    }
+
+    @Override
+    public void send(final String returnAddress, final String message) {
+
+        if (!groupable(message)) {
+            flush();
+            sender.send(returnAddress, message);
+            return;
+        }
+
+        final String frame;
+        synchronized (this) {
+            if (count == 0) {
+                first = message;
+            } else {
+                if (count == 1) {
+                    group.append((char) PROTOCOL_MARKER).append((char) PROTOCOL_VERSION_1_GROUP);
+                    group.append(first).append((char) PROTOCOL_MESSAGE_SEPARATOR);
+                    first = null;
+                }
+                group.append(message).append((char) PROTOCOL_MESSAGE_SEPARATOR);
+            }
+            this.returnAddress = returnAddress;
+            count++;
+
+            final int chars = count == 1 ? message.length() : group.length();
+            frame = count >= maxMessages || chars >= maxChars ? take() : null;
+        }
+        if (frame != null) {
+            sender.send(returnAddress, frame);
+        }
+    }
+
+    /**
+     * Sends the group that is building up, if there is one.
+     */
+    public void flush() {
+        final String frame;
+        final String frameReturnAddress;
+        synchronized (this) {
+            frameReturnAddress = returnAddress;
+            frame = take();
+        }
+        if (frame != null) {
+            sender.send(frameReturnAddress, frame);
+        }
+    }
+
+    /**
+     * @return number of messages waiting for the next flush
+     */
+    public synchronized int pending() {
+        return count;
+    }
+
+    /**
+     * Takes the group that is building up and starts a new one. Called with the lock held.
+     */
+    private String take() {
+        final String frame;
+        if (count == 0) {
+            frame = null;
+        } else if (count == 1) {
+            frame = first;
+        } else {
+            frame = group.toString();
+        }
+        first = null;
+        count = 0;
+        group.setLength(0);
+        return frame;
+    }
+
+    private static boolean groupable(final String message) {
+        return message.length() > 2
+                && message.charAt(PROTOCOL_MARKER_POSITION) == PROTOCOL_MARKER
+                && (message.charAt(VERSION_MARKER_POSITION) == PROTOCOL_VERSION_1
+                || message.charAt(VERSION_MARKER_POSITION) == PROTOCOL_VERSION_1_RESPONSE);
+    }
+}
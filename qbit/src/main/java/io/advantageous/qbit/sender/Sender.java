@@ -1,5 +1,6 @@
 package io.advantageous.qbit.sender;
 
+import io.advantageous.qbit.message.MethodCall;
 
 /**
  * Created by Richard on 10/1/14.
@@ -11,4 +12,14 @@ package io.advantageous.qbit.sender;
 public interface Sender <T>{
 
     void send(String returnAddress, T buffer);
+
+    /**
+     * Sends an encoded method call. Senders that need to know which call they send, for example a connection pool
+     * that keeps track of the calls each connection has waiting for a response, override it.
+     * @param methodCall the call that was encoded
+     * @param buffer encoded call
+     */
+    default void sendCall(MethodCall<Object> methodCall, T buffer) {
+        send(methodCall.returnAddress(), buffer);
+    }
 }
@@ -37,6 +37,6 @@ public class SenderEndPoint implements EndPoint {
     public void call(MethodCall<Object> methodCall) {
 
         beforeMethodCall.before(methodCall);
-        sender.send(methodCall.returnAddress(), encoder.encodeAsString(methodCall));
+        sender.sendCall(methodCall, encoder.encodeAsString(methodCall));
     }
 }
@@ -15,4 +15,12 @@ public interface Callback<T> extends Consumer<T> {
     default void onError(Throwable error) {
         LoggerFactory.getLogger(Callback.class).error(error.getMessage(), error);
     }
+
+    /**
+     * How long to wait for the response before onError gets a TimeoutException.
+     * @return timeout in milliseconds, 0 uses the timeout of the service or the service bundle
+     */
+    default long timeoutMillis() {
+        return 0;
+    }
 }
@@ -0,0 +1,44 @@
+package io.advantageous.qbit.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Callback that completes a CompletableFuture, so proxy methods can return a future instead of taking a Callback.
+ * <p>
+ * A proxy method that returns CompletableFuture, CompletionStage or Future sends its call with one of these as the
+ * first argument, the same way a client passes a Callback, and returns the future. The response completes the
+ * future, an error or a timeout completes it exceptionally. Completion happens on the thread that handles the
+ * responses, so dependent stages that block or take long should use the async variants with an executor.
+ *
+ * @author rhightower
+ */
+public class FutureCallback<T> implements Callback<T> {
+
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    /**
+     * @return the future that the response completes
+     */
+    public CompletableFuture<T> future() {
+        return future;
+    }
+
+    @Override
+    public void accept(final T value) {
+        future.complete(value);
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+        future.completeExceptionally(error);
+    }
+
+    /**
+     * @return true if the method returns a type that a CompletableFuture can be returned as, other than Object
+     */
+    public static boolean returnsFuture(final Method method) {
+        final Class<?> returnType = method.getReturnType();
+        return returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+}
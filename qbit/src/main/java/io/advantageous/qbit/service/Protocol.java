@@ -21,6 +21,9 @@ public class Protocol {
 
     public static final int PROTOCOL_MARKER = 0x1c;
 
+    /** First byte of a binary frame, followed by the same version markers as text messages. */
+    public static final int PROTOCOL_BINARY_MARKER = 0x1b;
+
 
     public static final int PROTOCOL_MESSAGE_SEPARATOR = 0x1f;
 
@@ -4,6 +4,7 @@ import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.queue.ReceiveQueue;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * A service bundle is a collection of services.
@@ -20,6 +21,14 @@ public interface ServiceBundle extends EndPoint {
 
     void addService(Object object);
 
+    /**
+     * Add a stateless service as a pool of replicas that share one address and one request queue.
+     * @param address address of the service
+     * @param replicas number of replicas
+     * @param serviceSupplier creates each replica
+     */
+    void addServiceReplicas(String address, int replicas, Supplier<Object> serviceSupplier);
+
     ReceiveQueue<Response<Object>> responses();
 
     void flushSends();
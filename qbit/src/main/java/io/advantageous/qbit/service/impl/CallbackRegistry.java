@@ -0,0 +1,143 @@
+package io.advantageous.qbit.service.impl;
+
+import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.util.ExpiringLongMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Callbacks waiting for a response, keyed by return address and message id.
+ * <p>
+ * There is one primitive keyed table per return address, so looking up a response does not allocate a key.
+ * A callback is removed when its response comes back, or when its deadline passes, in which case it gets
+ * onError with a TimeoutException. Nothing expires on its own, somebody has to call expire, the bundle does it
+ * when its response queue is idle.
+ * <p>
+ * expire also drops the tables that are empty, so return addresses that went away do not pile up. It does that
+ * in the sweep rather than on every remove, so a client with one call at a time does not get a new table per call.
+ * <p>
+ * Callbacks are called outside of the table locks, so a callback can register the next call.
+ *
+ * @author rhightower
+ */
+public class CallbackRegistry {
+
+    private final ConcurrentMap<String, ExpiringLongMap<Callback<Object>>> tables = new ConcurrentHashMap<>();
+
+    private static String key(final String returnAddress) {
+        return returnAddress == null ? "" : returnAddress;
+    }
+
+    private ExpiringLongMap<Callback<Object>> table(final String returnAddress) {
+        final String key = key(returnAddress);
+        ExpiringLongMap<Callback<Object>> table = tables.get(key);
+        if (table == null) {
+            table = tables.computeIfAbsent(key, k -> new ExpiringLongMap<>());
+        }
+        return table;
+    }
+
+    /**
+     * @param returnAddress return address of the call
+     * @param messageId id of the call
+     * @param callback callback to call when the response comes back
+     * @param deadline when the callback times out, in Timer.timer().now() time
+     */
+    public void register(final String returnAddress, final long messageId,
+                         final Callback<Object> callback, final long deadline) {
+        final String key = key(returnAddress);
+        while (true) {
+            final ExpiringLongMap<Callback<Object>> table = table(returnAddress);
+            synchronized (table) {
+                /* expire may have dropped the table after we got it, then we need the new one. */
+                if (tables.get(key) == table) {
+                    table.put(messageId, callback, deadline);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the callback of a call that completed.
+     *
+     * @return the callback or null if there is none, because it timed out or was never registered
+     */
+    public Callback<Object> remove(final String returnAddress, final long messageId) {
+        final ExpiringLongMap<Callback<Object>> table = tables.get(key(returnAddress));
+        if (table == null) {
+            return null;
+        }
+        synchronized (table) {
+            return table.remove(messageId);
+        }
+    }
+
+    /**
+     * Removes the callbacks whose deadline is before now and calls onError on them with a TimeoutException.
+     * Drops the tables that are empty afterwards.
+     *
+     * @param now current time, in the same clock as the deadlines
+     * @return number of callbacks that timed out
+     */
+    public int expire(final long now) {
+        List<Callback<Object>> expired = null;
+        List<String> messages = null;
+
+        for (Map.Entry<String, ExpiringLongMap<Callback<Object>>> entry : tables.entrySet()) {
+            final ExpiringLongMap<Callback<Object>> table = entry.getValue();
+            synchronized (table) {
+                if (table.isEmpty()) {
+                    tables.remove(entry.getKey(), table);
+                    continue;
+                }
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                    messages = new ArrayList<>();
+                }
+                final List<Callback<Object>> callbacks = expired;
+                final List<String> timeouts = messages;
+                table.expire(now, (messageId, callback) -> {
+                    callbacks.add(callback);
+                    timeouts.add("Call timed out, return address " + entry.getKey() + " message id " + messageId);
+                });
+                if (table.isEmpty()) {
+                    tables.remove(entry.getKey(), table);
+                }
+            }
+        }
+
+        if (expired == null) {
+            return 0;
+        }
+        for (int index = 0; index < expired.size(); index++) {
+            expired.get(index).onError(new TimeoutException(messages.get(index)));
+        }
+        return expired.size();
+    }
+
+    /**
+     * @return number of return addresses that have a table
+     */
+    int tables() {
+        return tables.size();
+    }
+
+    /**
+     * @return number of callbacks waiting for a response
+     */
+    public int size() {
+        int size = 0;
+        for (ExpiringLongMap<Callback<Object>> table : tables.values()) {
+            synchronized (table) {
+                size += table.size();
+            }
+        }
+        return size;
+    }
+}
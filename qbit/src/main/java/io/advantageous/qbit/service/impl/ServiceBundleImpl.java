@@ -2,26 +2,31 @@ package io.advantageous.qbit.service.impl;
 
 import io.advantageous.qbit.*;
 import io.advantageous.qbit.service.Callback;
-import io.advantageous.qbit.util.Timer;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.queue.Queue;
+import io.advantageous.qbit.queue.QueueBuilder;
+import io.advantageous.qbit.queue.QueueStats;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.queue.ReceiveQueueListener;
 import io.advantageous.qbit.queue.SendQueue;
-import io.advantageous.qbit.queue.impl.BasicQueue;
 import io.advantageous.qbit.service.BeforeMethodCall;
 import io.advantageous.qbit.service.Service;
 import io.advantageous.qbit.service.ServiceBundle;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
 import io.advantageous.qbit.transforms.NoOpRequestTransform;
+import io.advantageous.qbit.util.AddressRouter;
 import io.advantageous.qbit.util.ConcurrentHashSet;
+import io.advantageous.qbit.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Manages a collection of services.
@@ -52,7 +57,7 @@ public class ServiceBundleImpl implements ServiceBundle {
     /**
      * Method queue for receiving method calls.
      */
-    private final BasicQueue<MethodCall<Object>> methodQueue;
+    private final Queue<MethodCall<Object>> methodQueue;
 
     /**
      *
@@ -75,47 +80,39 @@ public class ServiceBundleImpl implements ServiceBundle {
      */
     private Factory factory;
 
+    /**
+     * Settings for the queues of this bundle and the services that get added to it.
+     */
+    private final QueueBuilder queueBuilder;
+
 
     /**
-     * Maps incoming calls with outgoing handlers (returns, async returns really).
+     * Callbacks of calls that went out, waiting for their responses (returns, async returns really).
      */
-    private Map<HandlerKey, Callback<Object>> handlers = new ConcurrentHashMap<>();
+    private final CallbackRegistry callbacks = new CallbackRegistry();
 
+    /**
+     * How long a callback waits for its response, in milliseconds, unless the callback or its service says otherwise.
+     */
+    private volatile long callbackTimeout = GlobalConstants.CALLBACK_TIMEOUT;
 
-    private final ReceiveQueueListener<MethodCall<Object>> responseQueueListener;
+    /**
+     * Callback timeouts of services, by service name or address.
+     */
+    private final Map<String, Long> serviceCallbackTimeouts = new ConcurrentHashMap<>();
 
     /**
-     * Maps an incoming call to a response handler.
-     * This uniquely identifies a method call based on its message id and return address combo.
-     * We use this as a key into the
+     * How often the response listener looks for callbacks that timed out, in milliseconds.
      */
-    private class HandlerKey {
-        final String returnAddress;
-        final long messageId;
+    private static final long CALLBACK_SWEEP_INTERVAL = 10;
 
-        private HandlerKey(String returnAddress, long messageId) {
-            this.returnAddress = returnAddress;
-            this.messageId = messageId;
-        }
+    /**
+     * Last time the response listener looked for callbacks that timed out.
+     */
+    private long lastCallbackSweep;
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            final HandlerKey that = (HandlerKey) o;
-            return messageId == that.messageId
-                    && !(returnAddress != null
-                    ? !returnAddress.equals(that.returnAddress)
-                    : that.returnAddress != null);
-        }
 
-        @Override
-        public int hashCode() {
-            int result = returnAddress != null ? returnAddress.hashCode() : 0;
-            result = 31 * result + (int) (messageId ^ (messageId >>> 32));
-            return result;
-        }
-    }
+    private final ReceiveQueueListener<MethodCall<Object>> responseQueueListener;
 
 
     /**
@@ -136,27 +133,17 @@ public class ServiceBundleImpl implements ServiceBundle {
      */
     private NoOpRequestTransform argTransformer = ServiceConstants.NO_OP_ARG_TRANSFORM;
 
-    private TreeSet<String> addressesByDescending = new TreeSet<>(
-            new Comparator<String>() {
-                @Override
-                public int compare(String o1, String o2) {
-                    return o2.compareTo(o1);
-                }
-            }
-    );
+    /**
+     * Routes call addresses to the send queues of services. Rebuilt and swapped in when a service is added,
+     * so the thread that routes calls never sees it change under it.
+     */
+    private volatile AddressRouter<SendQueue<MethodCall<Object>>> router =
+            AddressRouter.<SendQueue<MethodCall<Object>>>addressRouter().build();
 
     /**
-     * This is used for routing. It keeps track of root addresses that we have already seen.
-     * This makes it easier to compare this root addresses to new addresses coming in.
+     * Every address the router has, by pattern, to build the next router from.
      */
-    private TreeSet<String> seenAddressesDescending = new TreeSet<>(
-            new Comparator<String>() {
-                @Override
-                public int compare(String o1, String o2) {
-                    return o2.compareTo(o1);
-                }
-            }
-    );
+    private final Map<String, SendQueue<MethodCall<Object>>> routes = new LinkedHashMap<>();
 
 
     /**
@@ -168,6 +155,17 @@ public class ServiceBundleImpl implements ServiceBundle {
      */
     public ServiceBundleImpl(String address, final int batchSize, final int pollRate,
                              final Factory factory, final ReceiveQueueListener<MethodCall<Object>> responseQueueListener) {
+        this(address, QueueBuilder.queueBuilder().batchSize(batchSize).pollWait(pollRate), factory, responseQueueListener);
+    }
+
+    /**
+     *
+     * @param address root address of service bundle
+     * @param queueBuilder settings used to create the queues of the bundle and the services added to it.
+     * @param factory the qbit factory where we can create responses, methods, etc.
+     */
+    public ServiceBundleImpl(String address, final QueueBuilder queueBuilder,
+                             final Factory factory, final ReceiveQueueListener<MethodCall<Object>> responseQueueListener) {
         if (address.endsWith("/")) {
             address = address.substring(0, address.length() - 1);
         }
@@ -175,12 +173,16 @@ public class ServiceBundleImpl implements ServiceBundle {
         this.address = address;
 
         this.factory = factory;
-        this.responseQueue = new BasicQueue<>("Response Queue " + address, pollRate,
-                TimeUnit.MILLISECONDS, batchSize);
+        this.queueBuilder = queueBuilder;
+        this.responseQueue = queueBuilder.build("Response Queue " + address);
 
-        this.methodQueue = new BasicQueue<>("Send Queue " + address, pollRate, TimeUnit.MILLISECONDS, batchSize);
+        this.methodQueue = queueBuilder.build("Send Queue " + address);
 
-        methodSendQueue = methodQueue.sendQueue();
+        /* Calls that do not fit in the method queue get an error response, that is how the bundle sheds load. */
+        final SendQueue<Response<Object>> rejections = responseQueue.sendQueue();
+        methodSendQueue = methodQueue.sendQueue(queueBuilder.overflowPolicy(), methodCall ->
+                rejections.sendAndFlush(new ResponseImpl<>(methodCall,
+                        new RejectedExecutionException("Service bundle " + this.address + " is overloaded"))));
 
         this.responseQueueListener = responseQueueListener !=null ? responseQueueListener : new NoOpInputMethodCallQueueListener();
 
@@ -197,6 +199,54 @@ public class ServiceBundleImpl implements ServiceBundle {
         return address;
     }
 
+    /**
+     * Depth and rejections of the queue that call() feeds.
+     * @return stats of the method queue
+     */
+    public QueueStats methodQueueStats() {
+        return methodQueue.stats();
+    }
+
+    /**
+     * Sets how long callbacks wait for their response before they get onError with a TimeoutException.
+     * @param timeout timeout, 0 or less waits forever
+     * @param timeUnit unit of timeout
+     * @return this
+     */
+    public ServiceBundleImpl callbackTimeout(final long timeout, final TimeUnit timeUnit) {
+        this.callbackTimeout = timeUnit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the callback timeout of calls to one service.
+     * @param service service name or address, calls to addresses under it use it too
+     * @param timeout timeout, 0 or less waits forever
+     * @param timeUnit unit of timeout
+     * @return this
+     */
+    public ServiceBundleImpl callbackTimeout(final String service, final long timeout, final TimeUnit timeUnit) {
+        serviceCallbackTimeouts.put(service, timeUnit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Callbacks that are waiting for a response.
+     * @return number of callbacks
+     */
+    public int pendingCallbacks() {
+        return callbacks.size();
+    }
+
+    /**
+     * Times out the callbacks whose deadline passed.
+     * The response listener does this when it is idle, this is for everything else.
+     * @return number of callbacks that timed out
+     */
+    public int expireCallbacks() {
+        return callbacks.expire(Timer.timer().now());
+    }
+
     /**
      * Add a service to this bundle.
      * @param object the service we want to add.
@@ -220,11 +270,52 @@ public class ServiceBundleImpl implements ServiceBundle {
 
         /** Turn this service object into a service with queues. */
         final Service service = factory.createService(address, serviceAddress,
-                object, responseQueue);
+                object, responseQueue, queueBuilder);
 
         /** add to our list of services. */
         services.add(service);
 
+        addMappings(serviceAddress, service);
+    }
+
+    /**
+     * Add a stateless service as a pool of replicas behind one address.
+     * The replicas share one request queue and each runs its own listener, so calls to the address are spread
+     * over the replicas. Batches of calls are split between replicas, so calls can complete out of order.
+     * @param serviceAddress the address of the service
+     * @param replicas number of replicas
+     * @param serviceSupplier creates each replica, can hand out the same object if it is thread safe
+     */
+    @Override
+    public void addServiceReplicas(String serviceAddress, int replicas, Supplier<Object> serviceSupplier) {
+
+        if (GlobalConstants.DEBUG) {
+            logger.info(ServiceBundleImpl.class.getName(), "replicas", serviceAddress, replicas);
+        }
+
+        final Object first = serviceSupplier.get();
+        final String name = serviceAddress != null && !serviceAddress.isEmpty() ? serviceAddress
+                : first.getClass().getSimpleName();
+
+        final Queue<MethodCall<Object>> requestQueue = queueBuilder.copy().consumers(replicas)
+                .build("Request Queue " + name);
+
+        Service service = null;
+        for (int index = 0; index < replicas; index++) {
+            final Service replica = factory.createService(address, serviceAddress,
+                    index == 0 ? first : serviceSupplier.get(), responseQueue, requestQueue, queueBuilder);
+            services.add(replica);
+            if (service == null) {
+                service = replica;
+            }
+        }
+
+        /** The replicas share the request queue, so the mappings of the first one route to all of them. */
+        addMappings(serviceAddress, service);
+    }
+
+    private void addMappings(String serviceAddress, Service service) {
+
         /* Create an send queue for this service. which we access from a single thread. */
         final SendQueue<MethodCall<Object>> requests = service.requests();
 
@@ -248,10 +339,22 @@ public class ServiceBundleImpl implements ServiceBundle {
 
         /** Add mappings to all addresses for this service to our serviceMapping. */
         for (String addr : addresses) {
-            addressesByDescending.add(addr);
-            SendQueue<MethodCall<Object>> methodCallSendQueue = serviceMapping.get(service.name());
-            serviceMapping.put(addr, methodCallSendQueue);
+            serviceMapping.put(addr, requests);
         }
+
+        addRoutes(addresses, requests);
+    }
+
+    private synchronized void addRoutes(final Collection<String> addresses,
+                                        final SendQueue<MethodCall<Object>> requests) {
+        for (String addr : addresses) {
+            routes.put(addr, requests);
+        }
+        final AddressRouter.Builder<SendQueue<MethodCall<Object>>> builder = AddressRouter.addressRouter();
+        for (Map.Entry<String, SendQueue<MethodCall<Object>>> route : routes.entrySet()) {
+            builder.add(route.getKey(), route.getValue());
+        }
+        router = builder.build();
     }
 
     /**
@@ -301,7 +404,54 @@ public class ServiceBundleImpl implements ServiceBundle {
      */
     private void registerHandlerCallbackForClient(final MethodCall<Object> methodCall,
                                                   final Callback<Object> handler) {
-        handlers.put(new HandlerKey(methodCall.returnAddress(), methodCall.id()), handler);
+        final long timeout = callbackTimeout(methodCall, handler);
+        final long deadline = timeout > 0 ? Timer.timer().now() + timeout : Long.MAX_VALUE;
+        callbacks.register(methodCall.returnAddress(), methodCall.id(), handler, deadline);
+    }
+
+    /**
+     * The timeout of the callback if it has one, else the one of the service it calls, else the bundle's.
+     */
+    private long callbackTimeout(final MethodCall<Object> methodCall, final Callback<Object> handler) {
+        final long timeout = handler.timeoutMillis();
+        if (timeout != 0) {
+            return timeout;
+        }
+        if (serviceCallbackTimeouts.isEmpty()) {
+            return callbackTimeout;
+        }
+
+        Long serviceTimeout = null;
+        if (methodCall.objectName() != null) {
+            serviceTimeout = serviceCallbackTimeouts.get(methodCall.objectName());
+        }
+        final String callAddress = methodCall.address();
+        if (serviceTimeout == null && callAddress != null && !callAddress.isEmpty()) {
+            serviceTimeout = serviceCallbackTimeouts.get(callAddress);
+            if (serviceTimeout == null) {
+                /* Longest address that the call address is under. */
+                int longest = 0;
+                for (Map.Entry<String, Long> entry : serviceCallbackTimeouts.entrySet()) {
+                    final String serviceAddress = entry.getKey();
+                    if (serviceAddress.length() > longest && callAddress.startsWith(serviceAddress)) {
+                        longest = serviceAddress.length();
+                        serviceTimeout = entry.getValue();
+                    }
+                }
+            }
+        }
+        return serviceTimeout != null ? serviceTimeout : callbackTimeout;
+    }
+
+    /**
+     * Times out callbacks at most every CALLBACK_SWEEP_INTERVAL, so a busy response queue does not keep sweeping.
+     */
+    private void sweepCallbacks() {
+        final long now = Timer.timer().now();
+        if (now - lastCallbackSweep >= CALLBACK_SWEEP_INTERVAL) {
+            lastCallbackSweep = now;
+            callbacks.expire(now);
+        }
     }
 
     /**
@@ -312,7 +462,15 @@ public class ServiceBundleImpl implements ServiceBundle {
         responseQueue.startListener(new ReceiveQueueListener<Response<Object>>() {
             @Override
             public void receive(Response<Object> response) {
-                final Callback<Object> handler = handlers.get(new HandlerKey(response.returnAddress(), response.id()));
+                final Callback<Object> handler = callbacks.remove(response.returnAddress(), response.id());
+                if (handler == null) {
+                    /* It timed out already, or the call never had a callback. */
+                    if (GlobalConstants.DEBUG) {
+                        logger.info(ServiceBundleImpl.class.getName(), "no callback for response",
+                                response.returnAddress(), response.id());
+                    }
+                    return;
+                }
                 if (response.wasErrors()) {
                     if (response.body() instanceof Throwable) {
                         logger.error("Service threw an exception address", response.address(),
@@ -333,12 +491,12 @@ public class ServiceBundleImpl implements ServiceBundle {
 
             @Override
             public void empty() {
-
+                sweepCallbacks();
             }
 
             @Override
             public void limit() {
-
+                sweepCallbacks();
             }
 
             @Override
@@ -346,9 +504,12 @@ public class ServiceBundleImpl implements ServiceBundle {
 
             }
 
+            /**
+             * Nothing came back for a while, time out the callbacks that waited too long.
+             */
             @Override
             public void idle() {
-
+                sweepCallbacks();
             }
         });
     }
@@ -407,33 +568,15 @@ public class ServiceBundleImpl implements ServiceBundle {
      * @return send queue for the service we are trying to call.
      */
     private SendQueue<MethodCall<Object>> handleByAddressCall(final MethodCall<Object> methodCall) {
-        SendQueue<MethodCall<Object>> sendQueue;
         final String callAddress = methodCall.address();
-        sendQueue = serviceMapping.get(callAddress);
-
-        if (sendQueue == null) {
-
-            String addr;
-
-            /* Check the ones we are using to reduce search time. */
-            addr = seenAddressesDescending.higher(callAddress);
-            if (addr != null && callAddress.startsWith(addr)) {
-                sendQueue = serviceMapping.get(addr);
-                return sendQueue;
-            }
-
-            /* if it was not in one of the ones we are using check the rest. */
-            addr = addressesByDescending.higher(callAddress);
-
-            if (addr != null && callAddress.startsWith(addr)) {
-                sendQueue = serviceMapping.get(addr);
-
-                if (sendQueue != null) {
-                    seenAddressesDescending.add(addr);
-                }
-            }
+        final SendQueue<MethodCall<Object>> sendQueue = serviceMapping.get(callAddress);
+        if (sendQueue != null) {
+            return sendQueue;
         }
-        return sendQueue;
+
+        /* The service with the longest address that the call address starts with. */
+        final AddressRouter.Route<SendQueue<MethodCall<Object>>> route = router.route(callAddress);
+        return route != null ? route.target() : null;
     }
 
     /**
@@ -507,10 +650,6 @@ public class ServiceBundleImpl implements ServiceBundle {
     private void start() {
         methodQueue.startListener(new ReceiveQueueListener<MethodCall<Object>>() {
 
-            long time;
-
-            long lastTimeAutoFlush;
-
             /**
              * When we receive a method call, we call doCall.
              * @param item item
@@ -521,18 +660,12 @@ public class ServiceBundleImpl implements ServiceBundle {
             }
 
             /**
-             * If the queue is empty, then go ahead, and flush to each service all incoming requests every 50 milliseconds.
+             * If the queue is empty, flush each service whose queue is waiting for work or whose oldest
+             * request has waited longer than the max latency.
              */
             @Override
             public void empty() {
-                time = Timer.timer().now();
-                if (time > (lastTimeAutoFlush + 50)) {
-
-                    for (SendQueue<MethodCall<Object>> sendQueue : sendQueues) {
-                        sendQueue.flushSends();
-                    }
-                    lastTimeAutoFlush = time;
-                }
+                flushDueSendQueues();
             }
 
             @Override
@@ -545,10 +678,19 @@ public class ServiceBundleImpl implements ServiceBundle {
 
             }
 
+            /**
+             * No new calls, flush whatever has waited long enough so nothing sits in a half full batch.
+             */
             @Override
             public void idle() {
-
+                flushDueSendQueues();
             }
         });
     }
+
+    private void flushDueSendQueues() {
+        for (SendQueue<MethodCall<Object>> sendQueue : sendQueues) {
+            sendQueue.flushIfDue();
+        }
+    }
 }
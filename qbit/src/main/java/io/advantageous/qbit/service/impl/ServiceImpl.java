@@ -5,22 +5,26 @@ import io.advantageous.qbit.message.Event;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Request;
 import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.queue.OverflowPolicy;
 import io.advantageous.qbit.queue.Queue;
+import io.advantageous.qbit.queue.QueueBuilder;
+import io.advantageous.qbit.queue.QueueStats;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.queue.ReceiveQueueListener;
 import io.advantageous.qbit.queue.SendQueue;
-import io.advantageous.qbit.queue.impl.BasicQueue;
 import io.advantageous.qbit.service.AfterMethodCall;
 import io.advantageous.qbit.service.BeforeMethodCall;
 import io.advantageous.qbit.service.Service;
 import io.advantageous.qbit.service.ServiceMethodHandler;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
 import io.advantageous.qbit.transforms.NoOpResponseTransformer;
 import io.advantageous.qbit.transforms.Transformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 
@@ -45,6 +49,11 @@ public class ServiceImpl implements Service {
 
     private final Queue<MethodCall<Object>> requestQueue;
 
+    private final OverflowPolicy overflowPolicy;
+
+    /** Sends the error responses for rejected calls, made on the first rejection and shared, guarded by this. */
+    private SendQueue<Response<Object>> rejections;
+
     private Transformer<Request, Object> requestObjectTransformer = ServiceConstants.NO_OP_ARG_TRANSFORM;
 
     private Transformer<Response<Object>, Response> responseObjectTransformer = new NoOpResponseTransformer();
@@ -114,10 +123,46 @@ public class ServiceImpl implements Service {
                        final ServiceMethodHandler serviceMethodHandler,
                        Queue<Response<Object>> responseQueue) {
 
+        this(rootAddress, serviceAddress, service,
+                QueueBuilder.queueBuilder().pollWait(waitTime).timeUnit(timeUnit).batchSize(batchSize),
+                serviceMethodHandler, responseQueue);
+    }
+
+    /**
+     * @param rootAddress          root address of the service bundle
+     * @param serviceAddress       address of this service
+     * @param service              object that implements the service
+     * @param queueBuilder         settings used to create the request queue and the response queue if we need one
+     * @param serviceMethodHandler handler
+     * @param responseQueue        response queue, if null one is created
+     */
+    public ServiceImpl(String rootAddress, final String serviceAddress, final Object service,
+                       final QueueBuilder queueBuilder,
+                       final ServiceMethodHandler serviceMethodHandler,
+                       Queue<Response<Object>> responseQueue) {
+        this(rootAddress, serviceAddress, service, queueBuilder, serviceMethodHandler, responseQueue, null);
+    }
+
+    /**
+     * @param rootAddress          root address of the service bundle
+     * @param serviceAddress       address of this service
+     * @param service              object that implements the service
+     * @param queueBuilder         settings used to create the request queue and the response queue if we need one
+     * @param serviceMethodHandler handler
+     * @param responseQueue        response queue, if null one is created
+     * @param requestQueue         request queue, if null one is created. Replicas of a service share one request
+     *                             queue built for as many consumers as there are replicas.
+     */
+    public ServiceImpl(String rootAddress, final String serviceAddress, final Object service,
+                       final QueueBuilder queueBuilder,
+                       final ServiceMethodHandler serviceMethodHandler,
+                       Queue<Response<Object>> responseQueue,
+                       Queue<MethodCall<Object>> requestQueue) {
+
         if (GlobalConstants.DEBUG) {
             logger.info("ServiceImpl<<constr>>", rootAddress, serviceAddress,
-                    service, waitTime, timeUnit, batchSize, serviceMethodHandler,
-                    responseQueue);
+                    service, queueBuilder.pollWait(), queueBuilder.timeUnit(), queueBuilder.batchSize(),
+                    serviceMethodHandler, responseQueue);
         }
 
         this.service = service;
@@ -128,8 +173,8 @@ public class ServiceImpl implements Service {
         this.name = serviceMethodHandler.address();
 
 
-        requestQueue = new BasicQueue<>("Request Queue " + name, waitTime,
-                timeUnit, batchSize);
+        this.requestQueue = requestQueue == null ? queueBuilder.build("Request Queue " + name) : requestQueue;
+        overflowPolicy = queueBuilder.overflowPolicy();
 
         if (responseQueue == null) {
 
@@ -137,8 +182,7 @@ public class ServiceImpl implements Service {
                 logger.info("RESPONSE QUEUE WAS NULL CREATING ONE");
             }
 
-            this.responseQueue = new BasicQueue<>("Response Queue " + name, waitTime,
-                    timeUnit, batchSize);
+            this.responseQueue = queueBuilder.build("Response Queue " + name);
         } else {
             this.responseQueue = responseQueue;
         }
@@ -217,9 +261,32 @@ public class ServiceImpl implements Service {
 
     }
 
+    /**
+     * Method calls that do not fit in the request queue get an error response right away,
+     * so the caller finds out that the service is overloaded instead of waiting.
+     */
     @Override
     public SendQueue<MethodCall<Object>> requests() {
-        return requestQueue.sendQueue();
+        return requestQueue.sendQueue(overflowPolicy, this::reject);
+    }
+
+    /**
+     * Rejections only happen under overload, so one send queue serves all the request send queues,
+     * instead of each of them holding on to a send queue and its batch just in case.
+     */
+    private synchronized void reject(final MethodCall<Object> methodCall) {
+        if (rejections == null) {
+            rejections = responseQueue.sendQueue();
+        }
+        rejections.sendAndFlush(new ResponseImpl<>(methodCall,
+                new RejectedExecutionException("Service " + name + " is overloaded, request queue is full")));
+    }
+
+    /**
+     * @return stats of the request queue
+     */
+    public QueueStats requestQueueStats() {
+        return requestQueue.stats();
     }
 
     @Override
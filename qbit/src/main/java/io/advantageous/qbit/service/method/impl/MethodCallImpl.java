@@ -1,5 +1,6 @@
 package io.advantageous.qbit.service.method.impl;
 
+import io.advantageous.qbit.util.MessageIds;
 import io.advantageous.qbit.util.MultiMap;
 import io.advantageous.qbit.util.Timer;
 import io.advantageous.qbit.annotation.JsonIgnore;
@@ -20,9 +21,6 @@ public class MethodCallImpl implements MethodCall<Object> {
     @JsonIgnore
     private static transient Timer timer = Timer.timer();
 
-    @JsonIgnore
-    private static volatile long idSequence;
-
     private long timestamp;
 
     private long id;
@@ -57,7 +55,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         method.body = args;
 
         if (id == 0L) {
-            method.id = idSequence++;
+            method.id = MessageIds.next();
         } else {
             method.id = id;
         }
@@ -75,7 +73,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         final MethodCallImpl method = new MethodCallImpl();
         method.name = name;
         method.body = body;
-        method.id = idSequence++;
+        method.id = MessageIds.next();
         method.timestamp = timer.time();
         return method;
     }
@@ -87,7 +85,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         method.address = address;
         method.name = name;
         method.body = body;
-        method.id = idSequence++;
+        method.id = MessageIds.next();
         method.timestamp = timer.time();
         return method;
     }
@@ -100,7 +98,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         method.address = address;
         method.name = name;
         method.body = body;
-        method.id = idSequence++;
+        method.id = MessageIds.next();
         method.timestamp = timer.time();
         method.params = params;
         return method;
@@ -116,7 +114,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         method.address = address;
         method.name = name;
         method.body = body;
-        method.id = idSequence++;
+        method.id = MessageIds.next();
         method.timestamp = timer.time();
         method.params = params;
         method.objectName = objectName;
@@ -129,7 +127,7 @@ public class MethodCallImpl implements MethodCall<Object> {
         final MethodCallImpl method = new MethodCallImpl();
         method.name = name;
         method.body = Collections.singletonList((Object) body);
-        method.id = idSequence++;
+        method.id = MessageIds.next();
         method.timestamp = timer.time();
         return method;
     }
@@ -257,7 +255,7 @@ public class MethodCallImpl implements MethodCall<Object> {
             timestamp = timer.now();
         }
         if (id == 0) {
-            id = idSequence++;
+            id = MessageIds.next();
         }
         return this;
     }
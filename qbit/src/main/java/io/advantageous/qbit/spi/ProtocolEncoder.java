@@ -3,7 +3,10 @@ package io.advantageous.qbit.spi;
 import io.advantageous.qbit.message.Message;
 import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.util.ByteBuffers;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,4 +21,38 @@ public interface ProtocolEncoder {
 
     String encodeAsString(List<Message<Object>> methodCalls);
 
+    /**
+     * Encodes messages as one group message, for example a readBatch() of responses.
+     */
+    default String encodeGroupAsString(Iterable<? extends Message<Object>> messages) {
+        final List<Message<Object>> list = new ArrayList<>();
+        messages.forEach(list::add);
+        return encodeAsString(list);
+    }
+
+    /**
+     * Writes the response the way it goes over the wire, UTF-8 for text protocols, at the position of out.
+     * Lets a caller keep one buffer and send it without making a String first.
+     *
+     * @param out buffer to write to, can be null
+     * @return out, or a bigger buffer with what out had in it if out was too small, positioned after the response
+     */
+    default ByteBuffer encodeTo(Response<Object> response, ByteBuffer out) {
+        return ByteBuffers.putUtf8(out, encodeAsString(response));
+    }
+
+    /**
+     * Writes the method call at the position of out, see encodeTo(Response, ByteBuffer).
+     */
+    default ByteBuffer encodeTo(MethodCall<Object> methodCall, ByteBuffer out) {
+        return ByteBuffers.putUtf8(out, encodeAsString(methodCall));
+    }
+
+    /**
+     * Writes the messages as one group message at the position of out, see encodeTo(Response, ByteBuffer).
+     */
+    default ByteBuffer encodeTo(Iterable<? extends Message<Object>> messages, ByteBuffer out) {
+        return ByteBuffers.putUtf8(out, encodeGroupAsString(messages));
+    }
+
 }
@@ -6,6 +6,8 @@ import io.advantageous.qbit.message.MethodCall;
 import io.advantageous.qbit.message.Response;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 /**
  * This parses the wire format to get method calls.  Could also be called a decoder.
@@ -26,4 +28,35 @@ public interface ProtocolParser {
     List<MethodCall<Object>> parseMethods(Object body);
 
     Response<Object> parseResponse(Object body);
+
+    /**
+     * Parses a message or a group of messages and hands each one to the consumer as it is parsed,
+     * so a batch does not have to be collected into a list first.
+     * @param addressPrefix prefix for the return address of method calls, like parseMethodCallUsingAddressPrefix
+     * @param body message
+     * @param messages gets each message
+     */
+    default void parse(String addressPrefix, Object body, Consumer<Message<Object>> messages) {
+        final List<Message<Object>> list = parse(body);
+        if (list != null) {
+            list.forEach(messages);
+        }
+    }
+
+    /**
+     * Parses the responses in a message or a group of messages. The message id of each response is read before
+     * anything else, responses whose id is not wanted are skipped without parsing their addresses or body.
+     * Method calls are skipped.
+     * @param body message
+     * @param wanted tells if a response with this message id is wanted, for example if a callback waits for it
+     * @param responses gets each wanted response
+     */
+    @SuppressWarnings("unchecked")
+    default void parseResponses(Object body, LongPredicate wanted, Consumer<Response<Object>> responses) {
+        parse("", body, message -> {
+            if (message instanceof Response && wanted.test(message.id())) {
+                responses.accept((Response<Object>) message);
+            }
+        });
+    }
 }
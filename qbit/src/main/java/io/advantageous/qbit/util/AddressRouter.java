@@ -0,0 +1,355 @@
+package io.advantageous.qbit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled path trie that routes addresses like /root/employee/promote/42 to a target.
+ * <p>
+ * Addresses are split on '/', empty segments are ignored, so a trailing slash does not matter.
+ * A segment of a pattern written as {name} matches any one segment and captures it.
+ * Literal segments win over {name} segments when both match.
+ * <p>
+ * If no pattern matches the whole address, the longest pattern that matches the start of it wins,
+ * that is how calls to /root/service/method get to the service registered under /root/service.
+ * <p>
+ * A router is immutable once built, so any number of threads can route with it. To add routes, build a new one.
+ * Routing walks the address once without copying it, only captured segments are turned into strings.
+ *
+ * @param <T> what addresses route to
+ * @author rhightower
+ */
+public final class AddressRouter<T> {
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Node<T> root;
+
+    private final int maxParams;
+
+    private final int size;
+
+    private AddressRouter(final Node<T> root, final int maxParams, final int size) {
+        this.root = root;
+        this.maxParams = maxParams;
+        this.size = size;
+    }
+
+    public static <T> Builder<T> addressRouter() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return number of patterns
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Routes an address.
+     *
+     * @param address address of the call
+     * @return the route or null if no pattern matches the address or the start of it
+     */
+    public Route<T> route(final String address) {
+        if (address == null) {
+            return null;
+        }
+        final String[] captures = maxParams == 0 ? NO_VALUES : new String[maxParams];
+
+        final Node<T> node = matchAll(root, address, 0, captures, 0);
+        if (node != null) {
+            return node.route(captures);
+        }
+        return matchPrefix(address, captures);
+    }
+
+    /**
+     * Finds the pattern that matches the whole address, trying literal segments before {name} segments.
+     */
+    private static <T> Node<T> matchAll(final Node<T> node, final String address, int position,
+                                        final String[] captures, final int count) {
+        position = skipSlashes(address, position);
+        if (position == address.length()) {
+            return node.target != null ? node : null;
+        }
+        final int end = segmentEnd(address, position);
+
+        final Node<T> literal = node.child(address, position, end);
+        if (literal != null) {
+            final Node<T> found = matchAll(literal, address, end, captures, count);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (node.param != null) {
+            captures[count] = address.substring(position, end);
+            return matchAll(node.param, address, end, captures, count + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Walks as far into the address as the patterns go and returns the last pattern on the way.
+     */
+    private Route<T> matchPrefix(final String address, final String[] captures) {
+        Node<T> node = root;
+        Node<T> last = root.target != null ? root : null;
+        int position = 0;
+        int count = 0;
+
+        while (true) {
+            position = skipSlashes(address, position);
+            if (position == address.length()) {
+                break;
+            }
+            final int end = segmentEnd(address, position);
+            Node<T> next = node.child(address, position, end);
+            if (next == null && node.param != null) {
+                next = node.param;
+                captures[count++] = address.substring(position, end);
+            }
+            if (next == null) {
+                break;
+            }
+            node = next;
+            position = end;
+            if (node.target != null) {
+                last = node;
+            }
+        }
+        return last == null ? null : last.route(captures);
+    }
+
+    private static int skipSlashes(final String address, int position) {
+        while (position < address.length() && address.charAt(position) == '/') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int segmentEnd(final String address, final int position) {
+        final int end = address.indexOf('/', position);
+        return end == -1 ? address.length() : end;
+    }
+
+    /**
+     * Same as String.hashCode of the segment, without making the string.
+     */
+    private static int hash(final String address, final int start, final int end) {
+        int hash = 0;
+        for (int index = start; index < end; index++) {
+            hash = 31 * hash + address.charAt(index);
+        }
+        return hash;
+    }
+
+
+    /**
+     * A pattern that matched, what it routes to and the segments its {name} segments captured.
+     */
+    public static final class Route<T> {
+
+        private final T target;
+        private final String pattern;
+        private final String[] names;
+        private final String[] values;
+
+        private Route(final T target, final String pattern, final String[] names, final String[] values) {
+            this.target = target;
+            this.pattern = pattern;
+            this.names = names;
+            this.values = values;
+        }
+
+        public T target() {
+            return target;
+        }
+
+        public String pattern() {
+            return pattern;
+        }
+
+        /**
+         * @return number of captured segments
+         */
+        public int count() {
+            return names.length;
+        }
+
+        /**
+         * @param index index of the {name} segment in the pattern, counting only {name} segments
+         * @return the captured segment
+         */
+        public String value(final int index) {
+            return values[index];
+        }
+
+        /**
+         * @param name name between the braces
+         * @return the captured segment or null if the pattern has no such name
+         */
+        public String value(final String name) {
+            for (int index = 0; index < names.length; index++) {
+                if (names[index].equals(name)) {
+                    return values[index];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "Route{" +
+                    "pattern='" + pattern + '\'' +
+                    ", names=" + Arrays.toString(names) +
+                    ", values=" + Arrays.toString(Arrays.copyOf(values, names.length)) +
+                    '}';
+        }
+    }
+
+
+    private static final class Node<T> {
+
+        /* Children sorted by the hash of their segment. */
+        private final int[] hashes;
+        private final String[] segments;
+        private final Node<T>[] children;
+
+        private final Node<T> param;
+
+        private final T target;
+        private final String pattern;
+        private final String[] names;
+
+        /* Routes of patterns without {name} segments are the same every time. */
+        private final Route<T> route;
+
+        private Node(final int[] hashes, final String[] segments, final Node<T>[] children, final Node<T> param,
+                     final T target, final String pattern, final String[] names) {
+            this.hashes = hashes;
+            this.segments = segments;
+            this.children = children;
+            this.param = param;
+            this.target = target;
+            this.pattern = pattern;
+            this.names = names;
+            this.route = target != null && names.length == 0 ? new Route<>(target, pattern, names, NO_VALUES) : null;
+        }
+
+        Node<T> child(final String address, final int start, final int end) {
+            if (hashes.length == 0) {
+                return null;
+            }
+            final int hash = hash(address, start, end);
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                return null;
+            }
+            /* Step back to the first child with this hash, then check the segments with this hash. */
+            while (index > 0 && hashes[index - 1] == hash) {
+                index--;
+            }
+            final int length = end - start;
+            for (; index < hashes.length && hashes[index] == hash; index++) {
+                final String segment = segments[index];
+                if (segment.length() == length && address.regionMatches(start, segment, 0, length)) {
+                    return children[index];
+                }
+            }
+            return null;
+        }
+
+        Route<T> route(final String[] captures) {
+            if (route != null) {
+                return route;
+            }
+            return new Route<>(target, pattern, names, Arrays.copyOf(captures, names.length));
+        }
+    }
+
+
+    /**
+     * Collects patterns and compiles them into a router. Not thread safe.
+     */
+    public static final class Builder<T> {
+
+        private final MutableNode<T> root = new MutableNode<>();
+        private int maxParams;
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a pattern. Adding the same pattern again replaces its target.
+         *
+         * @param pattern pattern such as /root/employee/{id}
+         * @param target  what the pattern routes to
+         * @return this
+         */
+        public Builder<T> add(final String pattern, final T target) {
+            if (target == null) {
+                throw new IllegalArgumentException("target of " + pattern + " can not be null");
+            }
+            MutableNode<T> node = root;
+            final List<String> names = new ArrayList<>();
+            for (String segment : pattern.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    names.add(segment.substring(1, segment.length() - 1));
+                    if (node.param == null) {
+                        node.param = new MutableNode<>();
+                    }
+                    node = node.param;
+                } else {
+                    node = node.children.computeIfAbsent(segment, s -> new MutableNode<>());
+                }
+            }
+            if (node.target == null) {
+                size++;
+            }
+            node.target = target;
+            node.pattern = pattern;
+            node.names = names.toArray(new String[names.size()]);
+            maxParams = Math.max(maxParams, names.size());
+            return this;
+        }
+
+        public AddressRouter<T> build() {
+            return new AddressRouter<>(root.compile(), maxParams, size);
+        }
+    }
+
+    private static final class MutableNode<T> {
+        private final Map<String, MutableNode<T>> children = new TreeMap<>();
+        private MutableNode<T> param;
+        private T target;
+        private String pattern;
+        private String[] names = NO_VALUES;
+
+        Node<T> compile() {
+            final List<Map.Entry<String, MutableNode<T>>> entries = new ArrayList<>(children.entrySet());
+            Collections.sort(entries, (a, b) -> Integer.compare(a.getKey().hashCode(), b.getKey().hashCode()));
+
+            final int[] hashes = new int[entries.size()];
+            final String[] segments = new String[entries.size()];
+            @SuppressWarnings("unchecked")
+            final Node<T>[] nodes = (Node<T>[]) new Node<?>[entries.size()];
+            for (int index = 0; index < entries.size(); index++) {
+                segments[index] = entries.get(index).getKey();
+                hashes[index] = segments[index].hashCode();
+                nodes[index] = entries.get(index).getValue().compile();
+            }
+            return new Node<>(hashes, segments, nodes, param == null ? null : param.compile(),
+                    target, pattern, names);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.advantageous.qbit.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for writing into ByteBuffers that grow, the way encoders fill a buffer the caller keeps around.
+ *
+ * @author rhightower
+ */
+public final class ByteBuffers {
+
+    private ByteBuffers() {
+    }
+
+    /**
+     * Makes room for more bytes after the position.
+     *
+     * @param buffer buffer to write to, can be null
+     * @param more   bytes about to be written
+     * @return the buffer if it has room, otherwise a bigger buffer of the same kind, heap or direct,
+     * with what was written so far and the same position
+     */
+    public static ByteBuffer ensure(final ByteBuffer buffer, final int more) {
+        if (buffer == null) {
+            return ByteBuffer.allocate(Math.max(more, 1024));
+        }
+        if (buffer.remaining() >= more) {
+            return buffer;
+        }
+        final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + more);
+        final ByteBuffer bigger = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    /**
+     * @return number of bytes the chars take as UTF-8
+     */
+    public static int utf8Length(final CharSequence chars) {
+        final int count = chars.length();
+        int length = 0;
+        for (int index = 0; index < count; index++) {
+            final char c = chars.charAt(index);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && index + 1 < count
+                    && Character.isLowSurrogate(chars.charAt(index + 1))) {
+                length += 4;
+                index++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the chars as UTF-8 at the position of the buffer, without making a String or a byte[] first.
+     *
+     * @return the buffer, or a bigger one if it was too small, see ensure
+     */
+    public static ByteBuffer putUtf8(ByteBuffer buffer, final CharSequence chars) {
+        final int count = chars.length();
+        buffer = ensure(buffer, utf8Length(chars));
+
+        for (int index = 0; index < count; index++) {
+            final char c = chars.charAt(index);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && index + 1 < count
+                    && Character.isLowSurrogate(chars.charAt(index + 1))) {
+                final int codePoint = Character.toCodePoint(c, chars.charAt(++index));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return buffer;
+    }
+}
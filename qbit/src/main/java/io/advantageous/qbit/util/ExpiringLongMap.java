@@ -0,0 +1,191 @@
+package io.advantageous.qbit.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a primitive long to a value with a deadline, for tracking calls that are waiting
+ * for a response by message id. Nothing is allocated per entry and keys are never boxed.
+ * <p>
+ * This is not thread safe, callers synchronize on it if more than one thread uses it.
+ *
+ * @param <V> value type, values can not be null
+ * @author rhightower
+ */
+public class ExpiringLongMap<V> {
+
+    /**
+     * Gets entries that were removed because their deadline passed.
+     */
+    public interface Expired<V> {
+        void expired(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private long[] deadlines;
+    private int size;
+    private int mask;
+
+    public ExpiringLongMap() {
+        this(16);
+    }
+
+    public ExpiringLongMap(final int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(initialCapacity, 8) - 1) << 1);
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        deadlines = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(final long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * @param key key
+     * @param value value, not null
+     * @param deadline when the entry expires, in whatever clock the caller passes to expire
+     * @return the value that was there before, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value, final long deadline) {
+        if (value == null) {
+            throw new IllegalArgumentException("values can not be null");
+        }
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                final V old = (V) values[index];
+                values[index] = value;
+                deadlines[index] = deadline;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        deadlines[index] = deadline;
+        if (++size > (mask + 1) * 3 / 4) {
+            grow();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int index = indexOf(key);
+        return index == -1 ? null : (V) values[index];
+    }
+
+    /**
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        final V value = (V) values[index];
+        removeAt(index);
+        return value;
+    }
+
+    /**
+     * Removes every entry whose deadline is before now and hands it to the expired handler.
+     *
+     * @return number of expired entries
+     */
+    @SuppressWarnings("unchecked")
+    public int expire(final long now, final Expired<V> expired) {
+        int count = 0;
+        int index = 0;
+        while (index <= mask) {
+            if (values[index] != null && deadlines[index] < now) {
+                final long key = keys[index];
+                final V value = (V) values[index];
+                removeAt(index);
+                count++;
+                expired.expired(key, value);
+                /* Removing shifted a later entry into this slot, look at it again. */
+                continue;
+            }
+            index++;
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int indexOf(final long key) {
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion, so there are no tombstones and lookups stay short.
+     */
+    private void removeAt(int index) {
+        values[index] = null;
+        size--;
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            final int home = hash(keys[next]) & mask;
+            /* Move the entry back if its home slot is not between the hole and where it is now. */
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                deadlines[index] = deadlines[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final long[] oldDeadlines = deadlines;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int index = 0; index < oldKeys.length; index++) {
+            if (oldValues[index] != null) {
+                reinsert(oldKeys[index], oldValues[index], oldDeadlines[index]);
+            }
+        }
+    }
+
+    private void reinsert(final long key, final Object value, final long deadline) {
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        deadlines[index] = deadline;
+        size++;
+    }
+}
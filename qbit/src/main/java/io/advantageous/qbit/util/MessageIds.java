@@ -0,0 +1,87 @@
+package io.advantageous.qbit.util;
+
+import io.advantageous.qbit.GlobalConstants;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out message ids that are unique in the JVM, and across JVMs that have different node ids.
+ * <p>
+ * Each thread takes a block of BLOCK_SIZE ids from one atomic counter and hands them out from the block, so
+ * the counter is touched once per block and the fast path is a thread local increment.
+ * Ids are positive and never 0, 0 means "give this message an id".
+ * <p>
+ * The node id, org.qbit.NODE_ID, goes in the top bits, so servers in a cluster that each have their own
+ * node id do not hand out the same ids. The default node id is 0, which leaves ids as small numbers.
+ *
+ * @author rhightower
+ */
+public final class MessageIds {
+
+    /** Ids a thread takes from the counter at a time. */
+    public static final int BLOCK_SIZE = 1024;
+
+    /** Bits below the node id. */
+    public static final int SEQUENCE_BITS = 48;
+
+    /** Node ids go from 0 to this, so ids stay positive. */
+    public static final int MAX_NODE_ID = (1 << (63 - SEQUENCE_BITS)) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /** Start of the next block, starts at 1 so no thread hands out 0. */
+    private static final AtomicLong blocks = new AtomicLong(1);
+
+    private static final long nodePrefix = nodePrefix(GlobalConstants.NODE_ID);
+
+    private static final ThreadLocal<Block> threadBlock = ThreadLocal.withInitial(Block::new);
+
+    private MessageIds() {
+    }
+
+    /**
+     * @return the next id of the calling thread's block
+     */
+    public static long next() {
+        return threadBlock.get().next();
+    }
+
+    /**
+     * @return node id the ids are made with
+     */
+    public static int nodeId() {
+        return (int) (nodePrefix >>> SEQUENCE_BITS);
+    }
+
+    /**
+     * @return node id an id was made with
+     */
+    public static int nodeId(final long id) {
+        return (int) (id >>> SEQUENCE_BITS);
+    }
+
+    private static long nodePrefix(final int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("org.qbit.NODE_ID has to be from 0 to " + MAX_NODE_ID + ": " + nodeId);
+        }
+        return (long) nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Ids of one thread, not thread safe.
+     */
+    private static final class Block {
+
+        private long next;
+
+        private long end;
+
+        long next() {
+            if (next == end) {
+                next = blocks.getAndAdd(BLOCK_SIZE);
+                end = next + BLOCK_SIZE;
+            }
+            return nodePrefix | (next++ & SEQUENCE_MASK);
+        }
+    }
+}
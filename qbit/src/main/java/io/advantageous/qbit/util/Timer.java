@@ -1,90 +1,153 @@
 package io.advantageous.qbit.util;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.advantageous.qbit.GlobalConstants;
 
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * Coarse clock shared by everything that stamps messages, so hot paths read a volatile field
+ * instead of calling into the OS for the time.
+ * <p>
+ * One daemon thread reads System.currentTimeMillis() and System.nanoTime() every resolution and publishes them.
+ * It reads the clocks on every tick instead of adding up ticks, so it does not drift when a tick is late,
+ * it is just stale by up to the resolution, plus however late the tick is.
+ * <p>
+ * now() and time() are monotonic milliseconds, based on System.nanoTime(), so deadlines and timeouts do not jump
+ * when the wall clock is set. Use wallClock() for the time of day.
+ * <p>
+ * In high resolution mode there is no thread, every read goes to the system clocks.
+ * Use it when you measure latencies that are close to the resolution.
+ * <p>
+ * The shared timer is configured with org.qbit.TIMER_RESOLUTION (milliseconds) and org.qbit.TIMER_HIGH_RESOLUTION.
+ *
  * @author rhightower
  */
 public class Timer {
 
-    private final Logger logger = LoggerFactory.getLogger(Timer.class);
+    private static final AtomicReference<Timer> timeHolder = new AtomicReference<>();
 
-    private final AtomicLong time = new AtomicLong(System.nanoTime() / 1_000_000);
+    private final long resolution;
 
-    private ScheduledExecutorService monitor;
+    private final TimeUnit timeUnit;
 
-    private ScheduledFuture<?> future;
+    private final boolean highResolution;
 
-    private static AtomicReference<Timer> timeHolder = new AtomicReference<>();
+    /** Read the system clocks directly, either in high resolution mode or once the timer is stopped. */
+    private volatile boolean direct;
 
-    public static Timer timer() {
-        if (timeHolder.get() == null) {
+    private volatile long wallClock = System.currentTimeMillis();
 
-            if (timeHolder.compareAndSet(timeHolder.get(), new Timer())) {
-                timeHolder.get().start();
-            }
+    private volatile long nanoTime = System.nanoTime();
 
+    private ScheduledExecutorService monitor;
+
+    /**
+     * @return the shared timer, started the first time this is called
+     */
+    public static Timer timer() {
+        Timer timer = timeHolder.get();
+        if (timer == null) {
+            final Timer candidate = new Timer(GlobalConstants.TIMER_RESOLUTION, TimeUnit.MILLISECONDS,
+                    GlobalConstants.TIMER_HIGH_RESOLUTION);
+            /* Only the thread that wins starts its timer, everybody else uses the winner. */
+            if (timeHolder.compareAndSet(null, candidate)) {
+                candidate.start();
+                timer = candidate;
+            } else {
+                timer = timeHolder.get();
+            }
         }
-        return timeHolder.get();
+        return timer;
     }
 
-    public void stop() {
-        future.cancel(true);
-        monitor.shutdownNow();
-        monitor = null;
+    /**
+     * Creates a timer that is not started, call start before you use it in coarse mode.
+     *
+     * @param resolution how often the clock thread updates the time
+     * @param timeUnit time unit of resolution
+     * @param highResolution if true there is no clock thread and reads go to the system clocks
+     */
+    public Timer(final long resolution, final TimeUnit timeUnit, final boolean highResolution) {
+        this.resolution = resolution;
+        this.timeUnit = timeUnit;
+        this.highResolution = highResolution;
+        this.direct = highResolution;
     }
 
-    private void start() {
-
-        if (monitor == null)
-            monitor = Executors.newScheduledThreadPool(1,
-                    runnable -> {
-                        Thread thread = new Thread(runnable);
-                        thread.setPriority(Thread.MAX_PRIORITY);
-                        thread.setName("Timer OutputQueue Manager");
-                        return thread;
-                    }
-            );
-
-        future = monitor.scheduleAtFixedRate(() -> {
-            try {
-                manageTimer();
-            } catch (Exception ex) {
-                logger.error("can't manage timeHolder", ex);
-            }
-        }, 50, 50, TimeUnit.MILLISECONDS);
+    public synchronized Timer start() {
+        if (direct || monitor != null) {
+            return this;
+        }
 
+        monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable);
+            thread.setName("QBit Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        monitor.scheduleAtFixedRate(this::tick, resolution, resolution, timeUnit);
+        return this;
     }
 
-    @SuppressWarnings("InfiniteLoopStatement")
-    private void manageTimer() {
-        int count = 0;
-        while (true) {
-            count++;
-            try {
-                Thread.sleep(5);
-            } catch (InterruptedException e) {
-                Thread.interrupted();
-            }
-            time.addAndGet(5);
-            if (count > 100) {
-                time.set(System.nanoTime() / 1_000_000);
-                count = 0;
-            }
+    /**
+     * Stops the clock thread. Reads go to the system clocks from now on, so the time does not freeze.
+     */
+    public synchronized void stop() {
+        direct = true;
+        if (monitor != null) {
+            monitor.shutdownNow();
+            monitor = null;
         }
     }
 
+    private void tick() {
+        wallClock = System.currentTimeMillis();
+        nanoTime = System.nanoTime();
+    }
+
+    /**
+     * @return same as now()
+     */
     public long time() {
-        return time.get();
+        return now();
     }
 
+    /**
+     * Monotonic time in milliseconds, System.nanoTime() / 1_000_000, for deadlines and message timestamps.
+     * Stale by up to the resolution unless in high resolution mode.
+     *
+     * @return milliseconds
+     */
     public long now() {
-        return time.get();
+        return nanoTime() / 1_000_000;
+    }
+
+    /**
+     * @return wall clock time in milliseconds, stale by up to the resolution unless in high resolution mode
+     */
+    public long wallClock() {
+        return direct ? System.currentTimeMillis() : wallClock;
     }
 
+    /**
+     * Monotonic time for measuring elapsed time, same origin as System.nanoTime().
+     * Only as precise as the resolution unless in high resolution mode.
+     *
+     * @return nano time
+     */
+    public long nanoTime() {
+        return direct ? System.nanoTime() : nanoTime;
+    }
+
+    public long resolution(final TimeUnit timeUnit) {
+        return timeUnit.convert(resolution, this.timeUnit);
+    }
+
+    public boolean highResolution() {
+        return highResolution;
+    }
 }
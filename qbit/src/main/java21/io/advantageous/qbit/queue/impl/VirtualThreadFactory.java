@@ -0,0 +1,16 @@
+package io.advantageous.qbit.queue.impl;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads. Compiled only with the java21 build profile, see VirtualThreads.
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+
+    private final ThreadFactory factory = Thread.ofVirtual().factory();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        return factory.newThread(runnable);
+    }
+}
@@ -0,0 +1,134 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.queue.impl.BasicSendQueue;
+import io.advantageous.qbit.queue.impl.WorkerPool;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class AdaptiveBatchingTest {
+
+    boolean ok;
+
+    @Test
+    public void testGrowsWhenReceiverIsBusy() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(10).adaptiveBatching(10, 1000)
+                .build("adaptive");
+        final BasicSendQueue<Integer> sendQueue = (BasicSendQueue<Integer>) queue.sendQueue();
+
+        for (int index = 0; index < 5000; index++) {
+            sendQueue.send(index);
+        }
+
+        ok = sendQueue.currentBatchSize() == 1000 || die(sendQueue.currentBatchSize());
+
+        sendQueue.flushSends();
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+        for (int index = 0; index < 5000; index++) {
+            ok = receiveQueue.poll() == index || die(index);
+        }
+    }
+
+    @Test
+    public void testShrinksWhenReceiverIsWaiting() throws Exception {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(400).adaptiveBatching(10, 1000)
+                .maxLatency(-1, TimeUnit.MILLISECONDS).build("adaptive");
+        final BasicSendQueue<Integer> sendQueue = (BasicSendQueue<Integer>) queue.sendQueue();
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+
+        final Thread receiver = new Thread(() -> {
+            for (int index = 0; index < 5; index++) {
+                receiveQueue.take();
+            }
+        });
+        receiver.start();
+
+        for (int index = 0; index < 5; index++) {
+            sleep(20);
+            sendQueue.send(index);
+            ok = sendQueue.flushIfDue() || die("receiver is waiting, should flush", index);
+        }
+
+        receiver.join(1000);
+        ok = sendQueue.currentBatchSize() < 400 || die(sendQueue.currentBatchSize());
+    }
+
+    @Test
+    public void testFlushIfDue() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(100)
+                .maxLatency(20, TimeUnit.MILLISECONDS).build("latency");
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+
+        sendQueue.send(1);
+        ok = !sendQueue.flushIfDue() || die("not due yet");
+
+        sleep(30);
+        ok = sendQueue.flushIfDue() || die("should be due");
+        ok = queue.receiveQueue().poll() == 1 || die();
+        ok = !sendQueue.flushIfDue() || die("nothing left to flush");
+    }
+
+    @Test
+    public void testLateBatchFlushesOnSend() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(100)
+                .maxLatency(1, TimeUnit.MILLISECONDS).build("latency");
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+
+        for (int index = 0; index < 15; index++) {
+            sendQueue.send(index);
+        }
+        sleep(5);
+        sendQueue.send(15);
+
+        ok = queue.stats().depth() == 16 || die(queue.stats());
+    }
+
+    @Test
+    public void testFlushIfDueOnWorkerPool() {
+        final WorkerPool workerPool = new WorkerPool("test", 1, 5, TimeUnit.MILLISECONDS);
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(100).workerPool(workerPool)
+                .maxLatency(10, TimeUnit.SECONDS).build("pooled");
+        final AtomicInteger count = new AtomicInteger();
+
+        queue.startListener(new ReceiveQueueListener<Integer>() {
+            @Override
+            public void receive(Integer item) {
+                count.incrementAndGet();
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        sleep(20);
+
+        /* Nobody waits on the queue itself on a pool, the receiver being drained is what tells us it is idle. */
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 3; index++) {
+            sendQueue.send(index);
+            ok = sendQueue.flushIfDue() || die("receiver is idle, should flush", index);
+            sleep(20);
+            ok = count.get() == index + 1 || die(count.get());
+        }
+
+        queue.stop();
+        workerPool.stop();
+    }
+}
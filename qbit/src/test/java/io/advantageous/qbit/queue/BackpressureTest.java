@@ -0,0 +1,109 @@
+package io.advantageous.qbit.queue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class BackpressureTest {
+
+    boolean ok;
+
+    private Queue<Integer> queue(int capacity, int batchSize, OverflowPolicy overflowPolicy) {
+        return QueueBuilder.queueBuilder().capacity(capacity).batchSize(batchSize)
+                .overflowPolicy(overflowPolicy).build("test");
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final Queue<Integer> queue = queue(10, 5, OverflowPolicy.BLOCK);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        final Thread producer = new Thread(() -> {
+            final SendQueue<Integer> sendQueue = queue.sendQueue();
+            for (int index = 0; index < 20; index++) {
+                sendQueue.send(index);
+            }
+            sendQueue.flushSends();
+            done.set(true);
+        });
+        producer.start();
+
+        sleep(100);
+
+        ok = !done.get() || die("producer should be blocked");
+        ok = queue.stats().depth() == 10 || die(queue.stats());
+
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+        int count = 0;
+        while (count < 20) {
+            final Integer item = receiveQueue.pollWait();
+            if (item != null) {
+                ok = item == count || die(item, count);
+                count++;
+            }
+        }
+
+        producer.join(1000);
+        ok = done.get() || die("producer should be done");
+        ok = queue.stats().depth() == 0 || die(queue.stats());
+        ok = queue.stats().rejected() == 0 || die(queue.stats());
+    }
+
+    @Test
+    public void testDropNewest() {
+        final Queue<Integer> queue = queue(10, 5, OverflowPolicy.DROP_NEWEST);
+        final List<Integer> rejected = new CopyOnWriteArrayList<>();
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue(OverflowPolicy.DROP_NEWEST, rejected::add);
+        for (int index = 0; index < 20; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        ok = queue.stats().depth() == 10 || die(queue.stats());
+        ok = queue.stats().rejected() == 10 || die(queue.stats());
+        ok = rejected.get(0) == 10 || die(rejected);
+        ok = queue.receiveQueue().poll() == 0 || die();
+    }
+
+    @Test
+    public void testDropOldest() {
+        final Queue<Integer> queue = queue(10, 5, OverflowPolicy.BLOCK);
+        final List<Integer> rejected = new CopyOnWriteArrayList<>();
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue(OverflowPolicy.DROP_OLDEST, rejected::add);
+        for (int index = 0; index < 20; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        ok = queue.stats().depth() == 10 || die(queue.stats());
+        ok = queue.stats().rejected() == 10 || die(queue.stats());
+        ok = rejected.get(0) == 0 || die(rejected);
+        ok = queue.receiveQueue().poll() == 10 || die();
+    }
+
+    @Test
+    public void testFailFast() {
+        final Queue<Integer> queue = queue(10, 100, OverflowPolicy.FAIL_FAST);
+        final List<Integer> rejected = new CopyOnWriteArrayList<>();
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue(OverflowPolicy.FAIL_FAST, rejected::add);
+        for (int index = 0; index < 15; index++) {
+            sendQueue.send(index);
+        }
+
+        ok = rejected.size() == 5 || die("rejected on send, before the flush", rejected);
+
+        sendQueue.flushSends();
+
+        ok = queue.stats().depth() == 10 || die(queue.stats());
+        ok = queue.stats().rejected() == 5 || die(queue.stats());
+        ok = queue.stats().capacity() == 10 || die(queue.stats());
+    }
+}
@@ -6,7 +6,11 @@ import org.junit.Test;
 import io.advantageous.qbit.queue.impl.BasicQueue;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.boon.Boon.puts;
@@ -297,4 +301,198 @@ public class BasicQueueTest {
 
     }
 
+
+    @Test
+    public void testListenerStartsRightAway() throws Exception {
+
+        final BasicQueue<String> queue = new BasicQueue<>("test", 1000, TimeUnit.MILLISECONDS, 10);
+
+        final CountDownLatch received = new CountDownLatch(1);
+
+        queue.startListener(new ReceiveQueueListener<String>() {
+            @Override
+            public void receive(String item) {
+                received.countDown();
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        final long start = System.nanoTime();
+        queue.sendQueue().sendAndFlush("hi");
+
+        ok = received.await(40, TimeUnit.MILLISECONDS) || die("listener should not wait for a scheduler tick");
+        puts("first item took", (System.nanoTime() - start) / 1000, "micros");
+
+        queue.stop();
+    }
+
+    @Test
+    public void testFailingListenerBacksOff() throws Exception {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("test", 10, TimeUnit.MILLISECONDS, 100);
+
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        final CountDownLatch shutdown = new CountDownLatch(1);
+
+        queue.startListener(new ReceiveQueueListener<Integer>() {
+            @Override
+            public void receive(Integer item) {
+                calls.incrementAndGet();
+                if (failing.get()) {
+                    throw new IllegalStateException("listener blew up");
+                }
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+                shutdown.countDown();
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 1000; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        sleep(200);
+
+        /* Restarts wait 1, 2, 4 ... ms, without that every item would be tried and fail right away. */
+        ok = calls.get() > 1 && calls.get() < 20 || die("restarts should back off", calls.get());
+
+        failing.set(false);
+        queue.stop();
+
+        ok = shutdown.await(500, TimeUnit.MILLISECONDS) || die("stop should cut the back off short");
+    }
+
+    @Test
+    public void testListenerRestartKeepsBatch() throws Exception {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("test", 10, TimeUnit.MILLISECONDS, 100);
+
+        final List<Integer> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch shutdown = new CountDownLatch(1);
+
+        queue.startListener(new ReceiveQueueListener<Integer>() {
+            boolean thrown;
+
+            @Override
+            public void receive(Integer item) {
+                if (item == 5 && !thrown) {
+                    thrown = true;
+                    throw new IllegalStateException("listener blew up");
+                }
+                items.add(item);
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+                shutdown.countDown();
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 10; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        sleep(100);
+
+        /* Item 5 was lost to the exception, the rest of the batch it was in was not. */
+        ok = items.size() == 9 || die("should have the rest of the batch after the restart", items);
+        ok = items.get(8) == 9 || die(items);
+
+        queue.stop();
+
+        ok = shutdown.await(1, TimeUnit.SECONDS) || die("listener should get shutdown when the queue stops");
+    }
+
+    @Test
+    public void testReadBatchHonorsMax() {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("test", 10, TimeUnit.MILLISECONDS, 100);
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+
+        for (int index = 0; index < 250; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+
+        int expected = 0;
+        while (true) {
+            final List<Integer> batch = (List<Integer>) receiveQueue.readBatch(30);
+            if (batch.isEmpty()) {
+                break;
+            }
+            ok = batch.size() <= 30 || die(batch.size());
+            for (Integer item : batch) {
+                ok = item == expected || die(item, expected);
+                expected++;
+            }
+        }
+        ok = expected == 250 || die(expected);
+    }
+
+    @Test
+    public void testReadBatchViewIsReadOnly() {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("test", 10, TimeUnit.MILLISECONDS, 10);
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        sendQueue.sendMany(1, 2, 3);
+
+        final List<Integer> batch = (List<Integer>) queue.receiveQueue().readBatch(10);
+        ok = batch.size() == 3 || die(batch);
+
+        try {
+            batch.set(0, 5);
+            die("batch view should be read only");
+        } catch (UnsupportedOperationException expected) {
+            puts("read only");
+        }
+    }
+
 }
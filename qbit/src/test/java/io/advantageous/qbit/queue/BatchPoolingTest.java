@@ -0,0 +1,133 @@
+package io.advantageous.qbit.queue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+
+public class BatchPoolingTest {
+
+    boolean ok;
+
+    private Queue<String> pooledQueue() {
+        return QueueBuilder.queueBuilder().batchSize(10).ringBuffer(true).ringBufferSize(64)
+                .batchPooling(true).build("pooled");
+    }
+
+    @Test
+    public void testItemsSurviveRecycling() {
+        final Queue<String> queue = pooledQueue();
+        final SendQueue<String> sendQueue = queue.sendQueue();
+        final ReceiveQueue<String> receiveQueue = queue.receiveQueue();
+
+        for (int round = 0; round < 100; round++) {
+            for (int index = 0; index < 25; index++) {
+                sendQueue.send("item" + round + "." + index);
+            }
+            sendQueue.flushSends();
+
+            for (int index = 0; index < 25; index++) {
+                final String item = receiveQueue.poll();
+                ok = ("item" + round + "." + index).equals(item) || die(item, round, index);
+            }
+            ok = receiveQueue.poll() == null || die();
+        }
+        ok = queue.stats().depth() == 0 || die(queue.stats());
+    }
+
+    @Test
+    public void testReadBatchIntoBuffer() {
+        final Queue<String> queue = pooledQueue();
+        final SendQueue<String> sendQueue = queue.sendQueue();
+        final ReceiveQueue<String> receiveQueue = queue.receiveQueue();
+
+        for (int index = 0; index < 25; index++) {
+            sendQueue.send("item" + index);
+        }
+        sendQueue.sendMany("a", "b");
+
+        final String[] buffer = new String[7];
+        int total = 0;
+        int count;
+        while ((count = receiveQueue.readBatch(buffer)) > 0) {
+            for (int index = 0; index < count; index++) {
+                final String expected = total < 25 ? "item" + total : total == 25 ? "a" : "b";
+                ok = expected.equals(buffer[index]) || die(expected, buffer[index]);
+                total++;
+            }
+        }
+        ok = total == 27 || die(total);
+    }
+
+    @Test
+    public void testDroppedBatchesAreRecycled() {
+        final Queue<String> queue = QueueBuilder.queueBuilder().batchSize(10).batchPooling(true)
+                .capacity(10).build("pooled");
+        final List<String> rejected = new CopyOnWriteArrayList<>();
+        final SendQueue<String> sendQueue = queue.sendQueue(OverflowPolicy.DROP_OLDEST, rejected::add);
+
+        for (int index = 0; index < 30; index++) {
+            sendQueue.send("item" + index);
+        }
+
+        ok = rejected.size() == 20 || die(rejected);
+        ok = "item20".equals(queue.receiveQueue().poll()) || die();
+    }
+
+    @Test
+    public void testNoSteadyStateAllocation() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            puts("thread allocation counter not available, skipping");
+            return;
+        }
+        final com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+
+        final Queue<String> queue = pooledQueue();
+        final SendQueue<String> sendQueue = queue.sendQueue();
+        final ReceiveQueue<String> receiveQueue = queue.receiveQueue();
+        final String[] buffer = new String[10];
+
+        for (int warmUp = 0; warmUp < 20_000; warmUp++) {
+            sendAndRead(sendQueue, receiveQueue, buffer);
+        }
+
+        final long before = allocation.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < 10_000; round++) {
+            sendAndRead(sendQueue, receiveQueue, buffer);
+        }
+        final long allocated = allocation.getThreadAllocatedBytes(threadId) - before;
+
+        puts("allocated for 100,000 items", allocated);
+        ok = allocated < 10_000 || die("queue hot path should not allocate", allocated);
+    }
+
+    private void sendAndRead(final SendQueue<String> sendQueue, final ReceiveQueue<String> receiveQueue,
+                             final String[] buffer) {
+        for (int index = 0; index < 10; index++) {
+            sendQueue.send("item");
+        }
+        ok = receiveQueue.readBatch(buffer) == 10 || die();
+    }
+
+    @Test
+    public void testPoolSize() {
+        final QueueBuilder builder = QueueBuilder.queueBuilder().batchSize(100).ringBuffer(false).ringBufferSize(4096);
+        ok = builder.batchPoolSize() == 16 || die("pool should not follow the ring buffer when it is off",
+                builder.batchPoolSize());
+
+        ok = builder.consumers(4).batchPoolSize() == 64 || die(builder.batchPoolSize());
+        ok = builder.batchSize(16 * 1024).batchPoolSize() == 5 || die("big batches get fewer arrays",
+                builder.batchPoolSize());
+
+        ok = builder.ringBuffer(true).batchPoolSize() == 4096 || die(builder.batchPoolSize());
+        ok = builder.batchPoolSize(32).batchPoolSize() == 32 || die(builder.batchPoolSize());
+        ok = builder.copy().batchPoolSize() == 32 || die();
+    }
+}
@@ -0,0 +1,172 @@
+package io.advantageous.qbit.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class MultiConsumerQueueTest {
+
+    boolean ok;
+
+    private ReceiveQueueListener<Integer> listener(final Consumer<Integer> consumer) {
+        return new ReceiveQueueListener<Integer>() {
+            @Override
+            public void receive(Integer item) {
+                consumer.accept(item);
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public void idle() {
+            }
+        };
+    }
+
+    private void drainWithListeners(final Queue<Integer> queue, final int consumers, final int count) {
+        final AtomicIntegerArray seen = new AtomicIntegerArray(count);
+        final AtomicInteger received = new AtomicInteger();
+        final Map<String, AtomicInteger> perThread = new ConcurrentHashMap<>();
+
+        for (int index = 0; index < consumers; index++) {
+            queue.startListener(listener(item -> {
+                seen.incrementAndGet(item);
+                perThread.computeIfAbsent(Thread.currentThread().getName(), name -> new AtomicInteger())
+                        .incrementAndGet();
+                received.incrementAndGet();
+                if (item % 10 == 0) {
+                    sleep(1);
+                }
+            }));
+        }
+
+        /* One big batch, a single consumer would keep all of it to itself. */
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < count; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        for (int wait = 0; wait < 500 && received.get() < count; wait++) {
+            sleep(10);
+        }
+        queue.stop();
+
+        puts("items per listener", perThread);
+        ok = received.get() == count || die(received.get());
+        for (int index = 0; index < count; index++) {
+            ok = seen.get(index) == 1 || die("item seen more or less than once", index, seen.get(index));
+        }
+        ok = perThread.size() == consumers || die("every listener should get a share", perThread);
+        ok = queue.stats().depth() == 0 || die(queue.stats());
+    }
+
+    @Test
+    public void testListenersShareABatch() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(1000).consumers(4).build("shared");
+        drainWithListeners(queue, 4, 1000);
+    }
+
+    @Test
+    public void testListenersSharePooledBatches() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(1000).consumers(4)
+                .ringBuffer(true).ringBufferSize(16).batchPooling(true).build("shared");
+        drainWithListeners(queue, 4, 1000);
+    }
+
+    @Test
+    public void testReceiveQueuesSplitBatches() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(100).consumers(2).build("shared");
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 100; index++) {
+            sendQueue.send(index);
+        }
+
+        final ReceiveQueue<Integer> first = queue.receiveQueue();
+        final ReceiveQueue<Integer> second = queue.receiveQueue();
+
+        ok = first.poll() == 0 || die();
+
+        /* The first one claimed half of the batch and put the rest back. */
+        ok = second.poll() == 50 || die();
+
+        int total = 2;
+        while (first.poll() != null) {
+            total++;
+        }
+        while (second.poll() != null) {
+            total++;
+        }
+        ok = total == 100 || die(total);
+        ok = queue.stats().depth() == 0 || die(queue.stats());
+    }
+
+    @Test
+    public void testDropOldestDropsUnclaimedChunks() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(100).consumers(2).capacity(60)
+                .build("shared");
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 100; index++) {
+            sendQueue.send(index);
+        }
+
+        /* Claims the first half, the second half goes back on the queue. */
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+        ok = receiveQueue.poll() == 0 || die();
+
+        final List<Integer> rejected = new ArrayList<>();
+        final SendQueue<Integer> dropOldest = queue.sendQueue(OverflowPolicy.DROP_OLDEST, rejected::add);
+        for (int index = 100; index < 150; index++) {
+            dropOldest.send(index);
+        }
+        dropOldest.flushSends();
+
+        ok = rejected.size() == 50 || die(rejected);
+        ok = rejected.get(0) == 50 || die(rejected);
+
+        int total = 1;
+        while (receiveQueue.poll() != null) {
+            total++;
+        }
+        ok = total == 100 || die(total);
+        ok = queue.stats().depth() == 0 || die(queue.stats());
+    }
+
+    @Test
+    public void testListenerLimit() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().consumers(2).build("shared");
+        queue.startListener(listener(item -> {
+        }));
+        queue.startListener(listener(item -> {
+        }));
+        try {
+            queue.startListener(listener(item -> {
+            }));
+            die("only two listeners allowed");
+        } catch (IllegalStateException ex) {
+            puts(ex.getMessage());
+        } finally {
+            queue.stop();
+        }
+    }
+}
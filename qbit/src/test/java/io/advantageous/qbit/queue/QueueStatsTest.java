@@ -0,0 +1,109 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.util.Timer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+
+public class QueueStatsTest {
+
+    boolean ok;
+
+    @Test
+    public void testCounters() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().batchSize(10).build("counters");
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+
+        for (int index = 0; index < 25; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        final QueueStats stats = queue.stats();
+        ok = stats.sent() == 25 || die(stats);
+        ok = stats.flushes() == 3 || die(stats);
+        ok = stats.depth() == 25 || die(stats);
+
+        final long[] batchSizes = stats.batchSizes();
+        ok = batchSizes[3] == 2 || die("two batches of 10", Arrays.toString(batchSizes));
+        ok = batchSizes[2] == 1 || die("one batch of 5", Arrays.toString(batchSizes));
+
+        final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+        while (receiveQueue.poll() != null) {
+        }
+
+        puts(stats);
+        ok = stats.received() == 25 || die(stats);
+        ok = stats.depth() == 0 || die(stats);
+    }
+
+    @Test
+    public void testResidenceTime() {
+        final Queue<MethodCall<Object>> queue = QueueBuilder.queueBuilder().batchSize(10).build("residence");
+        final SendQueue<MethodCall<Object>> sendQueue = queue.sendQueue();
+
+        final long timestamp = Timer.timer().now() - 100;
+        for (int index = 0; index < 5; index++) {
+            sendQueue.send(MethodCallImpl.method(index, "addr", "return", "object", "method", timestamp, null, null));
+        }
+        sendQueue.flushSends();
+
+        final ReceiveQueue<MethodCall<Object>> receiveQueue = queue.receiveQueue();
+        while (receiveQueue.poll() != null) {
+        }
+
+        final QueueStats stats = queue.stats();
+        puts(stats);
+        ok = stats.residenceSamples() == 1 || die("one sample per batch", stats);
+        ok = stats.residenceMillis() >= 100 || die(stats);
+        ok = stats.maxResidenceMillis() >= 100 || die(stats);
+    }
+
+    @Test
+    public void testRegistry() {
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().build("registry");
+        ok = QueueStatsRegistry.stats("registry") == null || die("queues register when a listener starts");
+
+        queue.startListener(new NoOpListener());
+        ok = QueueStatsRegistry.stats("registry") == queue.stats() || die();
+        ok = QueueStatsRegistry.all().contains(queue.stats()) || die();
+
+        final Queue<Integer> sameName = QueueBuilder.queueBuilder().build("registry");
+        sameName.startListener(new NoOpListener());
+        ok = QueueStatsRegistry.all("registry").size() == 2 || die("queues with the same name are both kept");
+
+        queue.stop();
+        ok = QueueStatsRegistry.stats("registry") == sameName.stats() || die("stopped queues unregister");
+
+        sameName.stop();
+        ok = QueueStatsRegistry.stats("registry") == null || die("stopped queues unregister");
+    }
+
+    static class NoOpListener implements ReceiveQueueListener<Integer> {
+
+        @Override
+        public void receive(Integer item) {
+        }
+
+        @Override
+        public void empty() {
+        }
+
+        @Override
+        public void limit() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void idle() {
+        }
+    }
+}
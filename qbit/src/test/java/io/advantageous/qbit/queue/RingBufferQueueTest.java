@@ -0,0 +1,163 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.queue.impl.RingBufferQueue;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class RingBufferQueueTest {
+
+    boolean ok;
+
+    @Test
+    public void testRingSizeIsPowerOfTwo() {
+        RingBufferQueue<String> queue = new RingBufferQueue<>("test", 10, TimeUnit.MILLISECONDS, 10, 100);
+        ok = queue.ringSize() == 128 || die("ring size should be 128", queue.ringSize());
+    }
+
+    @Test
+    public void testUsingListener() {
+        RingBufferQueue<String> queue = new RingBufferQueue<>("test", 1000, TimeUnit.MILLISECONDS, 10, 16);
+
+        final int[] counter = new int[1];
+
+        queue.startListener(new ReceiveQueueListener<String>() {
+            @Override
+            public void receive(String item) {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        final SendQueue<String> sendQueue = queue.sendQueue();
+
+        /* 1000 items at a batch size of 10 is 100 batches, far more than the 16 slots in the ring. */
+        for (int index = 0; index < 1000; index++) {
+            sendQueue.send("item" + index);
+        }
+        sendQueue.flushSends();
+
+        sendQueue.sendMany("hello", "how", "are", "you");
+
+        sleep(500);
+
+        synchronized (counter) {
+            ok = counter[0] == 1004 || die("count should be 1004", counter[0]);
+        }
+
+        queue.stop();
+    }
+
+    @Test
+    public void testUsingInputTake() throws Exception {
+
+        final RingBufferQueue<String> queue = new RingBufferQueue<>("test", 1000, TimeUnit.MILLISECONDS, 10, 4);
+
+        final AtomicLong count = new AtomicLong();
+
+        Thread reader = new Thread(() -> {
+            long cnt = 0;
+            final ReceiveQueue<String> receiveQueue = queue.receiveQueue();
+            String item = receiveQueue.take();
+
+            while (item != null) {
+                cnt++;
+                if (cnt >= 1000) {
+                    break;
+                }
+                item = receiveQueue.take();
+            }
+            count.set(cnt);
+        });
+
+        Thread writer = new Thread(() -> {
+            final SendQueue<String> sendQueue = queue.sendQueue();
+            for (int index = 0; index < 1000; index++) {
+                sendQueue.send("this item " + index);
+            }
+            sendQueue.flushSends();
+        });
+
+        writer.start();
+        reader.start();
+
+        writer.join();
+        reader.join();
+
+        puts(count.get());
+
+        ok = count.get() == 1000 || die("count should be 1000", count.get());
+    }
+
+    @Test
+    public void testMultiWriterMultiReader() throws Exception {
+
+        final RingBufferQueue<Integer> queue = new RingBufferQueue<>("test", 100, TimeUnit.MILLISECONDS, 50, 8);
+
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        Thread[] writers = new Thread[4];
+        Thread[] readers = new Thread[3];
+
+        for (int w = 0; w < writers.length; w++) {
+            writers[w] = new Thread(() -> {
+                final SendQueue<Integer> sendQueue = queue.sendQueue();
+                for (int index = 1; index <= 10_000; index++) {
+                    sendQueue.send(index);
+                }
+                sendQueue.flushSends();
+            });
+        }
+
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                final ReceiveQueue<Integer> receiveQueue = queue.receiveQueue();
+                Integer item = receiveQueue.pollWait();
+                while (item != null) {
+                    sum.addAndGet(item);
+                    count.incrementAndGet();
+                    item = receiveQueue.pollWait();
+                }
+            });
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        ok = count.get() == 40_000 || die("count should be 40,000", count.get());
+        ok = sum.get() == 4 * 50_005_000L || die("sum is wrong", sum.get());
+    }
+}
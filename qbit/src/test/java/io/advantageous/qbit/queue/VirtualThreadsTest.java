@@ -0,0 +1,93 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.queue.impl.VirtualThreads;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class VirtualThreadsTest {
+
+    boolean ok;
+
+    static class ThreadRecordingListener implements ReceiveQueueListener<String> {
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void receive(String item) {
+            thread.set(Thread.currentThread());
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void empty() {
+        }
+
+        @Override
+        public void limit() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void idle() {
+        }
+    }
+
+    private ThreadRecordingListener runQueue(final QueueBuilder queueBuilder) {
+        final Queue<String> queue = queueBuilder.build("threads");
+        final ThreadRecordingListener listener = new ThreadRecordingListener();
+        queue.startListener(listener);
+
+        final SendQueue<String> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 100; index++) {
+            sendQueue.send("item" + index);
+        }
+        sendQueue.flushSends();
+
+        sleep(100);
+        queue.stop();
+
+        ok = listener.count.get() == 100 || die(listener.count.get());
+        return listener;
+    }
+
+    @Test
+    public void testThreadFactoryIsUsed() {
+        final AtomicInteger created = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            created.incrementAndGet();
+            return new Thread(runnable);
+        };
+
+        final ThreadRecordingListener listener = runQueue(QueueBuilder.queueBuilder().threadFactory(threadFactory));
+
+        ok = created.get() == 1 || die(created.get());
+        ok = listener.thread.get().getName().equals("QueueListener threads") || die(listener.thread.get().getName());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        if (!VirtualThreads.available()) {
+            try {
+                VirtualThreads.factory();
+                die("factory should fail when virtual threads are not available");
+            } catch (IllegalStateException expected) {
+                puts("virtual threads not available, skipping");
+            }
+            return;
+        }
+
+        final ThreadRecordingListener listener = runQueue(QueueBuilder.queueBuilder().virtualThreads(true));
+        final Object isVirtual = Thread.class.getMethod("isVirtual").invoke(listener.thread.get());
+        ok = Boolean.TRUE.equals(isVirtual) || die("listener should run on a virtual thread");
+    }
+}
@@ -0,0 +1,87 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.queue.impl.*;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class WaitStrategyTest {
+
+    boolean ok;
+
+    private void runWithStrategy(final WaitStrategy waitStrategy) {
+
+        final BasicQueue<String> queue = new BasicQueue<>("test", 10, TimeUnit.MILLISECONDS, 10, waitStrategy);
+
+        final AtomicInteger count = new AtomicInteger();
+
+        queue.startListener(new ReceiveQueueListener<String>() {
+            @Override
+            public void receive(String item) {
+                count.incrementAndGet();
+            }
+
+            @Override
+            public void empty() {
+            }
+
+            @Override
+            public void limit() {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public void idle() {
+            }
+        });
+
+        final SendQueue<String> sendQueue = queue.sendQueue();
+
+        for (int round = 0; round < 5; round++) {
+            for (int index = 0; index < 100; index++) {
+                sendQueue.send("item" + index);
+            }
+            sendQueue.flushSends();
+            sleep(20);
+        }
+
+        sleep(200);
+
+        queue.stop();
+
+        puts(waitStrategy);
+
+        ok = count.get() == 500 || die("count should be 500", count.get(), waitStrategy);
+        ok = queue.waitStrategy() == waitStrategy || die();
+        ok = waitStrategy.idleTimeNanos() > 0 || die("idle time should be recorded", waitStrategy);
+        ok = waitStrategy.workTimeNanos() > 0 || die("work time should be recorded", waitStrategy);
+    }
+
+    @Test
+    public void testPoll() {
+        runWithStrategy(new PollWaitStrategy());
+    }
+
+    @Test
+    public void testSpin() {
+        runWithStrategy(new SpinWaitStrategy());
+    }
+
+    @Test
+    public void testYield() {
+        runWithStrategy(new YieldWaitStrategy());
+    }
+
+    @Test
+    public void testBackoff() {
+        runWithStrategy(new BackoffWaitStrategy());
+    }
+}
@@ -0,0 +1,219 @@
+package io.advantageous.qbit.queue;
+
+import io.advantageous.qbit.queue.impl.BasicQueue;
+import io.advantageous.qbit.queue.impl.PollWaitStrategy;
+import io.advantageous.qbit.queue.impl.WorkerPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class WorkerPoolTest {
+
+    WorkerPool workerPool;
+    boolean ok;
+
+    @Before
+    public void setup() {
+        workerPool = new WorkerPool("test", 2, 5, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        workerPool.stop();
+    }
+
+    static class CountingListener implements ReceiveQueueListener<Integer> {
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final AtomicInteger idle = new AtomicInteger();
+        final AtomicInteger shutdown = new AtomicInteger();
+
+        @Override
+        public void receive(Integer item) {
+            if (inFlight.incrementAndGet() != 1) {
+                overlapped.set(true);
+            }
+            count.incrementAndGet();
+            inFlight.decrementAndGet();
+        }
+
+        @Override
+        public void empty() {
+        }
+
+        @Override
+        public void limit() {
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown.incrementAndGet();
+        }
+
+        @Override
+        public void idle() {
+            idle.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testManyQueuesFewWorkers() throws Exception {
+
+        final int queueCount = 200;
+        final List<BasicQueue<Integer>> queues = new ArrayList<>();
+        final List<CountingListener> listeners = new ArrayList<>();
+
+        for (int index = 0; index < queueCount; index++) {
+            final BasicQueue<Integer> queue = new BasicQueue<>("queue " + index, 5, TimeUnit.MILLISECONDS, 10,
+                    new PollWaitStrategy(), workerPool);
+            final CountingListener listener = new CountingListener();
+            queue.startListener(listener);
+            queues.add(queue);
+            listeners.add(listener);
+        }
+
+        ok = workerPool.registered() == queueCount || die(workerPool.registered());
+
+        final List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+            final Thread thread = new Thread(() -> {
+                final List<SendQueue<Integer>> sendQueues = new ArrayList<>();
+                for (BasicQueue<Integer> queue : queues) {
+                    sendQueues.add(queue.sendQueue());
+                }
+                for (int item = 0; item < 100; item++) {
+                    for (SendQueue<Integer> sendQueue : sendQueues) {
+                        sendQueue.send(item);
+                    }
+                }
+                for (SendQueue<Integer> sendQueue : sendQueues) {
+                    sendQueue.flushSends();
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : producers) {
+            thread.join();
+        }
+
+        for (int index = 0; index < 100; index++) {
+            sleep(10);
+            if (listeners.stream().allMatch(listener -> listener.count.get() == 400)) {
+                break;
+            }
+        }
+
+        for (CountingListener listener : listeners) {
+            ok = listener.count.get() == 400 || die("count should be 400", listener.count.get());
+            ok = !listener.overlapped.get() || die("listener was called from two threads at once");
+        }
+
+        sleep(50);
+
+        for (CountingListener listener : listeners) {
+            ok = listener.idle.get() > 0 || die("listener should have gone idle");
+        }
+
+        for (BasicQueue<Integer> queue : queues) {
+            queue.stop();
+        }
+
+        sleep(50);
+
+        for (CountingListener listener : listeners) {
+            ok = listener.shutdown.get() == 1 || die("shutdown should be called once", listener.shutdown.get());
+        }
+
+        ok = workerPool.registered() == 0 || die(workerPool.registered());
+
+        puts("done", queueCount, "queues on", workerPool.workerCount(), "workers");
+    }
+
+    @Test
+    public void testQueueBuilderUsesPool() {
+
+        final Queue<Integer> queue = QueueBuilder.queueBuilder().workerPool(workerPool).build("pooled");
+        final CountingListener listener = new CountingListener();
+        queue.startListener(listener);
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        for (int index = 0; index < 1000; index++) {
+            sendQueue.send(index);
+        }
+        sendQueue.flushSends();
+
+        sleep(100);
+
+        ok = listener.count.get() == 1000 || die(listener.count.get());
+
+        queue.stop();
+    }
+
+    @Test
+    public void testQuietQueueIdlesBackOff() {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("quiet", 1, TimeUnit.MILLISECONDS, 10,
+                new PollWaitStrategy(), workerPool);
+        final CountingListener listener = new CountingListener();
+        queue.startListener(listener);
+
+        sleep(500);
+
+        /* Without the back off that is an idle call every tick, about 100. */
+        final int quietIdles = listener.idle.get();
+        ok = quietIdles > 0 && quietIdles < 30 || die("quiet queue should idle less and less often", quietIdles);
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        sendQueue.send(1);
+        sendQueue.flushSends();
+        sleep(20);
+
+        ok = listener.count.get() == 1 || die(listener.count.get());
+        ok = listener.idle.get() > quietIdles || die("idle calls should come right away after work again");
+
+        queue.stop();
+    }
+
+    @Test
+    public void testStopDuringSlowReceive() throws Exception {
+
+        final BasicQueue<Integer> queue = new BasicQueue<>("slow", 5, TimeUnit.MILLISECONDS, 10,
+                new PollWaitStrategy(), workerPool);
+        final CountDownLatch receiving = new CountDownLatch(1);
+        final CountingListener listener = new CountingListener() {
+            @Override
+            public void receive(Integer item) {
+                receiving.countDown();
+                sleep(100);
+                super.receive(item);
+            }
+        };
+        queue.startListener(listener);
+
+        final SendQueue<Integer> sendQueue = queue.sendQueue();
+        sendQueue.send(1);
+        sendQueue.flushSends();
+
+        ok = receiving.await(1, TimeUnit.SECONDS) || die("listener should be receiving");
+        queue.stop();
+
+        sleep(300);
+
+        ok = listener.count.get() == 1 || die(listener.count.get());
+        ok = listener.shutdown.get() == 1 || die("shutdown should come after the drain", listener.shutdown.get());
+    }
+}
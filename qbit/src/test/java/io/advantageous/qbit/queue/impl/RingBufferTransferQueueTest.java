@@ -0,0 +1,107 @@
+package io.advantageous.qbit.queue.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.boon.Exceptions.die;
+
+public class RingBufferTransferQueueTest {
+
+    boolean ok;
+
+    @Test
+    public void testIterateAndToString() {
+        final RingBufferTransferQueue queue = new RingBufferTransferQueue(4);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+        queue.poll();
+
+        final List<Object> items = new ArrayList<>();
+        queue.forEach(items::add);
+        ok = items.size() == 2 && items.get(0).equals("b") && items.get(1).equals("c") || die(items);
+        ok = queue.toString().equals("[b, c]") || die(queue.toString());
+        ok = queue.contains("c") && !queue.contains("a") || die();
+        ok = queue.toArray().length == 2 || die();
+    }
+
+    @Test
+    public void testRemove() {
+        final RingBufferTransferQueue queue = new RingBufferTransferQueue(4);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        ok = queue.remove("b") || die();
+        ok = !queue.remove("b") || die();
+        ok = queue.peek().equals("a") || die(queue.peek());
+
+        final Iterator<Object> iterator = queue.iterator();
+        ok = iterator.next().equals("a") || die();
+        iterator.remove();
+
+        ok = queue.peek().equals("c") || die(queue.peek());
+        ok = queue.poll().equals("c") || die();
+        ok = queue.poll() == null || die();
+
+        /* The slots of removed items get reused once the consumer passed them. */
+        for (int index = 0; index < 4; index++) {
+            ok = queue.offer(index) || die(index);
+        }
+        ok = !queue.offer(4) || die();
+    }
+
+    @Test
+    public void testTryTransferNeedsWaitingConsumer() throws Exception {
+        final RingBufferTransferQueue queue = new RingBufferTransferQueue(4);
+        ok = !queue.tryTransfer("a") || die();
+        ok = !queue.tryTransfer("a", 5, TimeUnit.MILLISECONDS) || die();
+        ok = queue.isEmpty() || die(queue.size());
+
+        final Object[] taken = new Object[1];
+        final Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        ok = queue.tryTransfer("b", 5, TimeUnit.SECONDS) || die();
+        consumer.join(5_000);
+        ok = "b".equals(taken[0]) || die(taken[0]);
+    }
+
+    @Test
+    public void testTransferWaitsForConsumer() throws Exception {
+        final RingBufferTransferQueue queue = new RingBufferTransferQueue(4);
+        final AtomicBoolean transferred = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final Thread producer = new Thread(() -> {
+            try {
+                started.countDown();
+                queue.transfer("a");
+                transferred.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        started.await();
+
+        Thread.sleep(50);
+        ok = !transferred.get() || die("transfer returned before the item was taken");
+
+        ok = "a".equals(queue.take()) || die();
+        producer.join(5_000);
+        ok = transferred.get() || die("transfer did not return after the item was taken");
+    }
+}
@@ -0,0 +1,97 @@
+package io.advantageous.qbit.sender;
+
+import io.advantageous.qbit.message.Message;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.spi.BoonProtocolEncoder;
+import io.advantageous.qbit.spi.BoonProtocolParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.boon.Exceptions.die;
+
+public class BatchingSenderTest {
+
+    boolean ok;
+
+    final BoonProtocolEncoder encoder = new BoonProtocolEncoder();
+
+    final BoonProtocolParser parser = new BoonProtocolParser();
+
+    List<String> frames;
+
+    BatchingSender sender;
+
+    @Before
+    public void setup() {
+        frames = new ArrayList<>();
+        sender = new BatchingSender((returnAddress, frame) -> frames.add(frame), 10, 10_000);
+    }
+
+    private String call(final long id) {
+        return encoder.encodeAsString(MethodCallImpl.method(id, "/services/adder/add", "/client/1",
+                "adder", "add", 1L, null, null));
+    }
+
+    @Test
+    public void testGroup() {
+        for (int index = 1; index <= 3; index++) {
+            sender.send("/client/1", call(index));
+        }
+        ok = frames.isEmpty() || die(frames);
+        ok = sender.pending() == 3 || die(sender.pending());
+
+        sender.flush();
+        ok = frames.size() == 1 || die(frames.size());
+        ok = sender.pending() == 0 || die(sender.pending());
+
+        final List<Message<Object>> messages = parser.parse(frames.get(0));
+        ok = messages.size() == 3 || die(messages.size());
+        ok = ((MethodCall<Object>) messages.get(2)).id() == 3L || die(messages.get(2));
+
+        sender.flush();
+        ok = frames.size() == 1 || die("nothing to flush");
+    }
+
+    @Test
+    public void testOneIsSentAsIs() {
+        final String call = call(1);
+        sender.send("/client/1", call);
+        sender.flush();
+        ok = frames.size() == 1 && frames.get(0).equals(call) || die(frames);
+    }
+
+    @Test
+    public void testMaxMessages() {
+        for (int index = 1; index <= 25; index++) {
+            sender.send("/client/1", call(index));
+        }
+        ok = frames.size() == 2 || die(frames.size());
+        ok = parser.parse(frames.get(1)).size() == 10 || die();
+        ok = sender.pending() == 5 || die(sender.pending());
+    }
+
+    @Test
+    public void testMaxChars() {
+        sender = new BatchingSender((returnAddress, frame) -> frames.add(frame), 100, call(1).length() * 2);
+        sender.send("/client/1", call(1));
+        ok = frames.isEmpty() || die(frames);
+        sender.send("/client/1", call(2));
+        ok = frames.size() == 1 || die(frames.size());
+        ok = parser.parse(frames.get(0)).size() == 2 || die();
+    }
+
+    @Test
+    public void testOtherMessagesGoOnTheirOwn() {
+        sender.send("/client/1", call(1));
+        sender.send("/client/1", call(2));
+        sender.send("/client/1", "hello");
+        ok = frames.size() == 2 || die(frames);
+        ok = parser.parse(frames.get(0)).size() == 2 || die();
+        ok = frames.get(1).equals("hello") || die(frames.get(1));
+        ok = sender.pending() == 0 || die(sender.pending());
+    }
+}
@@ -0,0 +1,83 @@
+package io.advantageous.qbit.service.impl;
+
+import io.advantageous.qbit.service.Callback;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.boon.Exceptions.die;
+
+public class CallbackRegistryTest {
+
+    boolean ok;
+
+    private final List<Object> results = new ArrayList<>();
+
+    private final List<Throwable> errors = new ArrayList<>();
+
+    private Callback<Object> callback() {
+        return new Callback<Object>() {
+            @Override
+            public void accept(Object result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+        };
+    }
+
+    @Test
+    public void testRemovedOnCompletion() {
+        final CallbackRegistry registry = new CallbackRegistry();
+        final Callback<Object> callback = callback();
+
+        registry.register("client", 1, callback, 100);
+        registry.register(null, 1, callback(), 100);
+        ok = registry.size() == 2 || die(registry.size());
+
+        ok = registry.remove("client", 1) == callback || die();
+        ok = registry.remove("client", 1) == null || die("removed twice");
+        ok = registry.remove("other", 1) == null || die();
+        ok = registry.remove(null, 1) != null || die();
+        ok = registry.size() == 0 || die(registry.size());
+    }
+
+    @Test
+    public void testExpire() {
+        final CallbackRegistry registry = new CallbackRegistry();
+        registry.register("client", 1, callback(), 100);
+        registry.register("client", 2, callback(), 200);
+        registry.register("other", 3, callback(), 100);
+
+        ok = registry.expire(50) == 0 || die();
+        ok = registry.expire(150) == 2 || die(errors);
+        ok = errors.size() == 2 || die(errors);
+        ok = errors.get(0) instanceof TimeoutException || die(errors);
+
+        ok = registry.remove("client", 1) == null || die("timed out callbacks are gone");
+        ok = registry.remove("client", 2) != null || die();
+    }
+
+    @Test
+    public void testEmptyTablesAreDropped() {
+        final CallbackRegistry registry = new CallbackRegistry();
+        for (int index = 0; index < 100; index++) {
+            registry.register("client" + index, index, callback(), 100);
+            registry.remove("client" + index, index);
+        }
+        registry.register("waiting", 1, callback(), 1000);
+        registry.register("late", 2, callback(), 100);
+
+        ok = registry.expire(150) == 1 || die();
+        ok = registry.tables() == 1 || die("only the table with a waiting callback is left", registry.tables());
+
+        registry.register("late", 3, callback(), 1000);
+        ok = registry.remove("late", 3) != null || die("a dropped table comes back on register");
+        ok = registry.remove("waiting", 1) != null || die();
+    }
+}
@@ -0,0 +1,88 @@
+package io.advantageous.qbit.service.impl;
+
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.service.Callback;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.spi.RegisterBoonWithQBit;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.boon.Exceptions.die;
+
+public class MethodHandleServiceMethodCallHandlerTest {
+
+    static {
+        RegisterBoonWithQBit.registerBoonWithQBit();
+    }
+
+    boolean ok;
+
+    public static class Adder {
+        long sum;
+        boolean called;
+
+        public int add(int a, long b) {
+            sum += a + b;
+            return (int) (a + b);
+        }
+
+        public void addLater(Callback<Integer> callback, int a) {
+            called = callback != null;
+            sum += a;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    private static MethodHandleServiceMethodCallHandler.Invoker invoker(Object service, String name) {
+        for (java.lang.reflect.Method method : service.getClass().getMethods()) {
+            if (method.getName().equals(name)) {
+                return MethodHandleServiceMethodCallHandler.Invoker.invoker(service, method);
+            }
+        }
+        return die(MethodHandleServiceMethodCallHandler.Invoker.class, "no method", name);
+    }
+
+    @Test
+    public void testInvokerConvertsArguments() throws Throwable {
+        final Adder adder = new Adder();
+        final MethodHandleServiceMethodCallHandler.Invoker invoker = invoker(adder, "add");
+
+        Object result = invoker.invoke(MethodCallImpl.method("add", Arrays.asList(1, 2)), null);
+        ok = result.equals(3) || die(result);
+
+        result = invoker.invoke(MethodCallImpl.method("add", new Object[]{3L, 4.0}), null);
+        ok = result.equals(7) || die(result);
+        ok = adder.sum == 10 || die(adder.sum);
+    }
+
+    @Test
+    public void testInvokerSkipsCallbacks() throws Throwable {
+        final Adder adder = new Adder();
+        final MethodHandleServiceMethodCallHandler.Invoker invoker = invoker(adder, "addLater");
+
+        invoker.invoke(MethodCallImpl.method("addLater", Arrays.asList(5)), null);
+        ok = adder.called || die();
+        ok = adder.sum == 5 || die(adder.sum);
+
+        final Callback<Integer> clientCallback = value -> { };
+        invoker.invoke(MethodCallImpl.method("addLater", new Object[]{clientCallback, 6}), null);
+        ok = adder.sum == 11 || die(adder.sum);
+    }
+
+    @Test
+    public void testHandler() {
+        final MethodHandleServiceMethodCallHandler handler = new MethodHandleServiceMethodCallHandler();
+        handler.init(new Adder(), "/root", "/adder");
+
+        Response<Object> response = handler.receiveMethodCall(MethodCallImpl.method("add", Arrays.asList(1, 2)));
+        ok = response.body().equals(3) || die(response);
+
+        response = handler.receiveMethodCall(MethodCallImpl.method("fail", null));
+        ok = response.wasErrors() || die(response);
+        ok = response.body() instanceof IllegalStateException || die(response);
+    }
+}
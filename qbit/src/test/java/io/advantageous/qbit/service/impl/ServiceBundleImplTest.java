@@ -1,5 +1,6 @@
 package io.advantageous.qbit.service.impl;
 
+import io.advantageous.qbit.util.ConcurrentHashSet;
 import io.advantageous.qbit.util.MultiMap;
 import org.boon.Boon;
 import org.boon.Lists;
@@ -15,7 +16,9 @@ import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.queue.ReceiveQueue;
 import io.advantageous.qbit.service.ServiceBundle;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.boon.Boon.puts;
 
@@ -102,6 +105,46 @@ public class ServiceBundleImplTest {
         serviceBundle.stop();
     }
 
+    public static class ThreadNameService {
+        final Set<String> threads;
+
+        ThreadNameService(Set<String> threads) {
+            this.threads = threads;
+        }
+
+        public int echo(int value) {
+            threads.add(Thread.currentThread().getName());
+            Sys.sleep(1);
+            return value;
+        }
+    }
+
+    @Test
+    public void testReplicas() throws Exception {
+
+        final Set<String> threads = new ConcurrentHashSet<>(10);
+        serviceBundle.addServiceReplicas("/echo", 4, () -> new ThreadNameService(threads));
+
+        for (int index = 0; index < 200; index++) {
+            serviceBundle.call(factory.createMethodCallByAddress("/foo/echo/echo", "", Lists.list(index), params));
+        }
+        serviceBundle.flushSends();
+
+        responseReceiveQueue = serviceBundle.responses();
+        final Set<Integer> values = new HashSet<>();
+        for (int wait = 0; wait < 200 && values.size() < 200; wait++) {
+            while ((response = responseReceiveQueue.pollWait()) != null) {
+                values.add(Conversions.toInt(response.body()));
+            }
+        }
+
+        puts("replica threads", threads);
+        Boon.equalsOrDie("every call should get a response", 200, values.size());
+        Boon.equalsOrDie("calls should be spread over the replicas", true, threads.size() > 1);
+
+        serviceBundle.stop();
+    }
+
     @Test
     public void testCall() throws Exception {
 
@@ -0,0 +1,138 @@
+package io.advantageous.qbit.spi;
+
+import io.advantageous.qbit.message.Message;
+import io.advantageous.qbit.message.MethodCall;
+import io.advantageous.qbit.message.Response;
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import io.advantageous.qbit.service.method.impl.ResponseImpl;
+import io.advantageous.qbit.util.MultiMap;
+import io.advantageous.qbit.util.MultiMapImpl;
+import org.boon.Lists;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+
+public class BinaryProtocolTest {
+
+    boolean ok;
+
+    final BinaryProtocolEncoder encoder = new BinaryProtocolEncoder();
+
+    final BinaryProtocolParser parser = new BinaryProtocolParser();
+
+    @Test
+    public void testMethodCall() {
+        final MultiMap<String, String> params = new MultiMapImpl<>();
+        params.add("client", "test");
+        params.add("client", "test2");
+
+        final MethodCall<Object> methodCall = MethodCallImpl.method(300L, "/services/adder/add", "/client/1",
+                "adder", "add", 1_400_000_000_000L, null, params);
+
+        final ByteBuffer buffer = encoder.encode(methodCall);
+        ok = parser.supports(buffer, null) || die();
+        ok = !new BoonProtocolParser().supports(buffer, null) || die();
+
+        final MethodCall<Object> parsed = parser.parseMethodCall(buffer);
+        ok = buffer.position() == 0 || die("parsing does not move the buffer");
+
+        ok = parsed.id() == 300L || die(parsed.id());
+        ok = parsed.timestamp() == 1_400_000_000_000L || die(parsed.timestamp());
+        ok = parsed.address().equals("/services/adder/add") || die(parsed.address());
+        ok = parsed.returnAddress().equals("/client/1") || die(parsed.returnAddress());
+        ok = parsed.objectName().equals("adder") || die(parsed.objectName());
+        ok = parsed.name().equals("add") || die(parsed.name());
+        ok = parsed.params().size() == 1 || die(parsed.params());
+        ok = parsed.params().getAll("client").iterator().next().equals("test") || die(parsed.params());
+
+        final String asString = encoder.encodeAsString(methodCall);
+        ok = parser.supports(asString, null) || die();
+        ok = parser.parseMethodCallUsingAddressPrefix("remote", asString).returnAddress().startsWith("remote")
+                || die();
+    }
+
+    @Test
+    public void testGroupInternsStrings() {
+        final List<Message<Object>> messages = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            messages.add(MethodCallImpl.method(index, "/services/adder/add", "/client/1",
+                    "adder", "add", 0L, null, null));
+        }
+        messages.add(new ResponseImpl<>(7L, 8L, "/services/adder/add", "/client/1", null, null));
+
+        final ByteBuffer group = encoder.encode(messages);
+        final ByteBuffer single = encoder.encode((MethodCall<Object>) (Object) messages.get(0));
+        puts("group", group.remaining(), "single", single.remaining());
+        ok = group.remaining() < single.remaining() * 100 / 3 || die("addresses are written once per frame");
+
+        final List<Message<Object>> parsed = parser.parse(group);
+        ok = parsed.size() == 101 || die(parsed.size());
+        final MethodCall<Object> last = (MethodCall<Object>) (Object) parsed.get(99);
+        ok = last.id() == 99 || die(last.id());
+        ok = last.address() == ((MethodCall<Object>) (Object) parsed.get(0)).address() || die("interned");
+        final Response<Object> response = (Response<Object>) (Object) parsed.get(100);
+        ok = response.id() == 7L || die(response.id());
+        ok = response.returnAddress().equals("/client/1") || die(response);
+    }
+
+    @Test
+    public void testArgsAndBody() {
+        final MethodCall<Object> methodCall = MethodCallImpl.method(1L, "/services/adder/add", "/client/1",
+                "adder", "add", 0L, Lists.list(1, "two", "dreié"), null);
+        final MethodCall<Object> parsed = parser.parseMethodCall(encoder.encode(methodCall));
+        final List<?> args = (List<?>) parsed.body();
+        ok = args.size() == 3 || die(args);
+        ok = args.get(1).equals("two") || die(args);
+        ok = args.get(2).equals("dreié") || die(args);
+
+        final Response<Object> response = parser.parseResponse(encoder.encode(
+                new ResponseImpl<>(1L, 2L, "addr", "Raddr", null, "body")));
+        ok = "body".equals(response.body()) || die(response);
+    }
+
+    @Test
+    public void testEncodeTo() {
+        final List<Message<Object>> messages = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            messages.add(MethodCallImpl.method(index + 1, "/services/adder/add", "/client/1",
+                    "adder", "add", 0L, null, null));
+        }
+
+        final ByteBuffer expected = encoder.encode(messages);
+        final ByteBuffer buffer = encoder.encodeTo(messages, ByteBuffer.allocateDirect(8));
+        ok = buffer.isDirect() || die("stays direct");
+        buffer.flip();
+        ok = buffer.equals(expected) || die(buffer, expected);
+
+        final List<Message<Object>> parsed = parser.parse(buffer);
+        ok = parsed.size() == 10 || die(parsed.size());
+    }
+
+    @Test
+    public void testParseWantedResponses() {
+        final List<Message<Object>> messages = new ArrayList<>();
+        for (int index = 1; index <= 6; index++) {
+            messages.add(new ResponseImpl<>(index, 0L, "/services/adder/add", "/client/" + (index % 3),
+                    null, null));
+        }
+        messages.add(3, MethodCallImpl.method(100L, "/services/adder/add", "/client/1",
+                "adder", "add", 0L, null, null));
+
+        final List<Response<Object>> responses = new ArrayList<>();
+        parser.parseResponses(encoder.encode(messages), id -> id % 2 == 0, responses::add);
+
+        ok = responses.size() == 3 || die(responses.size());
+        for (int index = 0; index < 3; index++) {
+            final Response<Object> response = responses.get(index);
+            final long id = (index + 1) * 2;
+            ok = response.id() == id || die(response.id());
+            ok = response.returnAddress().equals("/client/" + (id % 3)) || die(response.returnAddress());
+            ok = response.address().equals("/services/adder/add") || die(response.address());
+        }
+    }
+}
@@ -13,6 +13,8 @@ import io.advantageous.qbit.message.Response;
 import io.advantageous.qbit.service.method.impl.MethodCallImpl;
 import io.advantageous.qbit.service.method.impl.ResponseImpl;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -165,6 +167,115 @@ public class ProtocolParserVersion1Test {
 
 
 
+    }
+
+    @Test
+    public void testParseGroupStreaming() {
+
+        BoonProtocolEncoder encoder = new BoonProtocolEncoder();
+        ProtocolParser parser = new BoonProtocolParser();
+
+        MultiMap<String, String> multiMap = new MultiMapImpl(ArrayList.class);
+        multiMap.add("fruit", "apple");
+        multiMap.add("fruit", "pair");
+
+        final List<Message<Object>> list = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            MethodCallImpl method = MethodCallImpl.method(index + 1, "/services/adder/add", "/client/" + index,
+                    "adder", "add", 100L + index, null, multiMap);
+            list.add(method);
+        }
+        list.add(new ResponseImpl<>(42L, 43L, "/services/adder/add", "/client/1", null, null));
+
+        final String s = encoder.encodeAsString(list);
+
+        final List<Message<Object>> messages = new ArrayList<>();
+        parser.parse("remote", s, messages::add);
+
+        ok = messages.size() == 11 || die(messages.size());
+
+        for (int index = 0; index < 10; index++) {
+            final MethodCall<Object> method = (MethodCall<Object>) messages.get(index);
+            Boon.equalsOrDie(index + 1L, method.id());
+            Boon.equalsOrDie(100L + index, method.timestamp());
+            Boon.equalsOrDie("/services/adder/add", method.address());
+            Boon.equalsOrDie("add", method.name());
+            ok = method.returnAddress().startsWith("remote") || die(method.returnAddress());
+            ok = method.returnAddress().endsWith("/client/" + index) || die(method.returnAddress());
+            Boon.equalsOrDie(Lists.list("apple", "pair"), method.params().getAll("fruit"));
+        }
+
+        final Response<Object> response = (Response<Object>) messages.get(10);
+        Boon.equalsOrDie(42L, response.id());
+        Boon.equalsOrDie("/client/1", response.returnAddress());
+
+        Boon.equalsOrDie(11, parser.parse(s).size());
+
+    }
+
+    @Test
+    public void testParseWantedResponses() {
+
+        BoonProtocolEncoder encoder = new BoonProtocolEncoder();
+        ProtocolParser parser = new BoonProtocolParser();
+
+        final List<Message<Object>> list = new ArrayList<>();
+        for (int index = 1; index <= 6; index++) {
+            list.add(new ResponseImpl<>(index, 0L, "/services/adder/add", "/client/" + index, null, null));
+        }
+        list.add(MethodCallImpl.method(100L, "/services/adder/add", "/client/1",
+                "adder", "add", 0L, null, null));
+
+        final List<Response<Object>> responses = new ArrayList<>();
+        parser.parseResponses(encoder.encodeAsString(list), id -> id > 4, responses::add);
+
+        ok = responses.size() == 2 || die(responses.size());
+        Boon.equalsOrDie(5L, responses.get(0).id());
+        Boon.equalsOrDie("/client/5", responses.get(0).returnAddress());
+        Boon.equalsOrDie(6L, responses.get(1).id());
+
+        responses.clear();
+        parser.parseResponses(encoder.encodeAsString((Response<Object>) list.get(0)), id -> true, responses::add);
+        ok = responses.size() == 1 || die(responses.size());
+        Boon.equalsOrDie("/client/1", responses.get(0).returnAddress());
+    }
+
+    @Test
+    public void testEncodeGroupToByteBuffer() {
+
+        BoonProtocolEncoder encoder = new BoonProtocolEncoder();
+        ProtocolParser parser = new BoonProtocolParser();
+
+        final List<Response<Object>> responses = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            responses.add(new ResponseImpl<>(index + 1L, 2L, "/services/adder/add",
+                    "/client/\u00fc\u20ac\ud834\udd1e/" + index, null, null));
+        }
+
+        /* Iterable like a readBatch, not a list. */
+        final Iterable<Response<Object>> batch = responses::iterator;
+
+        final ByteBuffer small = ByteBuffer.allocate(16);
+        small.put((byte) 'x');
+        final ByteBuffer buffer = encoder.encodeTo(batch, small);
+        ok = buffer != small || die("grows");
+        buffer.flip();
+        ok = buffer.get() == 'x' || die("keeps what was there");
+
+        final String asString = encoder.encodeGroupAsString(batch);
+        final String fromBytes = StandardCharsets.UTF_8.decode(buffer).toString();
+        Boon.equalsOrDie(asString, fromBytes);
+
+        final List<Message<Object>> messages = parser.parse(fromBytes);
+        ok = messages.size() == 10 || die(messages.size());
+        final Response<Object> last = (Response<Object>) messages.get(9);
+        Boon.equalsOrDie(10L, last.id());
+        Boon.equalsOrDie(responses.get(9).returnAddress(), last.returnAddress());
+
+        final ByteBuffer single = encoder.encodeTo(responses.get(0), ByteBuffer.allocate(1024));
+        single.flip();
+        Boon.equalsOrDie(encoder.encodeAsString(responses.get(0)), StandardCharsets.UTF_8.decode(single).toString());
+
     }
 
     @Test
@@ -0,0 +1,80 @@
+package io.advantageous.qbit.util;
+
+import org.junit.Test;
+
+import static org.boon.Boon.puts;
+import static org.boon.Exceptions.die;
+
+public class AddressRouterTest {
+
+    boolean ok;
+
+    @Test
+    public void testLiteralAndParams() {
+        final AddressRouter<String> router = AddressRouter.<String>addressRouter()
+                .add("/root/employee/promote/{1}/{0}", "promote")
+                .add("/root/employee/{id}", "get")
+                .add("/root/employee/list", "list")
+                .build();
+
+        ok = router.size() == 3 || die(router.size());
+
+        AddressRouter.Route<String> route = router.route("/root/employee/list");
+        ok = route.target().equals("list") || die(route);
+        ok = route.count() == 0 || die(route);
+
+        route = router.route("/root/employee/42/");
+        ok = route.target().equals("get") || die(route);
+        ok = route.value("id").equals("42") || die(route);
+
+        route = router.route("/root/employee/promote/rick/10");
+        puts(route);
+        ok = route.target().equals("promote") || die(route);
+        ok = route.value(0).equals("rick") || die(route);
+        ok = route.value(1).equals("10") || die(route);
+        ok = route.value("0").equals("10") || die(route);
+    }
+
+    @Test
+    public void testBacktracksFromLiteralToParam() {
+        final AddressRouter<String> router = AddressRouter.<String>addressRouter()
+                .add("/a/list/x", "literal")
+                .add("/a/{name}/y", "param")
+                .build();
+
+        final AddressRouter.Route<String> route = router.route("/a/list/y");
+        ok = route.target().equals("param") || die(route);
+        ok = route.value("name").equals("list") || die(route);
+    }
+
+    @Test
+    public void testLongestPrefix() {
+        final AddressRouter<String> router = AddressRouter.<String>addressRouter()
+                .add("/root", "bundle")
+                .add("/root/service", "service")
+                .add("/root/service/method", "method")
+                .build();
+
+        ok = router.route("/root/service/method/extra").target().equals("method") || die();
+        ok = router.route("/root/service/other").target().equals("service") || die();
+        ok = router.route("/root/serviceX").target().equals("bundle") || die("prefix is by segment");
+        ok = router.route("/elsewhere") == null || die();
+        ok = router.route("") == null || die();
+    }
+
+    @Test
+    public void testManyAddresses() {
+        final AddressRouter.Builder<Integer> builder = AddressRouter.addressRouter();
+        for (int index = 0; index < 5000; index++) {
+            builder.add("/root/service" + (index % 50) + "/method" + index + "/{arg}", index);
+        }
+        final AddressRouter<Integer> router = builder.build();
+
+        for (int index = 0; index < 5000; index++) {
+            final AddressRouter.Route<Integer> route =
+                    router.route("/root/service" + (index % 50) + "/method" + index + "/value" + index);
+            ok = route.target() == index || die(index, route);
+            ok = route.value("arg").equals("value" + index) || die(route);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.advantageous.qbit.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.boon.Exceptions.die;
+
+public class ExpiringLongMapTest {
+
+    boolean ok;
+
+    @Test
+    public void testPutGetRemove() {
+        final ExpiringLongMap<String> map = new ExpiringLongMap<>(4);
+
+        for (long key = 0; key < 1000; key++) {
+            ok = map.put(key, "v" + key, key) == null || die(key);
+        }
+        ok = map.size() == 1000 || die(map.size());
+        ok = "v500".equals(map.get(500)) || die(map.get(500));
+
+        for (long key = 0; key < 1000; key += 2) {
+            ok = ("v" + key).equals(map.remove(key)) || die(key);
+        }
+        ok = map.size() == 500 || die(map.size());
+        ok = map.get(500) == null || die();
+        ok = "v501".equals(map.get(501)) || die();
+        ok = map.remove(500) == null || die();
+    }
+
+    @Test
+    public void testExpire() {
+        final ExpiringLongMap<String> map = new ExpiringLongMap<>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, "v" + key, key);
+        }
+
+        final Map<Long, String> expired = new HashMap<>();
+        ok = map.expire(50, expired::put) == 50 || die(expired.size());
+        ok = expired.containsKey(49L) && !expired.containsKey(50L) || die(expired);
+        ok = map.size() == 50 || die(map.size());
+
+        for (long key = 50; key < 100; key++) {
+            ok = ("v" + key).equals(map.get(key)) || die("lost after expire", key);
+        }
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        final ExpiringLongMap<Long> map = new ExpiringLongMap<>();
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(7);
+
+        for (int index = 0; index < 100_000; index++) {
+            final long key = random.nextInt(512) * 1024L;
+            if (random.nextBoolean()) {
+                ok = same(map.put(key, key, 0), expected.put(key, key)) || die(index);
+            } else {
+                ok = same(map.remove(key), expected.remove(key)) || die(index);
+            }
+        }
+        ok = map.size() == expected.size() || die(map.size(), expected.size());
+        for (Long key : expected.keySet()) {
+            ok = key.equals(map.get(key)) || die(key);
+        }
+    }
+
+    private static boolean same(Long a, Long b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,71 @@
+package io.advantageous.qbit.util;
+
+import io.advantageous.qbit.service.method.impl.MethodCallImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.boon.Exceptions.die;
+
+public class MessageIdsTest {
+
+    boolean ok;
+
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        final int threads = 8;
+        final int idsPerThread = 10 * MessageIds.BLOCK_SIZE + 7;
+        final long[][] ids = new long[threads][idsPerThread];
+
+        final List<Thread> workers = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            final long[] mine = ids[thread];
+            workers.add(new Thread(() -> {
+                for (int index = 0; index < mine.length; index++) {
+                    mine[index] = MessageIds.next();
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        final Set<Long> seen = new HashSet<>();
+        for (long[] mine : ids) {
+            for (long id : mine) {
+                ok = id > 0 || die(id);
+                ok = seen.add(id) || die("duplicate", id);
+            }
+        }
+        ok = seen.size() == threads * idsPerThread || die(seen.size());
+    }
+
+    @Test
+    public void testIncreasingInThread() {
+        long last = MessageIds.next();
+        for (int index = 0; index < 3 * MessageIds.BLOCK_SIZE; index++) {
+            final long id = MessageIds.next();
+            ok = id > last || die(last, id);
+            last = id;
+        }
+    }
+
+    @Test
+    public void testNodeId() {
+        ok = MessageIds.nodeId() == 0 || die(MessageIds.nodeId());
+        ok = MessageIds.nodeId(MessageIds.next()) == 0 || die();
+        ok = MessageIds.nodeId(((long) MessageIds.MAX_NODE_ID << MessageIds.SEQUENCE_BITS) | 5)
+                == MessageIds.MAX_NODE_ID || die();
+    }
+
+    @Test
+    public void testMethodCallsGetIds() {
+        final long first = MethodCallImpl.method("add", "/services/adder", null).id();
+        final long second = MethodCallImpl.method(0L, "/services/adder", "", "adder", "add", 0L, null, null).id();
+        ok = first != 0 && second != 0 && first != second || die(first, second);
+    }
+}
@@ -0,0 +1,80 @@
+package io.advantageous.qbit.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.boon.Exceptions.die;
+import static org.boon.core.Sys.sleep;
+
+public class TimerTest {
+
+    boolean ok;
+
+    @Test
+    public void testSharedTimerIsCreatedOnce() throws Exception {
+        final Set<Timer> timers = ConcurrentHashMap.newKeySet();
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int index = 0; index < 16; index++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                timers.add(Timer.timer());
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+
+        ok = timers.size() == 1 || die(timers.size());
+    }
+
+    @Test
+    public void testCoarseTimeDoesNotDrift() {
+        final Timer timer = new Timer(1, TimeUnit.MILLISECONDS, false).start();
+        try {
+            sleep(500);
+            final long drift = Math.abs(System.nanoTime() / 1_000_000 - timer.now());
+            ok = drift < 50 || die("coarse clock drifted", drift);
+            final long wallDrift = Math.abs(System.currentTimeMillis() - timer.wallClock());
+            ok = wallDrift < 50 || die("coarse wall clock drifted", wallDrift);
+
+            final long before = timer.now();
+            sleep(20);
+            ok = timer.now() > before || die("coarse clock should move");
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testHighResolution() {
+        final Timer timer = new Timer(1, TimeUnit.SECONDS, true).start();
+        final long before = timer.nanoTime();
+        sleep(2);
+        ok = timer.nanoTime() - before >= TimeUnit.MILLISECONDS.toNanos(2) || die();
+        ok = Math.abs(System.nanoTime() / 1_000_000 - timer.now()) < 5 || die();
+        ok = Math.abs(System.currentTimeMillis() - timer.wallClock()) < 5 || die();
+    }
+
+    @Test
+    public void testStoppedTimerKeepsTime() {
+        final Timer timer = new Timer(1, TimeUnit.HOURS, false).start();
+        timer.stop();
+        ok = Math.abs(System.nanoTime() / 1_000_000 - timer.now()) < 5 || die("stopped timer should not freeze");
+        ok = Math.abs(System.currentTimeMillis() - timer.wallClock()) < 5 || die("stopped timer should not freeze");
+    }
+}